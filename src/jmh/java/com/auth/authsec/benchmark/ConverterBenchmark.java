@@ -0,0 +1,70 @@
+package com.auth.authsec.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.auth.authsec.domain.role.Role;
+import com.auth.authsec.domain.user.User;
+import com.auth.authsec.domain.user.User.UserBuilder;
+import com.auth.authsec.domain.user.UserConverter;
+import com.auth.authsec.ui.user.UserForm;
+
+/**
+ * Cost of mapping users to forms and back, which every account listing and
+ * registration pays per account.
+ *
+ * @author Plamen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+    private UserConverter converter;
+
+    private User user;
+
+    private UserForm form;
+
+    @Setup
+    public void setUp() {
+        final List<Role> roles = new ArrayList<>();
+        roles.add(new Role("ROLE_USER"));
+
+        converter = new UserConverter();
+        user = new UserBuilder().username("benchmark-user").password("hash").roles(roles)
+                .creationDate(LocalDateTime.now()).isAccountNonExpired(true).isAccountNonLocked(true)
+                .isCredentialsNonExpired(true).isEnabled(true).build();
+
+        final List<String> roleNames = new ArrayList<>();
+        roleNames.add("ROLE_USER");
+        form = new UserForm("benchmark-user", "password", roleNames);
+    }
+
+    @Benchmark
+    public UserForm convertToForm() {
+        return converter.convertToForm(user);
+    }
+
+    @Benchmark
+    public User convertToModel() {
+        return converter.convertToModel(form);
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.auth.authsec.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.auth.authsec.domain.role.Role;
+
+/**
+ * Cost of the role checks: Role.equals and Role.hashCode, and the admin check
+ * of DefaultUserService.isAdmin, which looks the admin role up in the list of a
+ * user's authorities.
+ *
+ * @author Plamen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoleBenchmark {
+
+    private static final Role ADMIN_AUTHORITY = new Role("ROLE_ADMIN");
+
+    /**
+     * Number of roles the user has, the admin role being the last one.
+     */
+    @Param({"1", "4"})
+    private int roleCount;
+
+    private List<Role> authorities;
+
+    private Role userRole;
+
+    private Role otherUserRole;
+
+    @Setup
+    public void setUp() {
+        authorities = new ArrayList<>();
+
+        for (int i = 1; i < roleCount; i++) {
+            authorities.add(new Role("ROLE_CUSTOM_" + i));
+        }
+        authorities.add(new Role("ROLE_ADMIN"));
+
+        userRole = new Role("ROLE_USER");
+        otherUserRole = new Role("ROLE_USER");
+    }
+
+    @Benchmark
+    public boolean isAdmin() {
+        return authorities.contains(ADMIN_AUTHORITY);
+    }
+
+    @Benchmark
+    public boolean roleEquals() {
+        return userRole.equals(otherUserRole);
+    }
+
+    @Benchmark
+    public int roleHashCode() {
+        return userRole.hashCode();
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.auth.authsec.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.auth.authsec.AuthsecApplication;
+import com.auth.authsec.loadtest.LatencyRecorder;
+import com.auth.authsec.loadtest.LoadGenerator;
+
+/**
+ * The load generator's scenario run against the application in both thread
+ * models: Tomcat's platform thread pool and a virtual thread per request,
+ * switched with "authsec.virtual-threads.enabled". The application runs
+ * in-process with the "test" profile and its embedded HSQL database. The
+ * score is the time of a whole scenario, the throughput and latencies of its
+ * phases are printed after every iteration.
+ *
+ * The "virtual" runs need JDK 21 or later.
+ *
+ * @author Plamen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ThreadModelBenchmark {
+
+    private static final int USERS = 200;
+
+    private static final int LOGINS = USERS * 2;
+
+    private static final int LISTINGS = USERS;
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"platform", "virtual"})
+    private String threadModel;
+
+    /**
+     * Number of concurrent clients, below and above Tomcat's default of 200
+     * request threads.
+     */
+    @Param({"32", "512"})
+    private int concurrency;
+
+    private ConfigurableApplicationContext context;
+
+    private String baseUrl;
+
+    private List<LatencyRecorder> reports;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(AuthsecApplication.class)
+                .profiles("test")
+                .properties("server.port=0", "logging.level.org.hibernate.SQL=WARN",
+                        "logging.level.org.hibernate.type.descriptor=WARN",
+                        "authsec.virtual-threads.enabled=" + "virtual".equals(threadModel))
+                .run();
+
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printReports() {
+        System.out.println();
+        reports.forEach(report -> System.out.println(report.report()));
+    }
+
+    @Benchmark
+    public List<LatencyRecorder> runScenario() throws Exception {
+        reports = new LoadGenerator(baseUrl, concurrency, USERS, LOGINS, LISTINGS, PAGE_SIZE).run();
+        return reports;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.auth.authsec.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.auth.authsec.AuthsecApplication;
+import com.auth.authsec.domain.user.PrincipalCache;
+import com.auth.authsec.domain.user.UserService;
+
+/**
+ * Cost of loading a principal through DefaultUserService.loadUserByUsername,
+ * with the application running against the embedded HSQL database of the test
+ * profile. The uncached variant clears the principal cache before every call,
+ * so it measures the database lookup.
+ *
+ * @author Plamen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    /**
+     * Created on start-up by the StartupConfigRunner.
+     */
+    private static final String USERNAME = "admin";
+
+    private ConfigurableApplicationContext context;
+
+    private UserService userService;
+
+    private PrincipalCache principalCache;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(AuthsecApplication.class)
+                .profiles("test")
+                .properties("server.port=0", "logging.level.org.hibernate.SQL=WARN",
+                        "logging.level.org.hibernate.type.descriptor=WARN")
+                .run();
+
+        userService = context.getBean(UserService.class);
+        principalCache = context.getBean(PrincipalCache.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsernameCached() {
+        return userService.loadUserByUsername(USERNAME);
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsernameUncached() {
+        principalCache.clear();
+        return userService.loadUserByUsername(USERNAME);
+    }
+
+}
@@ -1,13 +1,21 @@
 package com.auth.authsec;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.context.annotation.Bean;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import com.auth.authsec.domain.crypto.CalibratedPasswordEncoder;
+import com.auth.authsec.domain.crypto.OffloadingPasswordEncoder;
+import com.auth.authsec.domain.crypto.PasswordEncoderCalibrator;
+import com.auth.authsec.domain.crypto.PasswordHashingExecutor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * BSD 3-Clause License
  * 
@@ -51,6 +59,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
  *         the server.
  */
 @SpringBootApplication
+@EnableScheduling
 public class AuthsecApplication extends SpringBootServletInitializer {
 	
 	/**
@@ -79,14 +88,40 @@ public class AuthsecApplication extends SpringBootServletInitializer {
 
 	/**
 	 * A Bean, which is loaded in the ApplicationContext on start-up. Used for
-	 * encoding user passwords.
+	 * encoding user passwords. The work factor of the configured algorithm is
+	 * calibrated to the target latency on start-up and the hashing runs on the
+	 * dedicated password hashing pool, not on the request thread. Clusters that
+	 * must agree on one work factor pin it instead of calibrating per node.
 	 * 
 	 * @see @Bean
-	 * @return BCryptPasswordEncoder
+	 * @param passwordHashingExecutor - pool the hashing runs on.
+	 * @param algorithm - "bcrypt" or "pbkdf2".
+	 * @param targetMillis - desired time for hashing a single password.
+	 * @param minBCryptStrength - lowest BCrypt cost to ever use.
+	 * @param minPbkdf2Iterations - lowest PBKDF2 iteration count to ever use.
+	 * @param pbkdf2Secret - the PBKDF2 secret.
+	 * @param fixedBCryptStrength - pinned BCrypt cost, 0 to calibrate.
+	 * @param fixedPbkdf2Iterations - pinned PBKDF2 iteration count, 0 to calibrate.
+	 * @param meterRegistry - registry of the hashing timers.
+	 * @return calibrated password encoder running on the hashing pool.
 	 */
 	@Bean
-	public PasswordEncoder getBCryptPasswordEncoder() {
-		return new BCryptPasswordEncoder();
+	public PasswordEncoder getPasswordEncoder(final PasswordHashingExecutor passwordHashingExecutor,
+			@Value("${authsec.password.algorithm:bcrypt}") final String algorithm,
+			@Value("${authsec.password.target-millis:250}") final long targetMillis,
+			@Value("${authsec.password.min-bcrypt-strength:10}") final int minBCryptStrength,
+			@Value("${authsec.password.min-pbkdf2-iterations:185000}") final int minPbkdf2Iterations,
+			@Value("${authsec.password.pbkdf2-secret:}") final String pbkdf2Secret,
+			@Value("${authsec.password.bcrypt-strength:0}") final int fixedBCryptStrength,
+			@Value("${authsec.password.pbkdf2-iterations:0}") final int fixedPbkdf2Iterations,
+			final MeterRegistry meterRegistry) {
+
+		final PasswordEncoderCalibrator calibrator = new PasswordEncoderCalibrator(targetMillis, minBCryptStrength,
+				minPbkdf2Iterations, fixedBCryptStrength, fixedPbkdf2Iterations);
+		final CalibratedPasswordEncoder encoder = calibrator.calibrate(algorithm, pbkdf2Secret);
+
+		encoder.bindTo(meterRegistry);
+		return new OffloadingPasswordEncoder(encoder, passwordHashingExecutor, meterRegistry);
 	}
 	
 }
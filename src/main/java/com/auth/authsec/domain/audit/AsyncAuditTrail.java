@@ -0,0 +1,348 @@
+package com.auth.authsec.domain.audit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.auth.authsec.domain.exceptions.AuditRecordsRejectedException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Audit trail that never writes on the recording thread. Events go into a
+ * bounded queue and a single background writer drains it, handing everything
+ * queued so far, up to the batch size, to the audit writer at once. Under load
+ * the batches grow, so the storage sees few large writes instead of one write
+ * per login.
+ *
+ * When the queue is full, the overflow policy decides what happens to a new
+ * event:
+ *
+ * <pre>
+ * drop         the event is dropped and counted
+ * block        the recording thread waits up to the offer timeout, then drops
+ * caller-runs  the event is written synchronously on the recording thread
+ * </pre>
+ *
+ * On shutdown the trail is closed first, then the writer drains the queue
+ * before the data source goes away. Events recorded once the trail is closed
+ * are written synchronously, including those racing with the final drain.
+ *
+ * @author Plamen
+ */
+@Component
+public class AsyncAuditTrail implements AuditTrail, SmartLifecycle, MeterBinder {
+
+    private static final String THREAD_NAME = "audit-writer";
+
+    /**
+     * Starts before and stops after the other lifecycle beans, so the events
+     * they record while stopping still go through the queue.
+     */
+    private static final int PHASE = Integer.MIN_VALUE + 100;
+
+    /**
+     * What to do with an event when the queue is full.
+     */
+    public enum OverflowPolicy {
+        DROP, BLOCK, CALLER_RUNS
+    }
+
+    private final AuditEventWriter writer;
+
+    private final BlockingQueue<AuditRecord> queue;
+
+    private final int batchSize;
+
+    private final long flushIntervalMillis;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final long offerTimeoutMillis;
+
+    private final LongAdder recorded = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder totalWriteNanos = new LongAdder();
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param writer - storage of the events.
+     * @param queueCapacity - maximum number of events waiting to be written.
+     * @param batchSize - maximum number of events written at once.
+     * @param flushIntervalMillis - how long the writer waits for new events
+     * before checking whether it should stop.
+     * @param overflowPolicy - "drop", "block" or "caller-runs".
+     * @param offerTimeoutMillis - how long the "block" policy waits for room
+     * in the queue.
+     */
+    @Autowired
+    public AsyncAuditTrail(final AuditEventWriter writer,
+            @Value("${authsec.audit.queue-capacity:8192}") final int queueCapacity,
+            @Value("${authsec.audit.batch-size:256}") final int batchSize,
+            @Value("${authsec.audit.flush-interval-millis:1000}") final long flushIntervalMillis,
+            @Value("${authsec.audit.overflow-policy:drop}") final String overflowPolicy,
+            @Value("${authsec.audit.offer-timeout-millis:50}") final long offerTimeoutMillis) {
+
+        this.writer = writer;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = OverflowPolicy
+                .valueOf(overflowPolicy.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void record(final AuditRecord record) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    enqueue(record);
+                }
+            });
+            return;
+        }
+
+        enqueue(record);
+    }
+
+    /**
+     * Starts the background writer.
+     */
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        writerThread = new Thread(this::drain, THREAD_NAME);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Closes the trail and stops the background writer once it wrote every
+     * queued event.
+     */
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+
+        try {
+
+            writerThread.join();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // events that raced with the shutdown
+        flushQueue();
+    }
+
+    @Override
+    public void stop(final Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Registers the throughput, drop, failure, queue depth and write time
+     * meters of the audit trail.
+     *
+     * @param registry - the registry to bind to.
+     */
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("authsec.audit.recorded", recorded, LongAdder::doubleValue)
+                .description("The number of audit events recorded")
+                .register(registry);
+        FunctionCounter.builder("authsec.audit.written", written, LongAdder::doubleValue)
+                .description("The number of audit events written")
+                .register(registry);
+        FunctionCounter.builder("authsec.audit.dropped", dropped, LongAdder::doubleValue)
+                .description("The number of audit events dropped because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("authsec.audit.failed", failed, LongAdder::doubleValue)
+                .description("The number of audit events lost because writing them failed")
+                .register(registry);
+        Gauge.builder("authsec.audit.queue.depth", queue, BlockingQueue::size)
+                .description("The number of audit events waiting to be written")
+                .register(registry);
+        FunctionTimer.builder("authsec.audit.write", this,
+                trail -> trail.batches.sum(), trail -> trail.totalWriteNanos.sum(), TimeUnit.NANOSECONDS)
+                .description("Time spent writing batches of audit events")
+                .register(registry);
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private void enqueue(final AuditRecord record) {
+        recorded.increment();
+
+        if (!running) {
+            write(Collections.singletonList(record));
+            return;
+        }
+
+        if (queue.offer(record)) {
+            writeIfClosed(record);
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case CALLER_RUNS:
+                write(Collections.singletonList(record));
+                return;
+            case BLOCK:
+                try {
+
+                    if (queue.offer(record, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        writeIfClosed(record);
+                        return;
+                    }
+
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                dropped.increment();
+                return;
+            default:
+                dropped.increment();
+        }
+    }
+
+    /**
+     * Writes a queued event synchronously if the trail was closed meanwhile,
+     * since the final drain may already be over. If the event is no longer
+     * queued, a drain took it and wrote it.
+     *
+     * @param record
+     */
+    private void writeIfClosed(final AuditRecord record) {
+        if (!running && queue.remove(record)) {
+            write(Collections.singletonList(record));
+        }
+    }
+
+    /**
+     * Loop of the background writer: waits for an event, then writes it
+     * together with whatever else is queued, up to the batch size.
+     */
+    private void drain() {
+        final List<AuditRecord> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+
+                final AuditRecord first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+                if (Objects.isNull(first)) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+                batch.clear();
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        flushQueue();
+    }
+
+    private void flushQueue() {
+        final List<AuditRecord> batch = new ArrayList<>(batchSize);
+
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes a batch. A failed batch is counted and dropped, so a storage
+     * outage can't back up into the login path. Records rejected by the
+     * storage are counted as failed, the rest of their batch as written.
+     *
+     * @param batch
+     */
+    private void write(final List<AuditRecord> batch) {
+        final long startedAt = System.nanoTime();
+
+        try {
+
+            writer.write(batch);
+            written.add(batch.size());
+
+        } catch (AuditRecordsRejectedException e) {
+            written.add(batch.size() - e.getRejected());
+            failed.add(e.getRejected());
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+        } finally {
+            batches.increment();
+            totalWriteNanos.add(System.nanoTime() - startedAt);
+        }
+    }
+
+}
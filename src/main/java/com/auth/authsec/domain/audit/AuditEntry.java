@@ -0,0 +1,85 @@
+package com.auth.authsec.domain.audit;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import com.auth.authsec.domain.converters.LocalDateTimePersistenceConverter;
+
+/**
+ * A stored audit event. The table is only ever appended to, by the JDBC audit
+ * writer in batches.
+ *
+ * @see JdbcAuditEventWriter
+ * @author Plamen
+ */
+@Entity
+@Table(name = "audit_events", indexes = {
+    @Index(name = "idx_audit_events_occurred_at", columnList = "occurred_at"),
+    @Index(name = "idx_audit_events_subject", columnList = "subject")})
+public class AuditEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "audit_event_id")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", length = 32, nullable = false)
+    private AuditEventType type;
+
+    @Column(name = "actor")
+    private String actor;
+
+    @Column(name = "subject")
+    private String subject;
+
+    @Column(name = "detail")
+    private String detail;
+
+    @Column(name = "occurred_at", nullable = false)
+    @Convert(converter = LocalDateTimePersistenceConverter.class)
+    private LocalDateTime occurredAt;
+
+    /**
+     * Default constructor;
+     */
+    public AuditEntry() {
+        super();
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    public Long getId() {
+        return id;
+    }
+
+    public AuditEventType getType() {
+        return type;
+    }
+
+    public String getActor() {
+        return actor;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.auth.authsec.domain.audit;
+
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Read access to stored audit events.
+ *
+ * @author Plamen
+ */
+public interface AuditEventReader {
+
+    /**
+     * Hands every stored event of the time range to the sink, segment by
+     * segment, without loading the whole range into memory.
+     *
+     * @param from - start of the range, inclusive.
+     * @param to - end of the range, exclusive.
+     * @param sink - receives the events.
+     */
+    void read(LocalDateTime from, LocalDateTime to, Consumer<AuditRecord> sink);
+
+}
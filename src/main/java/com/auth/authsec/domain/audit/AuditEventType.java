@@ -0,0 +1,20 @@
+package com.auth.authsec.domain.audit;
+
+/**
+ * The kinds of security relevant events written to the audit trail.
+ *
+ * @author Plamen
+ */
+public enum AuditEventType {
+
+    LOGIN_SUCCESS,
+
+    LOGIN_FAILURE,
+
+    REGISTRATION,
+
+    PROMOTION,
+
+    DELETION
+
+}
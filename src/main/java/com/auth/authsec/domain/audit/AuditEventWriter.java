@@ -0,0 +1,25 @@
+package com.auth.authsec.domain.audit;
+
+import java.util.List;
+
+import com.auth.authsec.domain.exceptions.AuditRecordsRejectedException;
+
+/**
+ * Storage of audit events, written in batches by the audit trail's background
+ * writer. Implementations must be thread-safe, since events overflowing the
+ * queue or recorded during shutdown are written by the recording thread.
+ *
+ * @author Plamen
+ */
+public interface AuditEventWriter {
+
+    /**
+     * Stores the given events.
+     *
+     * @param records - the events, in the order they were recorded.
+     * @throws AuditRecordsRejectedException if some events can't be stored at
+     * all, after storing the others.
+     */
+    void write(List<AuditRecord> records);
+
+}
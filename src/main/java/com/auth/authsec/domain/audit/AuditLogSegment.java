@@ -0,0 +1,438 @@
+package com.auth.authsec.domain.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * One segment of the audit log: a pre-sized, memory-mapped data file of
+ * length-prefixed binary records and a sparse index file next to it.
+ *
+ * <pre>
+ * record  int length, long epoch millis, byte type, actor, subject, detail
+ * string  short length (-1 for null), UTF-8 bytes
+ * index   int start, int end, long min millis, long max millis
+ * </pre>
+ *
+ * Records are written body first and their length last, so a reader never
+ * sees a partially written record; an unwritten length of zero marks the end
+ * of the data. Every index entry covers a block of consecutive records with
+ * the lowest and highest timestamp in it, so a range query only scans the
+ * blocks overlapping the range, even if records arrive slightly out of order.
+ * The block being filled is not indexed yet and is always scanned.
+ *
+ * The index is kept in memory as well and a segment maps its data file only
+ * once, reads reuse that mapping; a mapping is released when the segment is
+ * no longer referenced. Sealing truncates the data file to the written
+ * records; the mapping of the segment is never read past them, so it stays
+ * valid.
+ *
+ * Appending is not thread-safe, the audit log serializes it.
+ *
+ * @see MappedFileAuditEventWriter
+ * @author Plamen
+ */
+public class AuditLogSegment implements Closeable {
+
+    public static final String DATA_SUFFIX = ".log";
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    private static final int INDEX_ENTRY_SIZE = 24;
+
+    /**
+     * Length prefix, timestamp and type.
+     */
+    private static final int FIXED_RECORD_SIZE = 4 + 8 + 1;
+
+    private static final int MAX_STRING_BYTES = Short.MAX_VALUE;
+
+    private static final AuditEventType[] TYPES = AuditEventType.values();
+
+    private final Path dataFile;
+
+    private final Path indexFile;
+
+    private final ZoneId zone;
+
+    /**
+     * The mapped data of a segment open for appending, null once sealed.
+     */
+    private MappedByteBuffer data;
+
+    /**
+     * The mapped data read from, the appended data of a segment created by
+     * this process, mapped on the first read otherwise.
+     */
+    private volatile ByteBuffer mapped;
+
+    private FileChannel indexChannel;
+
+    /**
+     * The index entries, written as well as loaded on the first read: start,
+     * end, min and max millis of every indexed block.
+     */
+    private final List<long[]> index = new CopyOnWriteArrayList<>();
+
+    private boolean indexLoaded;
+
+    private final int indexInterval;
+
+    /**
+     * End of the written records, published after every append.
+     */
+    private volatile int position;
+
+    private int blockStart;
+
+    private int blockRecords;
+
+    private long blockMinMillis;
+
+    private long blockMaxMillis;
+
+    private AuditLogSegment(final Path dataFile, final ZoneId zone, final int indexInterval) {
+        this.dataFile = dataFile;
+        this.indexFile = toIndexFile(dataFile);
+        this.zone = zone;
+        this.indexInterval = indexInterval;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Creates a new, empty segment open for appending.
+     *
+     * @param dataFile - the data file to create.
+     * @param size - size of the data file in bytes.
+     * @param indexInterval - number of records per index entry.
+     * @param zone - zone of the audit record timestamps.
+     * @return the segment.
+     * @throws IOException if the files can't be created.
+     */
+    public static AuditLogSegment create(final Path dataFile, final int size, final int indexInterval,
+            final ZoneId zone) throws IOException {
+
+        final AuditLogSegment segment = new AuditLogSegment(dataFile, zone, indexInterval);
+
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            segment.data = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        segment.mapped = segment.data;
+        segment.indexLoaded = true;
+
+        segment.indexChannel = FileChannel.open(segment.indexFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return segment;
+    }
+
+    /**
+     * Opens an existing segment for reading.
+     *
+     * @param dataFile - the segment's data file.
+     * @param zone - zone of the audit record timestamps.
+     * @return the segment.
+     * @throws IOException if the data file can't be read.
+     */
+    public static AuditLogSegment open(final Path dataFile, final ZoneId zone) throws IOException {
+        final AuditLogSegment segment = new AuditLogSegment(dataFile, zone, 0);
+        segment.position = (int) Math.min(Files.size(dataFile), Integer.MAX_VALUE);
+        return segment;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param record
+     * @return "false" if the segment has no room left for the record.
+     * @throws IOException if the index can't be written.
+     */
+    public boolean append(final AuditRecord record) throws IOException {
+        final byte[] actor = toBytes(record.getActor());
+        final byte[] subject = toBytes(record.getSubject());
+        final byte[] detail = toBytes(record.getDetail());
+        final int length = FIXED_RECORD_SIZE - 4 + sizeOf(actor) + sizeOf(subject) + sizeOf(detail);
+        final int start = position;
+
+        if ((long) start + 4 + length > data.capacity()) {
+            return false;
+        }
+
+        final long millis = record.getOccurredAt().atZone(zone).toInstant().toEpochMilli();
+
+        data.position(start + 4);
+        data.putLong(millis);
+        data.put((byte) record.getType().ordinal());
+        putString(actor);
+        putString(subject);
+        putString(detail);
+        data.putInt(start, length);
+
+        position = start + 4 + length;
+
+        if (blockRecords == 0) {
+            blockStart = start;
+            blockMinMillis = millis;
+            blockMaxMillis = millis;
+        } else {
+            blockMinMillis = Math.min(blockMinMillis, millis);
+            blockMaxMillis = Math.max(blockMaxMillis, millis);
+        }
+
+        if (++blockRecords == indexInterval) {
+            writeIndexEntry();
+        }
+        return true;
+    }
+
+    /**
+     * Indexes the block being filled, flushes the data to disk and truncates
+     * the data file to the written records. Nothing can be appended
+     * afterwards.
+     *
+     * @throws IOException if the index can't be written or the data file
+     * can't be truncated.
+     */
+    public void seal() throws IOException {
+        if (Objects.isNull(data)) {
+            return;
+        }
+
+        if (blockRecords > 0) {
+            writeIndexEntry();
+        }
+
+        data.force();
+        data = null;
+        indexChannel.force(false);
+        indexChannel.close();
+        indexChannel = null;
+
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        seal();
+    }
+
+    /**
+     * Hands every record of the segment within the time range to the sink.
+     *
+     * @param fromMillis - start of the range, inclusive.
+     * @param toMillis - end of the range, exclusive.
+     * @param sink - receives the records.
+     * @throws IOException if the segment can't be read.
+     */
+    public void read(final long fromMillis, final long toMillis, final Consumer<AuditRecord> sink)
+            throws IOException {
+
+        final int limit = position;
+
+        if (limit == 0) {
+            return;
+        }
+
+        final ByteBuffer view = getMapped().duplicate();
+        view.limit(Math.min(limit, view.capacity()));
+
+        int scanned = 0;
+
+        for (long[] entry : getIndex()) {
+            final int start = (int) entry[0];
+            final int end = (int) Math.min(entry[1], view.limit());
+
+            if (start < scanned || end <= start) {
+                continue;
+            }
+            if (entry[3] >= fromMillis && entry[2] < toMillis) {
+                scan(view, start, end, fromMillis, toMillis, sink);
+            }
+            scanned = end;
+        }
+
+        scan(view, scanned, view.limit(), fromMillis, toMillis, sink);
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    public Path getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @param dataFile
+     * @return the index file belonging to the data file.
+     */
+    public static Path toIndexFile(final Path dataFile) {
+        final String name = dataFile.getFileName().toString();
+        return dataFile.resolveSibling(name.substring(0, name.length() - DATA_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private void writeIndexEntry() throws IOException {
+        final ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putInt(blockStart).putInt(position).putLong(blockMinMillis).putLong(blockMaxMillis);
+        entry.flip();
+
+        while (entry.hasRemaining()) {
+            indexChannel.write(entry);
+        }
+        index.add(new long[] {blockStart, position, blockMinMillis, blockMaxMillis});
+        blockRecords = 0;
+    }
+
+    /**
+     * @return the mapped data, mapped read-only on the first call for a
+     * segment opened from disk.
+     * @throws IOException if the data file can't be mapped.
+     */
+    private synchronized ByteBuffer getMapped() throws IOException {
+        if (Objects.isNull(mapped)) {
+            try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(position, channel.size()));
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * @return the index entries, loaded on the first call for a segment opened
+     * from disk.
+     * @throws IOException if the index can't be read.
+     */
+    private synchronized List<long[]> getIndex() throws IOException {
+        if (!indexLoaded) {
+            index.addAll(readIndex());
+            indexLoaded = true;
+        }
+        return index;
+    }
+
+    /**
+     * Reads the complete entries of the index file, an entry still being
+     * written is skipped.
+     *
+     * @return start, end, min and max millis of every indexed block.
+     * @throws IOException if the index can't be read.
+     */
+    private List<long[]> readIndex() throws IOException {
+        final List<long[]> entries = new ArrayList<>();
+
+        if (!Files.exists(indexFile)) {
+            return entries;
+        }
+
+        final ByteBuffer indexData = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+
+        while (indexData.remaining() >= INDEX_ENTRY_SIZE) {
+            entries.add(new long[] {indexData.getInt(), indexData.getInt(), indexData.getLong(),
+                indexData.getLong()});
+        }
+        return entries;
+    }
+
+    private void scan(final ByteBuffer view, final int start, final int end, final long fromMillis,
+            final long toMillis, final Consumer<AuditRecord> sink) {
+
+        int at = start;
+
+        while (at + FIXED_RECORD_SIZE <= end) {
+            final int length = view.getInt(at);
+
+            if (length <= 0 || at + 4 + length > end) {
+                return;
+            }
+
+            final long millis = view.getLong(at + 4);
+
+            if (millis >= fromMillis && millis < toMillis) {
+                sink.accept(decode(view, at + 4, millis));
+            }
+            at += 4 + length;
+        }
+    }
+
+    private AuditRecord decode(final ByteBuffer view, final int at, final long millis) {
+        final ByteBuffer record = view.duplicate();
+        record.position(at + 8);
+
+        final AuditEventType type = TYPES[record.get()];
+        final String actor = getString(record);
+        final String subject = getString(record);
+        final String detail = getString(record);
+
+        return new AuditRecord(type, actor, subject, detail,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone));
+    }
+
+    private void putString(final byte[] bytes) {
+        if (Objects.isNull(bytes)) {
+            data.putShort((short) -1);
+            return;
+        }
+        data.putShort((short) bytes.length);
+        data.put(bytes);
+    }
+
+    private static String getString(final ByteBuffer record) {
+        final short length = record.getShort();
+
+        if (length < 0) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param value
+     * @return the UTF-8 bytes of the value, cut at the maximum field length.
+     */
+    private static byte[] toBytes(final String value) {
+        if (Objects.isNull(value)) {
+            return null;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length <= MAX_STRING_BYTES) {
+            return bytes;
+        }
+
+        final byte[] cut = new byte[MAX_STRING_BYTES];
+        System.arraycopy(bytes, 0, cut, 0, MAX_STRING_BYTES);
+        return cut;
+    }
+
+    private static int sizeOf(final byte[] bytes) {
+        return 2 + (Objects.isNull(bytes) ? 0 : bytes.length);
+    }
+
+}
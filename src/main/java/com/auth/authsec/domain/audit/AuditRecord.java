@@ -0,0 +1,79 @@
+package com.auth.authsec.domain.audit;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single, immutable audit event: who did what to which account, and when.
+ *
+ * @author Plamen
+ */
+public final class AuditRecord {
+
+    private final AuditEventType type;
+
+    /**
+     * The user performing the action, null for anonymous users.
+     */
+    private final String actor;
+
+    /**
+     * The account the action was performed on.
+     */
+    private final String subject;
+
+    /**
+     * Additional information, e.g. the reason of a failed login.
+     */
+    private final String detail;
+
+    private final LocalDateTime occurredAt;
+
+    public AuditRecord(AuditEventType type, String actor, String subject, String detail, LocalDateTime occurredAt) {
+        this.type = type;
+        this.actor = actor;
+        this.subject = subject;
+        this.detail = detail;
+        this.occurredAt = occurredAt;
+    }
+
+    /**
+     * Creates a record of an event that just occurred.
+     *
+     * @param type
+     * @param actor
+     * @param subject
+     * @param detail
+     * @return the record.
+     */
+    public static AuditRecord now(AuditEventType type, String actor, String subject, String detail) {
+        return new AuditRecord(type, actor, subject, detail, LocalDateTime.now());
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    public AuditEventType getType() {
+        return type;
+    }
+
+    public String getActor() {
+        return actor;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+    @Override
+    public String toString() {
+        return "AuditRecord [type=" + type + ", actor=" + actor + ", subject=" + subject + ", detail=" + detail
+                + ", occurredAt=" + occurredAt + "]";
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.auth.authsec.domain.audit;
+
+/**
+ * Entry point of the security audit trail.
+ *
+ * @author Plamen
+ */
+public interface AuditTrail {
+
+    /**
+     * Records an audit event. Never blocks on the storage of the event; within
+     * a transaction, the event is only recorded once the transaction commits.
+     *
+     * @param record - the event.
+     */
+    void record(AuditRecord record);
+
+}
@@ -0,0 +1,53 @@
+package com.auth.authsec.domain.audit;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes audit events to the "audit_events" table with one JDBC batch insert
+ * per batch. This is the default audit sink.
+ *
+ * @see AuditEntry
+ * @author Plamen
+ */
+@Component
+@ConditionalOnProperty(name = "authsec.audit.sink", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcAuditEventWriter implements AuditEventWriter {
+
+    private static final String INSERT = "INSERT INTO audit_events (event_type, actor, subject, detail, occurred_at) "
+            + "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param jdbcTemplate - template for the batch inserts.
+     */
+    @Autowired
+    public JdbcAuditEventWriter(final JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final List<AuditRecord> records) {
+        final List<Object[]> rows = new ArrayList<>(records.size());
+
+        for (AuditRecord record : records) {
+            rows.add(new Object[] {record.getType().name(), record.getActor(), record.getSubject(),
+                record.getDetail(), Timestamp.valueOf(record.getOccurredAt())});
+        }
+
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+}
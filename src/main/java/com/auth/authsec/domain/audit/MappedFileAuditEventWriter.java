@@ -0,0 +1,307 @@
+package com.auth.authsec.domain.audit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.auth.authsec.domain.exceptions.AuditRecordsRejectedException;
+
+/**
+ * Audit sink appending to memory-mapped segment files instead of the user
+ * database, enabled with "authsec.audit.sink=file". Writing a record is a
+ * handful of puts into mapped memory, the operating system writes the pages
+ * back in the background, so the sink keeps up with hundreds of thousands of
+ * events per second on one node.
+ *
+ * A new segment is started when the current one is full or older than the
+ * roll interval, and on every start-up. Segment files are named after the time
+ * they were started, so their names sort in time order. With a positive
+ * maximum, the oldest segments are deleted once there are more.
+ *
+ * A range query skips every segment the next segment started before the range,
+ * since a record is written before the segment after its own is started and is
+ * never written before it occurred. The start of a segment itself doesn't
+ * bound its records, events queued before a roll are written after it. The
+ * most recently read segments are kept open, so their mappings and indexes are
+ * reused by later queries; the mapping of a segment dropped from them is
+ * released once no query reads it any more.
+ *
+ * A record larger than a segment is skipped, the rest of its batch is still
+ * written.
+ *
+ * Mapped writes survive a crash of the process but not of the machine until
+ * the segment is sealed, which flushes it to disk.
+ *
+ * @see AuditLogSegment
+ * @author Plamen
+ */
+@Component
+@ConditionalOnProperty(name = "authsec.audit.sink", havingValue = "file")
+public class MappedFileAuditEventWriter implements AuditEventWriter, AuditEventReader {
+
+    private static final String SEGMENT_NAME_FORMAT = "%020d-%06d" + AuditLogSegment.DATA_SUFFIX;
+
+    private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    /**
+     * Length of the start millis at the beginning of a segment file name.
+     */
+    private static final int START_MILLIS_LENGTH = 20;
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final long rollIntervalMillis;
+
+    private final int indexInterval;
+
+    private final int maxSegments;
+
+    /**
+     * Maximum number of sealed segments kept open for reading.
+     */
+    private final int maxOpenSegments;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /**
+     * The segment being appended to, guarded by this.
+     */
+    private AuditLogSegment active;
+
+    private long activeCreatedAtMillis;
+
+    private int sequence;
+
+    /**
+     * Access-ordered sealed segments read recently, by data file, guarded by
+     * this.
+     */
+    private final Map<Path, AuditLogSegment> readSegments;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param directory - directory of the segment files.
+     * @param segmentSizeMegabytes - size of a segment.
+     * @param rollIntervalSeconds - maximum age of the segment being appended
+     * to.
+     * @param indexInterval - number of records per index entry.
+     * @param maxSegments - number of segments kept, 0 to keep every segment.
+     * @param maxOpenSegments - number of sealed segments kept open for
+     * reading.
+     * @throws IOException if the directory can't be created.
+     */
+    @Autowired
+    public MappedFileAuditEventWriter(@Value("${authsec.audit.file.directory:audit-log}") final String directory,
+            @Value("${authsec.audit.file.segment-size-mb:64}") final int segmentSizeMegabytes,
+            @Value("${authsec.audit.file.roll-interval-seconds:3600}") final long rollIntervalSeconds,
+            @Value("${authsec.audit.file.index-interval:256}") final int indexInterval,
+            @Value("${authsec.audit.file.max-segments:0}") final int maxSegments,
+            @Value("${authsec.audit.file.max-open-segments:16}") final int maxOpenSegments) throws IOException {
+
+        this.directory = Files.createDirectories(Paths.get(directory));
+        this.segmentSize = (int) Math.min((long) segmentSizeMegabytes * BYTES_PER_MEGABYTE, Integer.MAX_VALUE);
+        this.rollIntervalMillis = TimeUnit.SECONDS.toMillis(rollIntervalSeconds);
+        this.indexInterval = indexInterval;
+        this.maxSegments = maxSegments;
+        this.maxOpenSegments = maxOpenSegments;
+        this.readSegments = new LinkedHashMap<Path, AuditLogSegment>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 2417690372853011652L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, AuditLogSegment> eldest) {
+                return size() > MappedFileAuditEventWriter.this.maxOpenSegments;
+            }
+        };
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void write(final List<AuditRecord> records) {
+        int rejected = 0;
+
+        try {
+
+            if (Objects.isNull(active) || System.currentTimeMillis() - activeCreatedAtMillis >= rollIntervalMillis) {
+                roll();
+            }
+
+            for (AuditRecord record : records) {
+                if (active.append(record)) {
+                    continue;
+                }
+
+                // a record not even fitting an empty segment doesn't need a new one
+                if (active.getPosition() == 0) {
+                    rejected++;
+                    continue;
+                }
+
+                roll();
+
+                if (!active.append(record)) {
+                    rejected++;
+                }
+            }
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (rejected > 0) {
+            throw new AuditRecordsRejectedException(rejected);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void read(final LocalDateTime from, final LocalDateTime to, final Consumer<AuditRecord> sink) {
+        final long fromMillis = from.atZone(zone).toInstant().toEpochMilli();
+        final long toMillis = to.atZone(zone).toInstant().toEpochMilli();
+
+        try {
+
+            final List<Path> segments = listSegments();
+
+            for (int i = 0; i < segments.size(); i++) {
+                if (i + 1 < segments.size() && getStartMillis(segments.get(i + 1)) < fromMillis) {
+                    continue;
+                }
+
+                final Path dataFile = segments.get(i);
+                final AuditLogSegment segment;
+
+                synchronized (this) {
+                    if (!Objects.isNull(active) && active.getDataFile().equals(dataFile)) {
+                        segment = active;
+                    } else {
+                        segment = getReadSegment(dataFile);
+                    }
+                }
+
+                segment.read(fromMillis, toMillis, sink);
+            }
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Seals the segment being appended to. Runs after the audit trail wrote
+     * its queue.
+     *
+     * @throws IOException if the segment can't be sealed.
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (!Objects.isNull(active)) {
+            active.seal();
+            readSegments.put(active.getDataFile(), active);
+            active = null;
+        }
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    /**
+     * @return the number of sealed segments kept open for reading.
+     */
+    public synchronized int getOpenSegmentCount() {
+        return readSegments.size();
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * @param dataFile
+     * @return the open segment of the data file, opened now if it wasn't read
+     * recently.
+     * @throws IOException if the data file can't be read.
+     */
+    private AuditLogSegment getReadSegment(final Path dataFile) throws IOException {
+        AuditLogSegment segment = readSegments.get(dataFile);
+
+        if (Objects.isNull(segment)) {
+            segment = AuditLogSegment.open(dataFile, zone);
+            readSegments.put(dataFile, segment);
+        }
+        return segment;
+    }
+
+    /**
+     * Seals the current segment, starts a new one and deletes the oldest
+     * segments over the maximum.
+     *
+     * @throws IOException if a segment can't be sealed, created or deleted.
+     */
+    private void roll() throws IOException {
+        close();
+
+        final long now = System.currentTimeMillis();
+        final Path dataFile = directory.resolve(String.format(SEGMENT_NAME_FORMAT, now, sequence++));
+
+        active = AuditLogSegment.create(dataFile, segmentSize, indexInterval, zone);
+        activeCreatedAtMillis = now;
+
+        if (maxSegments > 0) {
+            final List<Path> segments = listSegments();
+
+            for (int i = 0; i < segments.size() - maxSegments; i++) {
+                readSegments.remove(segments.get(i));
+                Files.deleteIfExists(AuditLogSegment.toIndexFile(segments.get(i)));
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    /**
+     * @param dataFile
+     * @return the time the segment was started, from its file name.
+     */
+    private static long getStartMillis(final Path dataFile) {
+        return Long.parseLong(dataFile.getFileName().toString().substring(0, START_MILLIS_LENGTH));
+    }
+
+    /**
+     * @return the segment data files, oldest first.
+     * @throws IOException if the directory can't be listed.
+     */
+    private List<Path> listSegments() throws IOException {
+        final List<Path> segments = new ArrayList<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + AuditLogSegment.DATA_SUFFIX)) {
+            files.forEach(segments::add);
+        }
+
+        Collections.sort(segments);
+        return segments;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.auth.authsec.domain.audit;
+
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AbstractAuthenticationFailureEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records successful and failed logins in the audit trail, from the
+ * authentication events published by the authentication manager. The detail
+ * of a record is the client address and, for failures, the type of the
+ * exception.
+ *
+ * @author Plamen
+ */
+@Component
+public class SecurityAuditListener {
+
+    private final AuditTrail auditTrail;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param auditTrail - the audit trail.
+     */
+    @Autowired
+    public SecurityAuditListener(final AuditTrail auditTrail) {
+        this.auditTrail = auditTrail;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    @EventListener
+    public void onSuccess(final AuthenticationSuccessEvent event) {
+        final String username = event.getAuthentication().getName();
+
+        auditTrail.record(AuditRecord.now(AuditEventType.LOGIN_SUCCESS, username, username,
+                getRemoteAddress(event.getAuthentication().getDetails())));
+    }
+
+    @EventListener
+    public void onFailure(final AbstractAuthenticationFailureEvent event) {
+        final String address = getRemoteAddress(event.getAuthentication().getDetails());
+        final String reason = event.getException().getClass().getSimpleName();
+
+        auditTrail.record(AuditRecord.now(AuditEventType.LOGIN_FAILURE, null, event.getAuthentication().getName(),
+                Objects.isNull(address) ? reason : address + " " + reason));
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private static String getRemoteAddress(final Object details) {
+        return (details instanceof WebAuthenticationDetails)
+                ? ((WebAuthenticationDetails) details).getRemoteAddress()
+                : null;
+    }
+
+}
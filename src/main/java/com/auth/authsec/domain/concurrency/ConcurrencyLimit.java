@@ -0,0 +1,98 @@
+package com.auth.authsec.domain.concurrency;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Bounds how many callers run a piece of work at once. With virtual threads
+ * the number of threads no longer limits the load on a downstream resource,
+ * so the limit is a semaphore instead: callers over the limit wait for a
+ * permit up to the timeout, parked without holding a platform thread, and are
+ * rejected afterwards.
+ *
+ * @author Plamen
+ */
+public class ConcurrencyLimit implements MeterBinder {
+
+    private final String name;
+
+    private final int maxConcurrency;
+
+    private final Semaphore permits;
+
+    private final long timeoutMillis;
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructor for this class.
+     *
+     * @param name - name of the limit, used as the meter tag.
+     * @param maxConcurrency - number of callers allowed at once.
+     * @param timeoutMillis - how long a caller waits for a permit.
+     */
+    public ConcurrencyLimit(final String name, final int maxConcurrency, final long timeoutMillis) {
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Waits for a permit. Every successful call must be followed by release().
+     *
+     * @return "false" if no permit was free within the timeout.
+     */
+    public boolean tryAcquire() {
+        try {
+
+            if (permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        rejected.increment();
+        return false;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Registers the permits in use and the rejections.
+     *
+     * @param registry - the registry to bind to.
+     */
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("authsec.concurrency.active", this, limit -> limit.maxConcurrency - limit.permits.availablePermits())
+                .tags("limit", name)
+                .description("The number of callers holding a permit")
+                .register(registry);
+        FunctionCounter.builder("authsec.concurrency.rejected", rejected, LongAdder::doubleValue)
+                .tags("limit", name)
+                .description("The number of callers rejected after waiting for a permit")
+                .register(registry);
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.auth.authsec.domain.concurrency;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Limits the number of requests handled at once. Requests over the limit wait
+ * for a permit, and get a 503 with a Retry-After header if none frees up in
+ * time. Unlimited requests, such as static assets and health checks, pass
+ * without a permit, so a saturated node still serves its pages' assets and
+ * doesn't look dead to the load balancer.
+ *
+ * @author Plamen
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final ConcurrencyLimit limit;
+
+    private final RequestMatcher unlimitedRequests;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param limit - the limit of concurrent requests.
+     * @param unlimitedRequests - requests which need no permit.
+     */
+    public ConcurrencyLimitFilter(final ConcurrencyLimit limit, final RequestMatcher unlimitedRequests) {
+        this.limit = limit;
+        this.unlimitedRequests = unlimitedRequests;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return unlimitedRequests.matches(request);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+            final FilterChain filterChain) throws ServletException, IOException {
+
+        if (!limit.tryAcquire()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many concurrent requests");
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            limit.release();
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.auth.authsec.domain.concurrency;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of JDK 21 and later. The application is still
+ * built for Java 8, so the API is looked up reflectively, once.
+ *
+ * @author Plamen
+ */
+public final class VirtualThreads {
+
+    /**
+     * Thread.ofVirtual(), null on a JDK without virtual threads.
+     */
+    private static final Method OF_VIRTUAL = findOfVirtual();
+
+    private VirtualThreads() {
+        super();
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * @return "true" if the running JDK has virtual threads.
+     */
+    public static boolean isAvailable() {
+        return !Objects.isNull(OF_VIRTUAL);
+    }
+
+    /**
+     * Creates an executor starting a new, named virtual thread for every task.
+     *
+     * @param namePrefix - prefix of the thread names, followed by a counter.
+     * @return the executor.
+     * @throws IllegalStateException if the JDK has no virtual threads.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(final String namePrefix) {
+        if (!isAvailable()) {
+            throw new IllegalStateException("Virtual threads need JDK 21 or later, running on "
+                    + System.getProperty("java.version"));
+        }
+
+        try {
+
+            final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            final ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException
+                | InvocationTargetException e) {
+            throw new IllegalStateException("Virtual threads can't be created", e);
+        }
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private static Method findOfVirtual() {
+        try {
+            return Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+}
@@ -4,4 +4,7 @@ public class Errors {
 
     public static final String INVALID_CREDENTIALS = "Invalid Credentials";
     public static final String USERNAME_ALREADY_EXISTS = "Username Already Exists";
+    public static final String DUPLICATE_USERNAME = "Duplicate Username In Import";
+    public static final String INVALID_ACCOUNT = "Invalid Account Details";
+    public static final String ACCOUNT_NOT_STORED = "Account Could Not Be Stored";
 }
@@ -0,0 +1,61 @@
+package com.auth.authsec.domain.config;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+
+import com.auth.authsec.domain.exceptions.LoginThrottledException;
+import com.auth.authsec.domain.exceptions.PasswordHashingOverloadException;
+
+/**
+ * Failure handler for the native login form. Regular failures redirect back to
+ * the login page with an error, while logins that were shed because the
+ * password hashing pool is saturated get a 503 with a Retry-After header.
+ * Logins rejected by the login throttle get a 429 with a Retry-After header.
+ *
+ * @author Plamen
+ */
+public class LoginFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    /**
+     * Constructor for this class.
+     *
+     * @param defaultFailureUrl - the page to redirect to on regular failures.
+     */
+    public LoginFailureHandler(String defaultFailureUrl) {
+        super(defaultFailureUrl);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response,
+            AuthenticationException exception) throws IOException, ServletException {
+
+        if (exception instanceof PasswordHashingOverloadException) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, exception.getMessage());
+            return;
+        }
+
+        if (exception instanceof LoginThrottledException) {
+            response.setHeader(HttpHeaders.RETRY_AFTER,
+                    Long.toString(((LoginThrottledException) exception).getRetryAfterSeconds()));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), exception.getMessage());
+            return;
+        }
+
+        super.onAuthenticationFailure(request, response, exception);
+    }
+
+}
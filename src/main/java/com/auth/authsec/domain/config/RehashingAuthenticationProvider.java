@@ -0,0 +1,91 @@
+package com.auth.authsec.domain.config;
+
+import java.util.Objects;
+
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.auth.authsec.domain.crypto.UpgradeablePasswordEncoder;
+import com.auth.authsec.domain.exceptions.PasswordHashingOverloadException;
+import com.auth.authsec.domain.security.LoginThrottle;
+import com.auth.authsec.domain.user.UserService;
+
+/**
+ * Authentication provider for the native login, which replaces the stored
+ * password hash after a successful login whenever the hash was created with
+ * another algorithm or a lower work factor than the current one. The raw
+ * password is only known at this point, so this is the one place the hash can
+ * be upgraded transparently.
+ *
+ * Logins rejected by the login throttle fail before the user is loaded or the
+ * password is verified.
+ *
+ * @see DaoAuthenticationProvider
+ * @author Plamen
+ */
+public class RehashingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final UserService userService;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final LoginThrottle loginThrottle;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param userService - service for loading and updating user accounts.
+     * @param passwordEncoder - encoder for user passwords.
+     * @param loginThrottle - throttle of repeatedly failing logins.
+     */
+    public RehashingAuthenticationProvider(UserService userService, PasswordEncoder passwordEncoder,
+            LoginThrottle loginThrottle) {
+        super();
+        this.userService = userService;
+        this.passwordEncoder = passwordEncoder;
+        this.loginThrottle = loginThrottle;
+
+        setUserDetailsService(userService);
+        setPasswordEncoder(passwordEncoder);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        loginThrottle.checkAllowed(authentication);
+        return super.authenticate(authentication);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+            UserDetails user) {
+
+        if (needsRehash(user) && !Objects.isNull(authentication.getCredentials())) {
+            try {
+
+                final String encodedPassword = passwordEncoder.encode(authentication.getCredentials().toString());
+                userService.updatePassword(user.getUsername(), encodedPassword);
+
+            } catch (PasswordHashingOverloadException e) {
+                // The login already succeeded, the hash gets upgraded on a later login.
+            }
+        }
+
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private boolean needsRehash(final UserDetails user) {
+        return (passwordEncoder instanceof UpgradeablePasswordEncoder)
+                && ((UpgradeablePasswordEncoder) passwordEncoder).upgradeEncoding(user.getPassword());
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.auth.authsec.domain.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import com.auth.authsec.domain.datasource.ReadYourWritesWindow;
+import com.auth.authsec.domain.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Read replica configuration, enabled with
+ * "authsec.datasource.replicas.enabled". The primary is still configured
+ * through the "spring.datasource" properties, the replicas share its driver,
+ * its "spring.datasource.hikari" pool settings and, unless configured
+ * otherwise, its credentials.
+ *
+ * @see ReplicaRoutingDataSource
+ * @author Plamen
+ */
+@Configuration
+@ConditionalOnProperty(name = "authsec.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    private static final String REPLICA_NAME_PREFIX = "replica-";
+
+    private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+    /**
+     * The primary's connection pool, configured like the one Spring Boot
+     * creates without replicas.
+     *
+     * @param properties - the "spring.datasource" properties.
+     * @return the pool of the primary.
+     */
+    @Bean
+    @ConfigurationProperties(prefix = HIKARI_PREFIX)
+    public HikariDataSource primaryDataSource(final DataSourceProperties properties) {
+        final HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                .build();
+
+        if (StringUtils.hasText(properties.getName())) {
+            primary.setPoolName(properties.getName());
+        }
+        return primary;
+    }
+
+    /**
+     * Routes between the primary and the replicas.
+     *
+     * @param primaryDataSource - the pool of the primary.
+     * @param properties - the "spring.datasource" properties of the primary.
+     * @param environment - source of the replicas' pool settings.
+     * @param urls - comma separated JDBC URLs of the replicas.
+     * @param username - user of the replicas.
+     * @param password - password of the replicas.
+     * @param validationTimeoutSeconds - how long a replica may take to pass the
+     * health check.
+     * @param readYourWritesMillis - how long a client's reads stay on the
+     * primary after its own write.
+     * @return the routing data source.
+     */
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(final HikariDataSource primaryDataSource,
+            final DataSourceProperties properties, final Environment environment,
+            @Value("${authsec.datasource.replicas.urls:}") final String urls,
+            @Value("${authsec.datasource.replicas.username:${spring.datasource.username:}}") final String username,
+            @Value("${authsec.datasource.replicas.password:${spring.datasource.password:}}") final String password,
+            @Value("${authsec.datasource.replicas.validation-timeout-seconds:2}") final int validationTimeoutSeconds,
+            @Value("${authsec.datasource.replicas.read-your-writes-millis:5000}") final long readYourWritesMillis) {
+
+        final Binder binder = Binder.get(environment);
+        final Map<String, DataSource> replicas = new LinkedHashMap<>();
+
+        for (String url : StringUtils.commaDelimitedListToStringArray(urls)) {
+            if (StringUtils.hasText(url)) {
+                final String name = REPLICA_NAME_PREFIX + replicas.size();
+                final HikariDataSource replica = DataSourceBuilder.create(properties.getClassLoader())
+                        .type(HikariDataSource.class)
+                        .driverClassName(properties.determineDriverClassName())
+                        .build();
+
+                binder.bind(HIKARI_PREFIX, Bindable.ofInstance(replica));
+                replica.setJdbcUrl(url.trim());
+                replica.setUsername(username);
+                replica.setPassword(password);
+                replica.setPoolName(name);
+                replicas.put(name, replica);
+            }
+        }
+
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, validationTimeoutSeconds,
+                new ReadYourWritesWindow(readYourWritesMillis));
+    }
+
+    /**
+     * The data source used by JPA and JDBC. Fetches the connection only when
+     * the first statement runs, after the transaction's read-only flag is
+     * known.
+     *
+     * @param replicaRoutingDataSource
+     * @return the lazy routing data source.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(final ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * Reports the last health check of every replica. The application stays up
+     * without replicas, reads then go to the primary.
+     *
+     * @param replicaRoutingDataSource
+     * @return the "replicas" health indicator.
+     */
+    @Bean
+    public HealthIndicator replicasHealthIndicator(final ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new AbstractHealthIndicator() {
+
+            @Override
+            protected void doHealthCheck(final Health.Builder builder) {
+                builder.up()
+                        .withDetail("healthy", replicaRoutingDataSource.getHealthyReplicaCount())
+                        .withDetail("replicas", replicaRoutingDataSource.getReplicaHealth());
+            }
+        };
+    }
+
+}
@@ -5,12 +5,19 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
-import org.springframework.boot.CommandLineRunner;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
 import com.auth.authsec.domain.role.Role;
+import com.auth.authsec.domain.role.RoleRegistry;
 import com.auth.authsec.domain.role.RoleRepository;
 import com.auth.authsec.domain.user.User;
 import com.auth.authsec.domain.user.User.UserBuilder;
@@ -18,6 +25,14 @@ import com.auth.authsec.domain.user.UserRepository;
 
 /**
  * Configuration class for creating a administrator level user on app start-up.
+ * Also loads the role registry once the default roles exist, upper-cases role
+ * names stored before they were normalized and moves the user id sequence past
+ * the ids handed out before it was introduced.
+ *
+ * All of it runs when the application context is refreshed, which happens
+ * before the embedded web server starts, so no request is served with an
+ * empty role registry or a misaligned sequence. Every step is idempotent, so
+ * refreshes of child contexts are harmless.
  *
  * @see @Component
  *
@@ -36,6 +51,15 @@ public class StartupConfigRunner {
 
     private static final boolean SETTINGS = true;
 
+    /**
+     * On databases without sequences, e.g. MySQL, the user id sequence is a
+     * single row table. Ids used to be generated by the database on insert, so
+     * the table must be moved past the highest existing id.
+     */
+    private static final String ALIGN_USER_ID_TABLE = "UPDATE users_seq "
+            + "SET next_val = (SELECT COALESCE(MAX(user_id), 0) + 1 FROM users) "
+            + "WHERE next_val < (SELECT COALESCE(MAX(user_id), 0) + 1 FROM users)";
+
     /**
      * Constructor for this class.
      */
@@ -50,23 +74,27 @@ public class StartupConfigRunner {
      * @param userRepository - repository for managing user entities.
      * @param roleRepository - repository for managing role entities.
      * @param passwordEncoder - object for encoding user passwords.
-     * @return CommandLineRunner object, which is going to be loaded in the
-     * ApplicationContext on start-up.
+     * @param roleRegistry - in-memory registry of role entities.
+     * @param jdbcTemplate - template for the schema maintenance statements.
+     * @param entityManagerFactory - source of the database dialect.
+     * @return listener of the context refresh, which is going to be loaded in
+     * the ApplicationContext on start-up.
      */
     @Bean
-    private CommandLineRunner runner(final UserRepository userRepository, final RoleRepository roleRepository,
-            final BCryptPasswordEncoder passwordEncoder) {
-        return (args) -> {
-            Role adminRole = roleRepository.findOneByRoleName(ROLE_ADMIN);
-            Role userRole = roleRepository.findOneByRoleName(ROLE_USER);
-
-            if (Objects.isNull(adminRole) || Objects.isNull(userRole)) {
-                adminRole = new Role(ROLE_ADMIN);
-                userRole = new Role(ROLE_USER);
-
-                roleRepository.save(adminRole);
-                roleRepository.save(userRole);
-            }
+    private ApplicationListener<ContextRefreshedEvent> runner(final UserRepository userRepository,
+            final RoleRepository roleRepository, final PasswordEncoder passwordEncoder,
+            final RoleRegistry roleRegistry, final JdbcTemplate jdbcTemplate,
+            final EntityManagerFactory entityManagerFactory) {
+        return (event) -> {
+            alignUserIdSequence(jdbcTemplate,
+                    entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect());
+            userRepository.backfillUsernameKeys();
+            roleRepository.normalizeRoleNames();
+
+            // Only the missing default roles are created, the names are unique.
+            roleRegistry.refresh();
+            Role adminRole = roleRegistry.getOrCreate(ROLE_ADMIN);
+            roleRegistry.getOrCreate(ROLE_USER);
 
             User rootAdmin = userRepository.findOneByUsername(USERNAME);
 
@@ -82,4 +110,18 @@ public class StartupConfigRunner {
         };
     }
 
+    /**
+     * Moves the user id sequence past the existing ids. Only needed where the
+     * dialect has no sequences and the sequence is emulated by a table; real
+     * sequences are only used by databases created after the switch.
+     *
+     * @param jdbcTemplate
+     * @param dialect - dialect of the database.
+     */
+    private static void alignUserIdSequence(final JdbcTemplate jdbcTemplate, final Dialect dialect) {
+        if (!dialect.supportsSequences()) {
+            jdbcTemplate.update(ALIGN_USER_ID_TABLE);
+        }
+    }
+
 }
@@ -0,0 +1,161 @@
+package com.auth.authsec.domain.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import com.auth.authsec.domain.concurrency.ConcurrencyLimit;
+import com.auth.authsec.domain.concurrency.ConcurrencyLimitFilter;
+import com.auth.authsec.domain.concurrency.VirtualThreads;
+import com.auth.authsec.domain.security.LimitedOAuth2Clients;
+
+/**
+ * Virtual-thread request execution, enabled with
+ * "authsec.virtual-threads.enabled" on JDK 21 or later. Tomcat hands every
+ * request to a new virtual thread instead of its platform thread pool, so a
+ * request blocked on the database or an OAuth2 provider parks cheaply instead
+ * of holding one of a few hundred threads.
+ *
+ * Without the pool size as an implicit limit, concurrency is bounded
+ * explicitly: a semaphore limits the requests handled at once, requests over
+ * it get a 503, and a second one limits the outbound OAuth2 calls. The JDBC
+ * connections stay bounded by the connection pool. MySQL Connector/J 5.1
+ * blocks inside synchronized code and pins the carrier thread, so the "jdk21"
+ * Maven profile manages Connector/J 8.0.33.
+ *
+ * @see VirtualThreads
+ * @see ConcurrencyLimit
+ * @author Plamen
+ */
+@Configuration
+@ConditionalOnProperty(name = "authsec.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final String THREAD_NAME_PREFIX = "http-virtual-";
+
+    private static final String REQUESTS_LIMIT = "requests";
+
+    private static final String OAUTH2_LIMIT = "oauth2-calls";
+
+    /**
+     * Starts a virtual thread per request. Tomcat doesn't shut down an
+     * executor it was given, so this configuration does.
+     */
+    private final ExecutorService requestExecutor;
+
+    /**
+     * Constructor for this class.
+     *
+     * @throws IllegalStateException if the JDK has no virtual threads, so a
+     * misconfigured node fails on start-up instead of running on the platform
+     * thread pool unnoticed.
+     */
+    public VirtualThreadConfig() {
+        this.requestExecutor = VirtualThreads.newThreadPerTaskExecutor(THREAD_NAME_PREFIX);
+    }
+
+    /**
+     * Replaces the thread pool of every Tomcat connector with the virtual
+     * thread executor.
+     *
+     * @return the customizer.
+     */
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer() {
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            final ProtocolHandler protocolHandler = connector.getProtocolHandler();
+
+            if (protocolHandler instanceof AbstractProtocol) {
+                ((AbstractProtocol<?>) protocolHandler).setExecutor(requestExecutor);
+            }
+        });
+    }
+
+    /**
+     * @param maxConcurrentRequests - requests handled at once.
+     * @param acquireTimeoutMillis - how long a request waits for a permit.
+     * @return the limit of concurrent requests.
+     */
+    @Bean
+    public ConcurrencyLimit requestConcurrencyLimit(
+            @Value("${authsec.virtual-threads.max-concurrent-requests:1000}") final int maxConcurrentRequests,
+            @Value("${authsec.virtual-threads.acquire-timeout-millis:1000}") final long acquireTimeoutMillis) {
+
+        return new ConcurrencyLimit(REQUESTS_LIMIT, maxConcurrentRequests, acquireTimeoutMillis);
+    }
+
+    /**
+     * Applies the request limit ahead of every other filter, so a rejected
+     * request costs no security or session work. Static assets and the
+     * monitoring endpoints are not limited.
+     *
+     * @param requestConcurrencyLimit
+     * @return the filter registration.
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            @Qualifier("requestConcurrencyLimit") final ConcurrencyLimit requestConcurrencyLimit) {
+
+        final List<RequestMatcher> unlimitedRequests = new ArrayList<>();
+        for (String staticAsset : WebSecurityConfig.STATIC_ASSETS) {
+            unlimitedRequests.add(new AntPathRequestMatcher(staticAsset));
+        }
+        unlimitedRequests.add(EndpointRequest.to(WebSecurityConfig.MONITORING_ENDPOINTS));
+
+        final FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                new ConcurrencyLimitFilter(requestConcurrencyLimit, new OrRequestMatcher(unlimitedRequests)));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    /**
+     * @param maxConcurrentCalls - outbound OAuth2 calls made at once.
+     * @param acquireTimeoutMillis - how long a call waits for a permit.
+     * @return the limit of concurrent OAuth2 calls.
+     */
+    @Bean
+    public ConcurrencyLimit oauth2ConcurrencyLimit(
+            @Value("${authsec.virtual-threads.max-concurrent-oauth2-calls:64}") final int maxConcurrentCalls,
+            @Value("${authsec.virtual-threads.acquire-timeout-millis:1000}") final long acquireTimeoutMillis) {
+
+        return new ConcurrencyLimit(OAUTH2_LIMIT, maxConcurrentCalls, acquireTimeoutMillis);
+    }
+
+    /**
+     * @param oauth2ConcurrencyLimit
+     * @return the OAuth2 login clients bounded by the limit.
+     */
+    @Bean
+    public LimitedOAuth2Clients limitedOAuth2Clients(
+            @Qualifier("oauth2ConcurrencyLimit") final ConcurrencyLimit oauth2ConcurrencyLimit) {
+
+        return new LimitedOAuth2Clients(oauth2ConcurrencyLimit);
+    }
+
+    /**
+     * Stops accepting new tasks once the web server is gone.
+     */
+    @PreDestroy
+    public void shutdown() {
+        requestExecutor.shutdown();
+    }
+
+}
@@ -1,22 +1,49 @@
 package com.auth.authsec.domain.config;
 
+import java.util.Objects;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.client.endpoint.NimbusAuthorizationCodeTokenResponseClient;
+import org.springframework.security.oauth2.client.endpoint.OAuth2AccessTokenResponseClient;
+import org.springframework.security.oauth2.client.endpoint.OAuth2AuthorizationCodeGrantRequest;
+import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
+import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserService;
+import org.springframework.security.oauth2.client.userinfo.DefaultOAuth2UserService;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserService;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 
+import com.auth.authsec.domain.security.CookieAuthorizationRequestRepository;
+import com.auth.authsec.domain.security.LimitedOAuth2Clients;
+import com.auth.authsec.domain.security.LoginThrottle;
+import com.auth.authsec.domain.security.RememberMeTokenStore;
+import com.auth.authsec.domain.security.RotatingRememberMeServices;
+import com.auth.authsec.domain.security.SessionTokenAuthenticationFilter;
+import com.auth.authsec.domain.security.SessionTokenCodec;
+import com.auth.authsec.domain.security.SessionTokenSuccessHandler;
+import com.auth.authsec.domain.security.TokenCookies;
 import com.auth.authsec.domain.user.UserService;
 
 /**
  * Web security configuration for this application. Deals with different login
  * strategies, logout handling, customized user management, CSRF protection,
- * etc.
+ * etc. With "authsec.session.stateless" enabled no HttpSession is used at all,
+ * the login is carried by a signed session token instead.
  *
  * @see @Configuration
  * @see @EnableWebSecurity
@@ -28,6 +55,21 @@ import com.auth.authsec.domain.user.UserService;
 @EnableGlobalMethodSecurity(prePostEnabled = true)
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
+    private static final String REMEMBER_ME_KEY = "ezclap";
+
+    /**
+     * Static assets, which are served without passing through the security
+     * filter chain or the request concurrency limit.
+     */
+    static final String[] STATIC_ASSETS = {"/bootstrap/**", "/jquery/**", "/webjars/**", "/styles.css"};
+
+    /**
+     * Actuator endpoints polled by load balancers and the Prometheus scraper,
+     * which aren't subject to the request concurrency limit. They still
+     * require a login.
+     */
+    static final String[] MONITORING_ENDPOINTS = {"health", "prometheus"};
+
     /**
      * Custom-built user service for creating, storing and managing user
      * entities in the application.
@@ -39,22 +81,62 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
      */
     private final PasswordEncoder bCryptPasswordEncoder;
 
+    /**
+     * Codec of the stateless session tokens, null unless the stateless session
+     * mode is enabled.
+     */
+    private final SessionTokenCodec sessionTokenCodec;
+
+    /**
+     * Store of the persistent remember-me logins.
+     */
+    private final RememberMeTokenStore rememberMeTokenStore;
+
+    /**
+     * Minimal age of a remember-me token before it is rotated.
+     */
+    private final long rememberMeRotationIntervalSeconds;
+
+    /**
+     * Throttle of repeatedly failing native logins.
+     */
+    private final LoginThrottle loginThrottle;
+
+    /**
+     * Wraps the OAuth2 login clients in a concurrency limit, null unless the
+     * virtual-thread mode is enabled.
+     */
+    private final LimitedOAuth2Clients limitedOAuth2Clients;
+
     /**
      * Constructor for this class
      *
      * @param userService
      * @param bCryptPasswordEncoder
+     * @param sessionTokenCodec
+     * @param rememberMeTokenStore
+     * @param rememberMeRotationIntervalSeconds
+     * @param loginThrottle
+     * @param limitedOAuth2Clients
      */
     @Autowired
-    public WebSecurityConfig(UserService userService, PasswordEncoder bCryptPasswordEncoder) {
+    public WebSecurityConfig(UserService userService, PasswordEncoder bCryptPasswordEncoder,
+            ObjectProvider<SessionTokenCodec> sessionTokenCodec, RememberMeTokenStore rememberMeTokenStore,
+            @Value("${authsec.remember-me.rotation-interval-seconds:86400}") long rememberMeRotationIntervalSeconds,
+            LoginThrottle loginThrottle, ObjectProvider<LimitedOAuth2Clients> limitedOAuth2Clients) {
         this.userService = userService;
         this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.sessionTokenCodec = sessionTokenCodec.getIfAvailable();
+        this.rememberMeTokenStore = rememberMeTokenStore;
+        this.rememberMeRotationIntervalSeconds = rememberMeRotationIntervalSeconds;
+        this.loginThrottle = loginThrottle;
+        this.limitedOAuth2Clients = limitedOAuth2Clients.getIfAvailable();
     }
 
     /**
      * Adds authentication based upon the custom UserDetailsService that is
-     * passed in. It then returns a DaoAuthenticationConfigurer to allow
-     * customization of the authentication.
+     * passed in. The provider upgrades outdated password hashes on successful
+     * logins and rejects throttled logins before checking the password.
      *
      *
      * @param authenticationManagerBuilder
@@ -63,8 +145,22 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     @Override
     protected void configure(AuthenticationManagerBuilder authenticationManagerBuilder) throws Exception {
         authenticationManagerBuilder
-                .userDetailsService(this.userService)
-                .passwordEncoder(this.bCryptPasswordEncoder);
+                .authenticationProvider(new RehashingAuthenticationProvider(this.userService, this.bCryptPasswordEncoder,
+                        this.loginThrottle));
+    }
+
+    /**
+     * Static assets are public and never need a session, so their requests
+     * skip the security filter chain altogether. They are served with content
+     * hashed URLs and far-future cache headers, see the "spring.resources"
+     * properties.
+     *
+     * @param web
+     * @throws Exception
+     */
+    @Override
+    public void configure(WebSecurity web) throws Exception {
+        web.ignoring().antMatchers(STATIC_ASSETS);
     }
 
     /**
@@ -81,19 +177,26 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     protected void configure(HttpSecurity httpSecurity) throws Exception {
         httpSecurity
                 .authorizeRequests()
-                .antMatchers("/", "/home", "/register",
-                        "/logout", "/bootstrap/**", "/jquery/**",
-                        "/fragments/**", "/styles.css", "/webjars/**")
+                .antMatchers("/", "/home", "/register", "/native-login",
+                        "/logout", "/fragments/**")
                 .permitAll()
                 .anyRequest()
                 .authenticated()
                 .and()
                 .oauth2Login()
                 .defaultSuccessUrl("/home")
+                .tokenEndpoint()
+                .accessTokenResponseClient(getAccessTokenResponseClient())
+                .and()
+                .userInfoEndpoint()
+                .userService(getOAuth2UserService())
+                .oidcUserService(getOidcUserService())
+                .and()
                 .and()
                 .formLogin()
                 .loginPage("/native-login")
                 .defaultSuccessUrl("/home")
+                .failureHandler(new LoginFailureHandler("/native-login?error"))
                 .permitAll()
                 .usernameParameter("username")
                 .passwordParameter("password")
@@ -106,15 +209,91 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .permitAll()
                 .and()
                 .rememberMe()
-                .key("ezclap")
+                .rememberMeServices(new RotatingRememberMeServices(REMEMBER_ME_KEY, this.userService,
+                        this.rememberMeTokenStore, this.rememberMeRotationIntervalSeconds))
+                .key(REMEMBER_ME_KEY)
                 .and()
                 .csrf()
                 .disable();
 
+        if (!Objects.isNull(sessionTokenCodec)) {
+            configureStatelessSessions(httpSecurity);
+        }
+
         // httpSecurity.csrf().csrfTokenRepository(getCookieCsrfTokenRepository());
         // TODO: Configure CSRF!
     }
 
+    /**
+     * Replaces the HttpSession with signed session tokens. Logins issue the
+     * token as a cookie, every request is authenticated from its token and the
+     * OAuth2 authorization request travels in a signed cookie, so no request
+     * depends on the node that handled the login.
+     *
+     * @param httpSecurity
+     * @throws Exception
+     */
+    private void configureStatelessSessions(HttpSecurity httpSecurity) throws Exception {
+        final SessionTokenSuccessHandler successHandler = new SessionTokenSuccessHandler(sessionTokenCodec, "/home");
+
+        httpSecurity
+                .sessionManagement()
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
+                .oauth2Login()
+                .successHandler(successHandler)
+                .authorizationEndpoint()
+                .authorizationRequestRepository(new CookieAuthorizationRequestRepository(sessionTokenCodec));
+
+        httpSecurity
+                .formLogin()
+                .successHandler(successHandler)
+                .and()
+                .logout()
+                .deleteCookies(TokenCookies.SESSION_COOKIE)
+                .and()
+                .addFilterBefore(new SessionTokenAuthenticationFilter(sessionTokenCodec, userService),
+                        UsernamePasswordAuthenticationFilter.class);
+    }
+
+    /**
+     * The token exchange of OAuth2 logins. With virtual request threads, which
+     * no longer bound it through the thread pool, it is wrapped in the
+     * concurrency limit.
+     *
+     * @return the access token response client.
+     */
+    private OAuth2AccessTokenResponseClient<OAuth2AuthorizationCodeGrantRequest> getAccessTokenResponseClient() {
+        final OAuth2AccessTokenResponseClient<OAuth2AuthorizationCodeGrantRequest> client =
+                new NimbusAuthorizationCodeTokenResponseClient();
+
+        return Objects.isNull(limitedOAuth2Clients) ? client : limitedOAuth2Clients.limit(client);
+    }
+
+    /**
+     * The user info request of OAuth2 logins, wrapped in the concurrency limit
+     * with virtual request threads.
+     *
+     * @return the OAuth2 user service.
+     */
+    private OAuth2UserService<OAuth2UserRequest, OAuth2User> getOAuth2UserService() {
+        final OAuth2UserService<OAuth2UserRequest, OAuth2User> service = new DefaultOAuth2UserService();
+
+        return Objects.isNull(limitedOAuth2Clients) ? service : limitedOAuth2Clients.limit(service);
+    }
+
+    /**
+     * The user info request of OpenID Connect logins, wrapped in the
+     * concurrency limit with virtual request threads.
+     *
+     * @return the OIDC user service.
+     */
+    private OAuth2UserService<OidcUserRequest, OidcUser> getOidcUserService() {
+        final OAuth2UserService<OidcUserRequest, OidcUser> service = new OidcUserService();
+
+        return Objects.isNull(limitedOAuth2Clients) ? service : limitedOAuth2Clients.limit(service);
+    }
+
     @Bean
     public CookieCsrfTokenRepository getCookieCsrfTokenRepository() {
         return CookieCsrfTokenRepository.withHttpOnlyFalse();
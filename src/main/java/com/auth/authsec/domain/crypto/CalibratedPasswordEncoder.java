@@ -0,0 +1,240 @@
+package com.auth.authsec.domain.crypto;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Delegating password encoder, which picks the algorithm by the prefix of the
+ * stored hash. New hashes are prefixed with the algorithm and its work factor:
+ *
+ * <pre>
+ * {bcrypt}$2a$12$...           - BCrypt, the cost is part of the hash itself.
+ * {pbkdf2@310000}9f86d081...   - PBKDF2 with 310000 iterations.
+ * $2a$10$...                   - legacy BCrypt hash without a prefix.
+ * </pre>
+ *
+ * Since the work factor is always recoverable from the hash, hashes created
+ * with older parameters keep verifying after the parameters change and can be
+ * upgraded on the next successful login.
+ *
+ * The work factor in use is published as the "authsec.password.work.factor"
+ * gauge, so nodes calibrated to different factors show up side by side.
+ *
+ * @author Plamen
+ */
+public class CalibratedPasswordEncoder implements UpgradeablePasswordEncoder, MeterBinder {
+
+    public static final String BCRYPT = "bcrypt";
+
+    public static final String PBKDF2 = "pbkdf2";
+
+    private static final String PREFIX = "{";
+
+    private static final String SUFFIX = "}";
+
+    private static final String PARAMETER_SEPARATOR = "@";
+
+    private static final String BCRYPT_HASH_PREFIX = "$2";
+
+    /**
+     * The algorithm new hashes are created with.
+     */
+    private final String algorithm;
+
+    private final int bcryptStrength;
+
+    private final int pbkdf2Iterations;
+
+    private final String pbkdf2Secret;
+
+    private final BCryptPasswordEncoder bcrypt;
+
+    /**
+     * PBKDF2 encoders by iteration count, so hashes with any historic
+     * iteration count can be verified.
+     */
+    private final Map<Integer, Pbkdf2PasswordEncoder> pbkdf2Encoders = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for this class.
+     *
+     * @param algorithm - the algorithm new hashes are created with.
+     * @param bcryptStrength - the BCrypt cost.
+     * @param pbkdf2Iterations - the PBKDF2 iteration count.
+     * @param pbkdf2Secret - the PBKDF2 secret, mixed into every PBKDF2 hash.
+     */
+    public CalibratedPasswordEncoder(final String algorithm, final int bcryptStrength, final int pbkdf2Iterations,
+            final String pbkdf2Secret) {
+
+        if (!BCRYPT.equals(algorithm) && !PBKDF2.equals(algorithm)) {
+            throw new IllegalArgumentException("Unsupported password hashing algorithm: " + algorithm);
+        }
+
+        this.algorithm = algorithm;
+        this.bcryptStrength = bcryptStrength;
+        this.pbkdf2Iterations = pbkdf2Iterations;
+        this.pbkdf2Secret = pbkdf2Secret;
+        this.bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String encode(final CharSequence rawPassword) {
+        if (BCRYPT.equals(algorithm)) {
+            return PREFIX + BCRYPT + SUFFIX + bcrypt.encode(rawPassword);
+        }
+        return PREFIX + PBKDF2 + PARAMETER_SEPARATOR + pbkdf2Iterations + SUFFIX
+                + pbkdf2(pbkdf2Iterations).encode(rawPassword);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean matches(final CharSequence rawPassword, final String encodedPassword) {
+        if (Objects.isNull(encodedPassword)) {
+            return false;
+        }
+
+        final String id = extractId(encodedPassword);
+        final String hash = extractHash(encodedPassword);
+
+        if (Objects.isNull(id) || BCRYPT.equals(id)) {
+            return hash.startsWith(BCRYPT_HASH_PREFIX) && bcrypt.matches(rawPassword, hash);
+        }
+
+        final Integer iterations = extractPbkdf2Iterations(id);
+
+        if (Objects.isNull(iterations)) {
+            return false;
+        }
+        return pbkdf2(iterations).matches(rawPassword, hash);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upgradeEncoding(final String encodedPassword) {
+        if (Objects.isNull(encodedPassword)) {
+            return false;
+        }
+
+        final String id = extractId(encodedPassword);
+
+        if (Objects.isNull(id)) {
+            return true;
+        }
+
+        if (BCRYPT.equals(id)) {
+            return !BCRYPT.equals(algorithm) || extractBCryptStrength(extractHash(encodedPassword)) < bcryptStrength;
+        }
+
+        final Integer iterations = extractPbkdf2Iterations(id);
+        return !PBKDF2.equals(algorithm) || Objects.isNull(iterations) || iterations < pbkdf2Iterations;
+    }
+
+    /**
+     * Registers the work factor new hashes are created with.
+     *
+     * @param registry - the registry to bind to.
+     */
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("authsec.password.work.factor", this,
+                encoder -> BCRYPT.equals(encoder.algorithm) ? encoder.bcryptStrength : encoder.pbkdf2Iterations)
+                .tags("algorithm", algorithm)
+                .description("The BCrypt cost or PBKDF2 iteration count of new password hashes")
+                .register(registry);
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getBCryptStrength() {
+        return bcryptStrength;
+    }
+
+    public int getPbkdf2Iterations() {
+        return pbkdf2Iterations;
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private PasswordEncoder pbkdf2(final int iterations) {
+        return pbkdf2Encoders.computeIfAbsent(iterations, i -> new Pbkdf2PasswordEncoder(pbkdf2Secret, i, 256));
+    }
+
+    /**
+     * @param encodedPassword
+     * @return the algorithm id between the curly braces, or null for legacy
+     * hashes without a prefix.
+     */
+    private static String extractId(final String encodedPassword) {
+        if (!encodedPassword.startsWith(PREFIX)) {
+            return null;
+        }
+
+        final int end = encodedPassword.indexOf(SUFFIX);
+        return end < 0 ? null : encodedPassword.substring(PREFIX.length(), end);
+    }
+
+    private static String extractHash(final String encodedPassword) {
+        if (!encodedPassword.startsWith(PREFIX)) {
+            return encodedPassword;
+        }
+
+        final int end = encodedPassword.indexOf(SUFFIX);
+        return end < 0 ? encodedPassword : encodedPassword.substring(end + SUFFIX.length());
+    }
+
+    /**
+     * @param id - algorithm id such as "pbkdf2@310000".
+     * @return the iteration count, or null if the id is not a valid PBKDF2 id.
+     */
+    private static Integer extractPbkdf2Iterations(final String id) {
+        final String idPrefix = PBKDF2 + PARAMETER_SEPARATOR;
+
+        if (!id.startsWith(idPrefix)) {
+            return null;
+        }
+
+        try {
+            return Integer.valueOf(id.substring(idPrefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param hash - BCrypt hash such as "$2a$12$...".
+     * @return the cost of the hash, or 0 if it cannot be read.
+     */
+    private static int extractBCryptStrength(final String hash) {
+        final String[] parts = hash.split("\\$");
+
+        if (parts.length < 3) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+}
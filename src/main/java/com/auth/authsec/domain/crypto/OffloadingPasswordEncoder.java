@@ -0,0 +1,94 @@
+package com.auth.authsec.domain.crypto;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Password encoder that runs the actual hashing of its delegate on the
+ * dedicated password hashing pool instead of the calling request thread.
+ * Checking whether a hash needs upgrading is cheap and stays on the caller.
+ *
+ * The time spent hashing and verifying is recorded by the
+ * "authsec.password.hashing" timer, excluding the time queued for a worker,
+ * which the pool records itself.
+ *
+ * @see PasswordHashingExecutor
+ * @author Plamen
+ */
+public class OffloadingPasswordEncoder implements UpgradeablePasswordEncoder {
+
+    /**
+     * The encoder doing the actual hashing.
+     */
+    private final PasswordEncoder delegate;
+
+    /**
+     * The pool the hashing runs on.
+     */
+    private final PasswordHashingExecutor executor;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param delegate - encoder doing the actual hashing.
+     * @param executor - pool the hashing runs on.
+     * @param meterRegistry - registry of the hashing timers.
+     */
+    public OffloadingPasswordEncoder(final PasswordEncoder delegate, final PasswordHashingExecutor executor,
+            final MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.encodeTimer = hashingTimer(meterRegistry, "encode");
+        this.matchesTimer = hashingTimer(meterRegistry, "matches");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String encode(final CharSequence rawPassword) {
+        return executor.execute(() -> encodeTimer.record(() -> delegate.encode(rawPassword)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean matches(final CharSequence rawPassword, final String encodedPassword) {
+        return executor.execute(() -> matchesTimer.record(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * The encoder doing the actual hashing, for callers that schedule the
+     * hashing themselves, e.g. bulk imports.
+     *
+     * @return the delegate encoder.
+     */
+    public PasswordEncoder getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upgradeEncoding(final String encodedPassword) {
+        return (delegate instanceof UpgradeablePasswordEncoder)
+                && ((UpgradeablePasswordEncoder) delegate).upgradeEncoding(encodedPassword);
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private static Timer hashingTimer(final MeterRegistry meterRegistry, final String operation) {
+        return Timer.builder("authsec.password.hashing")
+                .tag("operation", operation)
+                .description("Time spent hashing or verifying a password on a hashing worker")
+                .register(meterRegistry);
+    }
+
+}
@@ -0,0 +1,173 @@
+package com.auth.authsec.domain.crypto;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+/**
+ * Picks the work factor of the password hashing algorithms on start-up, by
+ * timing a cheap hash on the current hardware and scaling it up to the
+ * configured target latency. The result never goes below the configured
+ * minimums, so a slow machine cannot silently weaken the stored hashes.
+ *
+ * Every node calibrates on its own hardware, so nodes of different speed pick
+ * different work factors. Hashes are only ever upgraded, never downgraded, so
+ * this is safe, but a cluster that must agree on one work factor pins it: a
+ * positive fixed strength or iteration count skips the timing altogether.
+ *
+ * @author Plamen
+ */
+public class PasswordEncoderCalibrator {
+
+    private static final String SAMPLE_PASSWORD = "calibration-sample-password";
+
+    private static final int SAMPLES = 5;
+
+    private static final int BCRYPT_SAMPLE_STRENGTH = 6;
+
+    private static final int BCRYPT_MAX_STRENGTH = 31;
+
+    private static final int PBKDF2_SAMPLE_ITERATIONS = 10000;
+
+    private static final int PBKDF2_ITERATION_STEP = 1000;
+
+    /**
+     * Desired time for hashing a single password.
+     */
+    private final long targetMillis;
+
+    private final int minBCryptStrength;
+
+    private final int minPbkdf2Iterations;
+
+    /**
+     * Pinned BCrypt cost, 0 to calibrate.
+     */
+    private final int fixedBCryptStrength;
+
+    /**
+     * Pinned PBKDF2 iteration count, 0 to calibrate.
+     */
+    private final int fixedPbkdf2Iterations;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param targetMillis - desired time for hashing a single password.
+     * @param minBCryptStrength - lowest BCrypt cost to ever use.
+     * @param minPbkdf2Iterations - lowest PBKDF2 iteration count to ever use.
+     */
+    public PasswordEncoderCalibrator(final long targetMillis, final int minBCryptStrength,
+            final int minPbkdf2Iterations) {
+
+        this(targetMillis, minBCryptStrength, minPbkdf2Iterations, 0, 0);
+    }
+
+    /**
+     * Constructor for this class.
+     *
+     * @param targetMillis - desired time for hashing a single password.
+     * @param minBCryptStrength - lowest BCrypt cost to ever use.
+     * @param minPbkdf2Iterations - lowest PBKDF2 iteration count to ever use.
+     * @param fixedBCryptStrength - BCrypt cost used by every node, 0 to
+     * calibrate.
+     * @param fixedPbkdf2Iterations - PBKDF2 iteration count used by every
+     * node, 0 to calibrate.
+     * @throws IllegalArgumentException if a pinned work factor is below its
+     * minimum.
+     */
+    public PasswordEncoderCalibrator(final long targetMillis, final int minBCryptStrength,
+            final int minPbkdf2Iterations, final int fixedBCryptStrength, final int fixedPbkdf2Iterations) {
+
+        if ((fixedBCryptStrength > 0 && fixedBCryptStrength < minBCryptStrength)
+                || (fixedPbkdf2Iterations > 0 && fixedPbkdf2Iterations < minPbkdf2Iterations)) {
+            throw new IllegalArgumentException("Pinned password work factor below the minimum: bcrypt strength "
+                    + fixedBCryptStrength + ", pbkdf2 iterations " + fixedPbkdf2Iterations);
+        }
+
+        this.targetMillis = targetMillis;
+        this.minBCryptStrength = minBCryptStrength;
+        this.minPbkdf2Iterations = minPbkdf2Iterations;
+        this.fixedBCryptStrength = fixedBCryptStrength;
+        this.fixedPbkdf2Iterations = fixedPbkdf2Iterations;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Creates an encoder for the given algorithm, with its work factor
+     * calibrated to the target latency.
+     *
+     * @param algorithm - "bcrypt" or "pbkdf2".
+     * @param pbkdf2Secret - the PBKDF2 secret.
+     * @return the calibrated encoder.
+     */
+    public CalibratedPasswordEncoder calibrate(final String algorithm, final String pbkdf2Secret) {
+        final int bcryptStrength = CalibratedPasswordEncoder.BCRYPT.equals(algorithm) ? calibrateBCrypt()
+                : minBCryptStrength;
+        final int pbkdf2Iterations = CalibratedPasswordEncoder.PBKDF2.equals(algorithm)
+                ? calibratePbkdf2(pbkdf2Secret) : minPbkdf2Iterations;
+
+        return new CalibratedPasswordEncoder(algorithm, bcryptStrength, pbkdf2Iterations, pbkdf2Secret);
+    }
+
+    /**
+     * Every step of the BCrypt cost doubles the hashing time, so the cost is
+     * the sample cost plus the number of doublings that still fit into the
+     * target.
+     *
+     * @return the BCrypt cost, the pinned one if there is one.
+     */
+    public int calibrateBCrypt() {
+        if (fixedBCryptStrength > 0) {
+            return fixedBCryptStrength;
+        }
+
+        final double sampleMillis = fastestOf(new BCryptPasswordEncoder(BCRYPT_SAMPLE_STRENGTH));
+        final int doublings = (int) Math.floor(Math.log(targetMillis / sampleMillis) / Math.log(2));
+
+        return clamp(BCRYPT_SAMPLE_STRENGTH + doublings, minBCryptStrength, BCRYPT_MAX_STRENGTH);
+    }
+
+    /**
+     * PBKDF2 time grows linearly with the iteration count.
+     *
+     * @param secret - the PBKDF2 secret.
+     * @return the PBKDF2 iteration count, the pinned one if there is one.
+     */
+    public int calibratePbkdf2(final String secret) {
+        if (fixedPbkdf2Iterations > 0) {
+            return fixedPbkdf2Iterations;
+        }
+
+        final double sampleMillis = fastestOf(new Pbkdf2PasswordEncoder(secret, PBKDF2_SAMPLE_ITERATIONS, 256));
+        final long iterations = (long) (PBKDF2_SAMPLE_ITERATIONS * (targetMillis / sampleMillis));
+        final long rounded = iterations / PBKDF2_ITERATION_STEP * PBKDF2_ITERATION_STEP;
+
+        return (int) Math.max(minPbkdf2Iterations, Math.min(rounded, Integer.MAX_VALUE));
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Times a few hashes and keeps the fastest one, which is the least
+     * affected by JIT warm-up and other start-up work.
+     *
+     * @param encoder
+     * @return the fastest hashing time in milliseconds, never zero.
+     */
+    private static double fastestOf(final PasswordEncoder encoder) {
+        long fastest = Long.MAX_VALUE;
+
+        for (int i = 0; i < SAMPLES; i++) {
+            final long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+
+        return Math.max(fastest, 1L) / 1_000_000.0;
+    }
+
+    private static int clamp(final int value, final int min, final int max) {
+        return Math.max(min, Math.min(value, max));
+    }
+
+}
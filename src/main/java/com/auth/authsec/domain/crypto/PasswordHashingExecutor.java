@@ -0,0 +1,194 @@
+package com.auth.authsec.domain.crypto;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.auth.authsec.domain.exceptions.PasswordHashingOverloadException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Dedicated worker pool for password hashing and verification. The pool is
+ * sized to the number of cores and backed by a bounded queue, so a login flood
+ * can only ever keep that many cores busy with hashing while the request
+ * threads stay free for everything else. Once the queue is full, new work is
+ * rejected with a PasswordHashingOverloadException instead of piling up.
+ *
+ * @author Plamen
+ */
+@Component
+public class PasswordHashingExecutor implements MeterBinder {
+
+    private static final String THREAD_NAME_PREFIX = "password-hashing-";
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Number of hashing tasks that have started, and the total time they spent
+     * waiting in the queue.
+     */
+    private final LongAdder startedTasks = new LongAdder();
+
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    private final LongAdder rejectedTasks = new LongAdder();
+
+    /**
+     * Constructor for this class.
+     *
+     * @param threads - number of worker threads, defaults to the number of
+     * available processors when not positive.
+     * @param queueCapacity - maximum number of tasks waiting for a worker.
+     */
+    @Autowired
+    public PasswordHashingExecutor(@Value("${authsec.password-hashing.threads:0}") final int threads,
+            @Value("${authsec.password-hashing.queue-capacity:64}") final int queueCapacity) {
+
+        final int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Runs the given task on the hashing pool and waits for its result.
+     *
+     * @param task - the hashing or verification to run.
+     * @return the task's result.
+     * @throws PasswordHashingOverloadException if the queue is full or the
+     * waiting thread is interrupted.
+     */
+    public <T> T execute(final Callable<T> task) {
+        return await(submit(task));
+    }
+
+    /**
+     * Queues the given task on the hashing pool without waiting for it. Bulk
+     * callers keep only a few tasks in flight, so the queue stays free for
+     * interactive logins.
+     *
+     * @param task - the hashing or verification to run.
+     * @return the pending result of the task.
+     * @throws PasswordHashingOverloadException if the queue is full.
+     */
+    public <T> Future<T> submit(final Callable<T> task) {
+        final long submittedAt = System.nanoTime();
+
+        try {
+
+            return executor.submit(() -> {
+                totalWaitNanos.add(System.nanoTime() - submittedAt);
+                startedTasks.increment();
+                return task.call();
+            });
+
+        } catch (RejectedExecutionException e) {
+            rejectedTasks.increment();
+            throw new PasswordHashingOverloadException(e);
+        }
+    }
+
+    /**
+     * Waits for a task queued by submit.
+     *
+     * @param future - the pending result of the task.
+     * @return the task's result.
+     * @throws PasswordHashingOverloadException if the waiting thread is
+     * interrupted.
+     */
+    public <T> T await(final Future<T> future) {
+        try {
+
+            return future.get();
+
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingOverloadException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @return the number of worker threads.
+     */
+    public int getPoolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    /**
+     * Registers the queue depth, wait time and rejection meters of the pool.
+     *
+     * @param registry - the registry to bind to.
+     */
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("authsec.password.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("The number of password hashing tasks waiting for a worker")
+                .register(registry);
+        Gauge.builder("authsec.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("The number of workers currently hashing a password")
+                .register(registry);
+        FunctionTimer.builder("authsec.password.hashing.wait", this,
+                e -> e.startedTasks.sum(), e -> e.totalWaitNanos.sum(), TimeUnit.NANOSECONDS)
+                .description("Time password hashing tasks spent queued before a worker picked them up")
+                .register(registry);
+        FunctionCounter.builder("authsec.password.hashing.rejected", rejectedTasks, LongAdder::doubleValue)
+                .description("The number of password hashing tasks shed because the queue was full")
+                .register(registry);
+    }
+
+    /**
+     * Stops the workers when the application context shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Names the hashing workers and marks them as daemon threads.
+     */
+    private static final class HashingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
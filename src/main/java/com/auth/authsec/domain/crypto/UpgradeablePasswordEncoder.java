@@ -0,0 +1,23 @@
+package com.auth.authsec.domain.crypto;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * A password encoder that can tell whether a stored hash was produced with
+ * weaker parameters than the ones it currently encodes with, so the hash can
+ * be replaced the next time the raw password is known.
+ *
+ * @author Plamen
+ */
+public interface UpgradeablePasswordEncoder extends PasswordEncoder {
+
+    /**
+     * Checks if the given hash should be re-encoded.
+     *
+     * @param encodedPassword - the stored hash.
+     * @return "true" if the hash uses another algorithm or a lower work factor
+     * than the current one, "false" otherwise.
+     */
+    boolean upgradeEncoding(String encodedPassword);
+
+}
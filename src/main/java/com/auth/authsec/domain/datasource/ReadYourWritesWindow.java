@@ -0,0 +1,115 @@
+package com.auth.authsec.domain.datasource;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Remembers which clients wrote to the primary recently, so their reads can
+ * stay on the primary until the replicas caught up with their own changes.
+ *
+ * A client is the logged-in user, or the remote address of an anonymous
+ * request, so e.g. a login right after the registration still finds the new
+ * account. Work without either, like scheduled jobs, is never tracked.
+ *
+ * Entries expire with the window, so the memory used is bounded by the number
+ * of clients writing within one window.
+ *
+ * @author Plamen
+ */
+public class ReadYourWritesWindow {
+
+    private static final String USER_PREFIX = "user:";
+
+    private static final String ADDRESS_PREFIX = "address:";
+
+    private final long windowNanos;
+
+    /**
+     * System.nanoTime of the last write, by client.
+     */
+    private final ConcurrentMap<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for this class.
+     *
+     * @param windowMillis - how long the reads of a client stay on the primary
+     * after its last write, 0 to never keep them there.
+     */
+    public ReadYourWritesWindow(final long windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Records a write of the current client.
+     */
+    public void recordWrite() {
+        final String client = currentClient();
+
+        if (windowNanos > 0 && !Objects.isNull(client)) {
+            lastWrites.put(client, System.nanoTime());
+        }
+    }
+
+    /**
+     * @return "true" if the current client wrote within the window.
+     */
+    public boolean isOpen() {
+        final String client = currentClient();
+
+        if (Objects.isNull(client)) {
+            return false;
+        }
+
+        final Long writtenAt = lastWrites.get(client);
+
+        if (Objects.isNull(writtenAt)) {
+            return false;
+        }
+
+        if (System.nanoTime() - writtenAt < windowNanos) {
+            return true;
+        }
+
+        lastWrites.remove(client, writtenAt);
+        return false;
+    }
+
+    /**
+     * Forgets the writes that left the window.
+     */
+    public void purgeExpired() {
+        final long now = System.nanoTime();
+        lastWrites.values().removeIf(writtenAt -> now - writtenAt >= windowNanos);
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * @return the key of the current client, null if there is none.
+     */
+    private static String currentClient() {
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (!Objects.isNull(authentication) && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return USER_PREFIX + authentication.getName().toLowerCase(Locale.ROOT);
+        }
+
+        final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+        return (attributes instanceof ServletRequestAttributes)
+                ? ADDRESS_PREFIX + ((ServletRequestAttributes) attributes).getRequest().getRemoteAddr()
+                : null;
+    }
+
+}
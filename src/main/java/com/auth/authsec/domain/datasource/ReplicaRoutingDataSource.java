@@ -0,0 +1,302 @@
+package com.auth.authsec.domain.datasource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Data source sending read-only transactions to the replicas and everything
+ * else to the primary.
+ *
+ * The decision is taken when a connection is requested, from the read-only
+ * flag of the current transaction, so the data source has to be wrapped in a
+ * LazyConnectionDataSourceProxy; otherwise the transaction manager fetches
+ * the connection before the flag is set.
+ *
+ * Read-only work is spread round-robin over the healthy replicas. It stays on
+ * the primary when no replica is healthy, when the replica fails to hand out
+ * a connection and, for a short window, after the same client committed a
+ * write, so a user always sees their own changes even if the replicas lag.
+ * Reads that must never be stale, e.g. because their result is cached, are
+ * pinned to the primary with readFromPrimary, without counting as a write.
+ * Replicas are validated periodically and come back once they pass again.
+ *
+ * @author Plamen
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder, Closeable {
+
+    public static final String PRIMARY = "primary";
+
+    /**
+     * Set on the threads running readFromPrimary.
+     */
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final int validationTimeoutSeconds;
+
+    private final ReadYourWritesWindow readYourWritesWindow;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private final LongAdder primaryRoutes = new LongAdder();
+
+    private final LongAdder replicaRoutes = new LongAdder();
+
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * Constructor for this class.
+     *
+     * @param primary - the data source of all writes.
+     * @param replicas - the read-only data sources by name.
+     * @param validationTimeoutSeconds - how long a replica may take to pass the
+     * health check.
+     * @param readYourWritesWindow - clients whose reads stay on the primary.
+     */
+    public ReplicaRoutingDataSource(final DataSource primary, final Map<String, DataSource> replicas,
+            final int validationTimeoutSeconds, final ReadYourWritesWindow readYourWritesWindow) {
+
+        this.primary = primary;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.readYourWritesWindow = readYourWritesWindow;
+
+        final Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+
+        replicas.forEach((name, dataSource) -> {
+            this.replicas.add(new Replica(name, dataSource));
+            targets.put(name, dataSource);
+        });
+
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Hands out a connection of the replica picked for the current work, or
+     * of the primary if the replica can't.
+     *
+     * @return the connection.
+     * @throws SQLException if the primary can't hand out a connection.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        final Replica replica = route();
+
+        if (!Objects.isNull(replica)) {
+            try {
+
+                final Connection connection = replica.dataSource.getConnection();
+                replicaRoutes.increment();
+                return connection;
+
+            } catch (SQLException e) {
+                replica.healthy = false;
+                fallbacks.increment();
+            }
+        }
+
+        primaryRoutes.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Runs the given work with its read-only transactions served by the
+     * primary. Unlike a read-write transaction, this doesn't keep the
+     * client's later reads on the primary.
+     *
+     * @param work - the reads to run, starting their own transactions.
+     * @return the result of the work.
+     */
+    public static <T> T readFromPrimary(final Supplier<T> work) {
+        final boolean nested = !Objects.isNull(PRIMARY_READS.get());
+        PRIMARY_READS.set(Boolean.TRUE);
+
+        try {
+
+            return work.get();
+
+        } finally {
+            if (!nested) {
+                PRIMARY_READS.remove();
+            }
+        }
+    }
+
+    /**
+     * Validates every replica, marking it healthy or not, and forgets the
+     * expired read-your-writes entries.
+     */
+    @Scheduled(fixedDelayString = "${authsec.datasource.replicas.health-check-interval-millis:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+
+                replica.healthy = connection.isValid(validationTimeoutSeconds);
+
+            } catch (SQLException e) {
+                replica.healthy = false;
+            }
+        }
+
+        readYourWritesWindow.purgeExpired();
+    }
+
+    /**
+     * Closes the pools of the primary and the replicas.
+     *
+     * @throws IOException if a pool can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            closeIfPossible(replica.dataSource);
+        }
+        closeIfPossible(primary);
+    }
+
+    /**
+     * Registers the routing counters and the number of healthy replicas.
+     *
+     * @param registry - the registry to bind to.
+     */
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("authsec.datasource.routed", primaryRoutes, LongAdder::doubleValue)
+                .tags("target", PRIMARY)
+                .description("The number of connections handed out by the primary")
+                .register(registry);
+        FunctionCounter.builder("authsec.datasource.routed", replicaRoutes, LongAdder::doubleValue)
+                .tags("target", "replica")
+                .description("The number of connections handed out by a replica")
+                .register(registry);
+        FunctionCounter.builder("authsec.datasource.replica.fallbacks", fallbacks, LongAdder::doubleValue)
+                .description("The number of read-only connections taken from the primary after a replica failed")
+                .register(registry);
+        Gauge.builder("authsec.datasource.replicas.healthy", this, ReplicaRoutingDataSource::getHealthyReplicaCount)
+                .description("The number of replicas passing the health check")
+                .register(registry);
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    /**
+     * @return whether each replica passed its last health check, by name.
+     */
+    public Map<String, Boolean> getReplicaHealth() {
+        final Map<String, Boolean> health = new LinkedHashMap<>();
+        replicas.forEach(replica -> health.put(replica.name, replica.healthy));
+        return Collections.unmodifiableMap(health);
+    }
+
+    public int getHealthyReplicaCount() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Used by the routing data source for connections with explicit
+     * credentials.
+     *
+     * @return the name of the replica picked for the current work, or PRIMARY.
+     */
+    @Override
+    protected Object determineCurrentLookupKey() {
+        final Replica replica = route();
+        return Objects.isNull(replica) ? PRIMARY : replica.name;
+    }
+
+    /**
+     * Picks the replica for the current work. A read-write transaction is
+     * remembered on commit, so the client's next reads stay on the primary.
+     *
+     * @return the replica, null for the primary.
+     */
+    private Replica route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()
+                    && TransactionSynchronizationManager.isSynchronizationActive()) {
+
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                    @Override
+                    public void afterCommit() {
+                        readYourWritesWindow.recordWrite();
+                    }
+                });
+            }
+            return null;
+        }
+
+        if (replicas.isEmpty() || !Objects.isNull(PRIMARY_READS.get()) || readYourWritesWindow.isOpen()) {
+            return null;
+        }
+
+        final int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+
+        for (int i = 0; i < replicas.size(); i++) {
+            final Replica replica = replicas.get((start + i) % replicas.size());
+
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private static void closeIfPossible(final DataSource dataSource) throws IOException {
+        if (dataSource instanceof Closeable) {
+            ((Closeable) dataSource).close();
+        }
+    }
+
+    /**
+     * A replica and the result of its last health check.
+     */
+    private static final class Replica {
+
+        private final String name;
+
+        private final DataSource dataSource;
+
+        /**
+         * Replicas are trusted until their first failed check or connection.
+         */
+        private volatile boolean healthy = true;
+
+        private Replica(final String name, final DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.auth.authsec.domain.exceptions;
+
+/**
+ * Thrown by an audit event writer when some records of a batch can't be
+ * stored at all, after the other records of the batch were stored.
+ *
+ * @author Plamen
+ */
+public class AuditRecordsRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = -3061975210841539726L;
+
+    private static final String MESSAGE = "Audit records could not be stored: ";
+
+    private final int rejected;
+
+    public AuditRecordsRejectedException(int rejected) {
+        super(MESSAGE + rejected);
+        this.rejected = rejected;
+    }
+
+    /**
+     * @return the number of records not stored.
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+}
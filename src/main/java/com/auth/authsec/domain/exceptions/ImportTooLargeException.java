@@ -0,0 +1,19 @@
+package com.auth.authsec.domain.exceptions;
+
+/**
+ * Thrown when a bulk import holds more accounts than a single request may
+ * import. Larger imports have to be split into several requests.
+ *
+ * @author Plamen
+ */
+public class ImportTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = 4127365508914226318L;
+
+    private static final String MESSAGE = "Too many accounts in a single import! Split the import.";
+
+    public ImportTooLargeException() {
+        super(MESSAGE);
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.auth.authsec.domain.exceptions;
+
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Thrown when a login is rejected by the login throttle, because too many
+ * logins for the same username or from the same address failed recently. The
+ * password is never checked for a throttled login.
+ *
+ * @author Plamen
+ */
+public class LoginThrottledException extends AuthenticationException {
+
+    private static final long serialVersionUID = 6124307319846921503L;
+
+    private static final String MESSAGE = "Too many failed logins! Try again later.";
+
+    /**
+     * Seconds until the oldest failures leave the throttling window.
+     */
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(long retryAfterSeconds) {
+        super(MESSAGE);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.auth.authsec.domain.exceptions;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Thrown when the password hashing pool is saturated and cannot accept another
+ * hash or verification. Extends AuthenticationServiceException so a login
+ * that is shed fails through the regular authentication failure path.
+ *
+ * @author Plamen
+ */
+public class PasswordHashingOverloadException extends AuthenticationServiceException {
+
+    private static final long serialVersionUID = -2811526371542250893L;
+
+    private static final String MESSAGE = "Password hashing capacity exceeded! Try again later.";
+
+    public PasswordHashingOverloadException() {
+        super(MESSAGE);
+    }
+
+    public PasswordHashingOverloadException(Throwable cause) {
+        super(MESSAGE, cause);
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.auth.authsec.domain.metrics;
+
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.RememberMeAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AbstractAuthenticationFailureEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.authentication.OAuth2LoginAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts successful and failed logins, by login method, from the
+ * authentication events published by the authentication manager. Failures are
+ * tagged with the type of the exception, e.g. BadCredentialsException, so
+ * credential stuffing can be told apart from an overloaded hashing pool.
+ *
+ * Usernames are never used as tags, which keeps the number of time series
+ * bounded.
+ *
+ * @author Plamen
+ */
+@Component
+public class AuthenticationMetrics {
+
+    private static final String METER_NAME = "authsec.authentication";
+
+    private static final String NO_REASON = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param meterRegistry - registry of the login counters.
+     */
+    @Autowired
+    public AuthenticationMetrics(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    @EventListener
+    public void onSuccess(final AuthenticationSuccessEvent event) {
+        counter("success", event.getAuthentication(), NO_REASON).increment();
+    }
+
+    @EventListener
+    public void onFailure(final AbstractAuthenticationFailureEvent event) {
+        counter("failure", event.getAuthentication(), event.getException().getClass().getSimpleName()).increment();
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private Counter counter(final String result, final Authentication authentication, final String reason) {
+        return Counter.builder(METER_NAME)
+                .tags("result", result, "method", toMethod(authentication), "reason", reason)
+                .description("The number of login attempts")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The login method, derived from the type of the authentication.
+     *
+     * @param authentication
+     * @return "form", "oauth2", "remember-me" or the simple name of the
+     * authentication type.
+     */
+    private static String toMethod(final Authentication authentication) {
+        if (Objects.isNull(authentication)) {
+            return "unknown";
+        }
+        if (authentication instanceof UsernamePasswordAuthenticationToken) {
+            return "form";
+        }
+        if (authentication instanceof OAuth2LoginAuthenticationToken
+                || authentication instanceof OAuth2AuthenticationToken) {
+            return "oauth2";
+        }
+        if (authentication instanceof RememberMeAuthenticationToken) {
+            return "remember-me";
+        }
+        return authentication.getClass().getSimpleName();
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.auth.authsec.domain.metrics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import com.auth.authsec.ui.user.AccountPage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times every call of the repositories and of the user service, tagged with
+ * the repository or service, the method and the type of the exception thrown,
+ * if any. The number of elements returned by listings is recorded as well, so
+ * slow listings can be told apart from large ones.
+ *
+ * <pre>
+ * authsec.repository.queries   repository, method, exception
+ * authsec.service.calls        service, method, exception
+ * authsec.listing.size         component, method
+ * </pre>
+ *
+ * Meters of successful calls are looked up once per method and kept, the
+ * exceptional ones are rare enough to be looked up in the registry.
+ *
+ * @author Plamen
+ */
+@Aspect
+@Component
+public class InvocationMetricsAspect {
+
+    private static final String REPOSITORY_TIMER = "authsec.repository.queries";
+
+    private static final String SERVICE_TIMER = "authsec.service.calls";
+
+    private static final String LISTING_SIZE = "authsec.listing.size";
+
+    private static final String APPLICATION_PACKAGE = "com.auth.authsec.";
+
+    private static final String NO_EXCEPTION = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Timers of the successful calls, by meter name and component.method.
+     */
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Map<String, DistributionSummary> listingSizes = new ConcurrentHashMap<>();
+
+    /**
+     * Name of the application interface implemented by a repository or service
+     * class, by class.
+     */
+    private final Map<Class<?>, String> componentNames = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for this class.
+     *
+     * @param meterRegistry - registry of the timers and listing sizes.
+     */
+    @Autowired
+    public InvocationMetricsAspect(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Times the repository queries, including the ones inherited from the
+     * Spring Data base interfaces.
+     *
+     * @param joinPoint
+     * @return the query's result.
+     * @throws Throwable the query's exception.
+     */
+    @Around("execution(public * org.springframework.data.repository.Repository+.*(..))")
+    public Object timeRepositoryQuery(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, REPOSITORY_TIMER, "repository");
+    }
+
+    /**
+     * Times the user service methods.
+     *
+     * @param joinPoint
+     * @return the method's result.
+     * @throws Throwable the method's exception.
+     */
+    @Around("execution(public * com.auth.authsec.domain.user.UserService+.*(..))")
+    public Object timeServiceCall(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, SERVICE_TIMER, "service");
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private Object time(final ProceedingJoinPoint joinPoint, final String timerName, final String componentTag)
+            throws Throwable {
+
+        final String component = componentName(joinPoint.getTarget());
+        final String method = joinPoint.getSignature().getName();
+        final long startedAt = System.nanoTime();
+        final Object result;
+
+        try {
+
+            result = joinPoint.proceed();
+
+        } catch (Throwable e) {
+            timer(timerName, componentTag, component, method, e.getClass().getSimpleName())
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+
+        timers.computeIfAbsent(timerName + ':' + component + '.' + method,
+                key -> timer(timerName, componentTag, component, method, NO_EXCEPTION))
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+
+        recordListingSize(component, method, result);
+        return result;
+    }
+
+    private Timer timer(final String name, final String componentTag, final String component, final String method,
+            final String exception) {
+
+        return Timer.builder(name)
+                .tags(componentTag, component, "method", method, "exception", exception)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the number of elements of collections and account pages.
+     *
+     * @param component
+     * @param method
+     * @param result - the call's result.
+     */
+    private void recordListingSize(final String component, final String method, final Object result) {
+        final int size;
+
+        if (result instanceof Collection) {
+            size = ((Collection<?>) result).size();
+        } else if (result instanceof AccountPage) {
+            size = ((AccountPage) result).getAccounts().size();
+        } else {
+            return;
+        }
+
+        listingSizes.computeIfAbsent(component + '.' + method, key -> DistributionSummary.builder(LISTING_SIZE)
+                .tags("component", component, "method", method)
+                .description("The number of elements returned by a listing")
+                .register(meterRegistry))
+                .record(size);
+    }
+
+    /**
+     * Repositories are JDK proxies and services may be proxied as well, so the
+     * name is the one of the application interface the target implements,
+     * e.g. "UserRepository" or "UserService".
+     *
+     * @param target - the repository or service.
+     * @return the name of the component.
+     */
+    private String componentName(final Object target) {
+        if (Objects.isNull(target)) {
+            return "unknown";
+        }
+
+        return componentNames.computeIfAbsent(AopUtils.getTargetClass(target), type -> {
+            for (Class<?> implemented : ClassUtils.getAllInterfacesForClassAsSet(type)) {
+                if (implemented.getName().startsWith(APPLICATION_PACKAGE)) {
+                    return implemented.getSimpleName();
+                }
+            }
+            return ClassUtils.getUserClass(type).getSimpleName();
+        });
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.auth.authsec.domain.metrics;
+
+import java.util.Collections;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jpa.HibernateMetrics;
+
+/**
+ * Exports the Hibernate statistics: sessions, statements, and the hits, misses
+ * and puts of the query cache and of every second-level cache region. Needs
+ * "hibernate.generate_statistics" enabled.
+ *
+ * @author Plamen
+ */
+@Component
+public class PersistenceMetrics implements MeterBinder {
+
+    private static final String ENTITY_MANAGER_FACTORY_NAME = "authsec";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param entityManagerFactory - the factory whose statistics are exported.
+     */
+    @Autowired
+    public PersistenceMetrics(final EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Registers the Hibernate statistics meters.
+     *
+     * @param registry - the registry to bind to.
+     */
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        new HibernateMetrics(entityManagerFactory, ENTITY_MANAGER_FACTORY_NAME, Collections.emptyList())
+                .bindTo(registry);
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.auth.authsec.domain.role;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * The roles the application checks for, each owning one bit of an authority
+ * mask. A principal's roles are folded into a mask once, after which every
+ * role check is a single bit test instead of a search through its roles.
+ *
+ * Roles without a constant here, e.g. imported custom roles, have no bit and
+ * are only visible through the authorities themselves. The highest bit is
+ * reserved, so there can be at most 63 constants.
+ *
+ * @author Plamen
+ */
+public enum Authority {
+
+    USER("ROLE_USER"), ADMIN("ROLE_ADMIN");
+
+    private static final Map<String, Authority> BY_ROLE_NAME;
+
+    static {
+        final Map<String, Authority> byRoleName = new HashMap<>();
+
+        for (Authority authority : values()) {
+            byRoleName.put(authority.roleName, authority);
+        }
+        BY_ROLE_NAME = Collections.unmodifiableMap(byRoleName);
+    }
+
+    private final String roleName;
+
+    private final long mask;
+
+    private Authority(final String roleName) {
+        this.roleName = roleName;
+        this.mask = 1L << ordinal();
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * @param mask - an authority mask.
+     * @return "true" if the mask contains this authority.
+     */
+    public boolean isIn(final long mask) {
+        return (mask & this.mask) != 0;
+    }
+
+    /**
+     * @param roleName - a stored, upper case role name.
+     * @return the bit of the role, 0 if the role has no constant.
+     */
+    public static long maskOf(final String roleName) {
+        final Authority authority = Objects.isNull(roleName) ? null : BY_ROLE_NAME.get(roleName);
+        return Objects.isNull(authority) ? 0L : authority.mask;
+    }
+
+    /**
+     * @param authorities - the authorities of a principal, may be null.
+     * @return the mask of the known authorities among them.
+     */
+    public static long maskOf(final Collection<? extends GrantedAuthority> authorities) {
+        long mask = 0L;
+
+        if (!Objects.isNull(authorities)) {
+            for (GrantedAuthority authority : authorities) {
+                mask |= maskOf(authority.getAuthority());
+            }
+        }
+        return mask;
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    public String getRoleName() {
+        return roleName;
+    }
+
+    public long getMask() {
+        return mask;
+    }
+
+}
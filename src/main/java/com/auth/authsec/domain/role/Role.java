@@ -1,13 +1,22 @@
 package com.auth.authsec.domain.role;
 
+import java.util.Locale;
+import java.util.Objects;
+
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.GrantedAuthority;
 
 /**
@@ -15,11 +24,18 @@ import org.springframework.security.core.GrantedAuthority;
  * GrantedAuthority interface. The Framework uses this class for role
  * management, given the implemented methods from the interface.
  *
+ * Roles are never changed once created, so they are kept in the read-only
+ * second-level cache. Roles are equal by name alone, in equals as well as in
+ * hashCode, so a role keeps its hash when it is saved and gets an id. Role
+ * names are upper case, the lookups by name rely on it, and unique.
+ *
  * @author Plamen
  *
  */
 @Entity
-@Table(name = "roles")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+@Table(name = "roles", uniqueConstraints = @UniqueConstraint(name = "uk_roles_role_name", columnNames = "role_name"))
 public class Role implements GrantedAuthority {
 
     /**
@@ -41,7 +57,11 @@ public class Role implements GrantedAuthority {
     }
 
     public Role(String roleName) {
-        this.roleName = roleName;
+        this.roleName = normalize(roleName);
+    }
+
+    public Long getId() {
+        return id;
     }
 
     @Override
@@ -49,32 +69,49 @@ public class Role implements GrantedAuthority {
         return roleName;
     }
 
+    /**
+     * @return the bit of this role in an authority mask, 0 if it has none.
+     * @see Authority
+     */
+    public long getMask() {
+        return Authority.maskOf(roleName);
+    }
+
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((id == null) ? 0 : id.hashCode());
-        result = prime * result + ((roleName == null) ? 0 : roleName.hashCode());
-        return result;
+        return Objects.hashCode(getAuthority());
     }
 
+    /**
+     * Compares through the getter and instanceof, so Hibernate proxies of a
+     * role are equal to the role itself.
+     */
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
             return true;
         }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        Role other = (Role) obj;
-        if (this.roleName.equals(other.roleName)) {
-            return true;
-        } else {
+        if (!(obj instanceof Role)) {
             return false;
         }
+        return Objects.equals(getAuthority(), ((Role) obj).getAuthority());
+    }
+
+    /**
+     * Stores the role name in upper case, whichever way the role was built.
+     */
+    @PrePersist
+    @PreUpdate
+    private void normalizeRoleName() {
+        roleName = normalize(roleName);
+    }
+
+    /**
+     * @param roleName
+     * @return the role name in upper case, null for null.
+     */
+    private static String normalize(String roleName) {
+        return Objects.isNull(roleName) ? null : roleName.toUpperCase(Locale.ROOT);
     }
 
     @Override
@@ -0,0 +1,174 @@
+package com.auth.authsec.domain.role;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.auth.authsec.domain.exceptions.NoSuchRoleException;
+
+/**
+ * In-memory registry of the application's roles. The registry is loaded once
+ * on start-up, before the web server accepts requests, and then serves role
+ * lookups by name without a database round trip. Its contents are an
+ * immutable snapshot, which is only replaced as a whole when the registry is
+ * refreshed, so readers never need to lock.
+ *
+ * Roles are created through the registry. Within an instance, creations are
+ * serialized by a lock. Across instances, the unique constraint on the role
+ * name rejects the second insert, after which the registry re-reads the role
+ * the other instance created. Schemas created before the constraint may hold
+ * duplicates, of which the registry keeps the oldest.
+ *
+ * @author Plamen
+ */
+@Component
+public class RoleRegistry {
+
+    /**
+     * The repository for managing Role entities.
+     */
+    private final RoleRepository roleRepository;
+
+    /**
+     * Runs the creation of a role in its own transaction, so a rejected insert
+     * does not roll back the caller's transaction.
+     */
+    private final TransactionTemplate newTransaction;
+
+    /**
+     * Current snapshot of the roles, keyed by role name.
+     */
+    private volatile Map<String, Role> roles = Collections.emptyMap();
+
+    /**
+     * Constructor for this class.
+     *
+     * @param roleRepository - repository for managing role entities.
+     * @param transactionManager - manager of the role creation transactions.
+     */
+    @Autowired
+    public RoleRegistry(final RoleRepository roleRepository, final PlatformTransactionManager transactionManager) {
+        this.roleRepository = roleRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Reloads every role from the database and replaces the current snapshot.
+     * If a role name is stored more than once, the role with the lowest id is
+     * kept.
+     */
+    public synchronized void refresh() {
+        final Map<String, Role> loaded = new HashMap<>();
+
+        for (Role role : roleRepository.findAll()) {
+            loaded.merge(toKey(role.getAuthority()), role,
+                    (kept, other) -> kept.getId() <= other.getId() ? kept : other);
+        }
+        roles = Collections.unmodifiableMap(loaded);
+    }
+
+    /**
+     * Finds a role by name.
+     *
+     * @param roleName - name of the role.
+     * @return the role, or null if no such role exists.
+     */
+    public Role find(final String roleName) {
+        if (Objects.isNull(roleName)) {
+            return null;
+        }
+        return roles.get(toKey(roleName));
+    }
+
+    /**
+     * Gets a role by name.
+     *
+     * @param roleName - name of the role.
+     * @return the role.
+     * @throws NoSuchRoleException if no such role exists.
+     */
+    public Role get(final String roleName) {
+        final Role role = find(roleName);
+
+        if (Objects.isNull(role)) {
+            throw new NoSuchRoleException();
+        }
+        return role;
+    }
+
+    /**
+     * Gets a role by name, creating and saving it first if it does not exist
+     * yet. Creating a role refreshes the registry.
+     *
+     * @param roleName - name of the role.
+     * @return the existing or newly created role.
+     */
+    public Role getOrCreate(final String roleName) {
+        final Role role = find(roleName);
+
+        if (!Objects.isNull(role)) {
+            return role;
+        }
+        return create(roleName);
+    }
+
+    /**
+     * Unmodifiable view of every registered role, keyed by role name.
+     *
+     * @return the current snapshot.
+     */
+    public Map<String, Role> getRoles() {
+        return roles;
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Creates a role unless another thread or instance already did, then
+     * refreshes the registry. An instance losing the race to the unique
+     * constraint reads the role the winner created.
+     *
+     * @param roleName - name of the role.
+     * @return the created or already existing role.
+     */
+    private synchronized Role create(final String roleName) {
+        final String key = toKey(roleName);
+        Role role = roles.get(key);
+
+        if (!Objects.isNull(role)) {
+            return role;
+        }
+
+        try {
+            newTransaction.execute(status -> Objects.isNull(roleRepository.findOneByRoleName(key))
+                    ? roleRepository.save(new Role(key))
+                    : null);
+        } catch (DataIntegrityViolationException e) {
+            // Created by another instance in the meantime, reloaded below.
+        }
+        refresh();
+
+        return get(key);
+    }
+
+    /**
+     * Role names are stored in upper case.
+     *
+     * @param roleName
+     * @return the registry key.
+     */
+    private static String toKey(final String roleName) {
+        return roleName.toUpperCase(Locale.ROOT);
+    }
+
+}
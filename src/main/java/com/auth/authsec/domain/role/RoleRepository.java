@@ -1,9 +1,17 @@
 package com.auth.authsec.domain.role;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * The Repository for the Role entities. Extends the JpaRepository interface,
@@ -16,12 +24,28 @@ import org.springframework.stereotype.Repository;
 public interface RoleRepository extends JpaRepository<Role, Long> {
 
     /**
-     * Custom-made query method for finding a role entity by role name.
+     * Custom-made query method for finding a role entity by role name. Role
+     * names are stored in upper case (see Role), so the lookup is an indexed
+     * equality match on the stored name. The result is kept in the query cache.
      *
      * @param roleName - desired role entity's name.
      * @return Role object.
      */
-    @Query("SELECT r FROM Role r WHERE LOWER(r.roleName)=LOWER(:roleName)")
+    @Query("SELECT r FROM Role r WHERE r.roleName=UPPER(:roleName)")
+    @QueryHints({
+        @QueryHint(name = HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HINT_CACHE_REGION, value = "roles-by-name")})
     Role findOneByRoleName(@Param(value = "roleName") String roleName);
 
+    /**
+     * Upper-cases the names of roles stored before role names were
+     * normalized, which the lookups by name would miss.
+     *
+     * @return number of updated roles.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Role r SET r.roleName = UPPER(r.roleName) WHERE r.roleName <> UPPER(r.roleName)")
+    int normalizeRoleNames();
+
 }
@@ -0,0 +1,66 @@
+package com.auth.authsec.domain.security;
+
+import java.util.Objects;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import com.auth.authsec.domain.role.Authority;
+import com.auth.authsec.domain.user.PrincipalSnapshot;
+import com.auth.authsec.domain.user.User;
+
+/**
+ * Role checks for the method security expressions, used as
+ * "@authz.isAdmin(authentication)". Unlike hasRole, which copies the
+ * authorities into a new set on every evaluation, a check is a bit test on
+ * the mask the native principal keeps; other principals, e.g. OAuth2 or
+ * session token logins, have their few authorities folded on the fly.
+ *
+ * @see Authority
+ * @author Plamen
+ */
+@Component("authz")
+public class AuthorityChecks {
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * @param authentication - the current authentication.
+     * @return "true" if it has the "ROLE_ADMIN" role.
+     */
+    public boolean isAdmin(final Authentication authentication) {
+        return Authority.ADMIN.isIn(maskOf(authentication));
+    }
+
+    /**
+     * @param authentication - the current authentication.
+     * @return "true" if it has the "ROLE_USER" role.
+     */
+    public boolean isUser(final Authentication authentication) {
+        return Authority.USER.isIn(maskOf(authentication));
+    }
+
+    /**
+     * @param authentication - the current authentication.
+     * @return "true" if it has the "ROLE_USER" or the "ROLE_ADMIN" role.
+     */
+    public boolean isUserOrAdmin(final Authentication authentication) {
+        return (maskOf(authentication) & (Authority.USER.getMask() | Authority.ADMIN.getMask())) != 0;
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private static long maskOf(final Authentication authentication) {
+        if (Objects.isNull(authentication)) {
+            return 0L;
+        }
+
+        final Object principal = authentication.getPrincipal();
+
+        if (principal instanceof PrincipalSnapshot) {
+            return ((PrincipalSnapshot) principal).getAuthorityMask();
+        }
+
+        return (principal instanceof User) ? ((User) principal).getAuthorityMask()
+                : Authority.maskOf(authentication.getAuthorities());
+    }
+
+}
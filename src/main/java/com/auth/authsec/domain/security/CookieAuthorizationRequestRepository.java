@@ -0,0 +1,96 @@
+package com.auth.authsec.domain.security;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.security.oauth2.client.web.AuthorizationRequestRepository;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.util.SerializationUtils;
+
+/**
+ * Keeps the pending OAuth2 authorization request in a signed, short-lived
+ * cookie instead of the HttpSession, so the provider's callback can be handled
+ * by any node in the stateless session mode. The request is only deserialized
+ * after its signature and purpose have been verified, so a session token is
+ * never deserialized as a request.
+ *
+ * @author Plamen
+ */
+public class CookieAuthorizationRequestRepository implements AuthorizationRequestRepository<OAuth2AuthorizationRequest> {
+
+    /**
+     * How long the user has to complete the login at the provider.
+     */
+    private static final int MAX_AGE_SECONDS = 300;
+
+    private final SessionTokenCodec codec;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param codec - signs and verifies the cookie.
+     */
+    public CookieAuthorizationRequestRepository(final SessionTokenCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OAuth2AuthorizationRequest loadAuthorizationRequest(final HttpServletRequest request) {
+        final byte[] payload = codec.verify(SessionTokenCodec.AUTHORIZATION_REQUEST_PURPOSE,
+                TokenCookies.read(request, TokenCookies.AUTHORIZATION_REQUEST_COOKIE));
+
+        if (Objects.isNull(payload) || payload.length <= Long.BYTES) {
+            return null;
+        }
+
+        final long expiresAt = ByteBuffer.wrap(payload).getLong();
+
+        if (SessionTokenCodec.now() >= expiresAt) {
+            return null;
+        }
+
+        final Object authorizationRequest = SerializationUtils
+                .deserialize(Arrays.copyOfRange(payload, Long.BYTES, payload.length));
+
+        return (authorizationRequest instanceof OAuth2AuthorizationRequest)
+                ? (OAuth2AuthorizationRequest) authorizationRequest
+                : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveAuthorizationRequest(final OAuth2AuthorizationRequest authorizationRequest,
+            final HttpServletRequest request, final HttpServletResponse response) {
+
+        if (Objects.isNull(authorizationRequest)) {
+            TokenCookies.clear(request, response, TokenCookies.AUTHORIZATION_REQUEST_COOKIE);
+            return;
+        }
+
+        final byte[] serialized = SerializationUtils.serialize(authorizationRequest);
+        final byte[] payload = ByteBuffer.allocate(Long.BYTES + serialized.length)
+                .putLong(SessionTokenCodec.now() + MAX_AGE_SECONDS).put(serialized).array();
+
+        TokenCookies.write(request, response, TokenCookies.AUTHORIZATION_REQUEST_COOKIE,
+                codec.sign(SessionTokenCodec.AUTHORIZATION_REQUEST_PURPOSE, payload), MAX_AGE_SECONDS);
+    }
+
+    /**
+     * {@inheritDoc} The cookie itself is cleared by the success handler, or
+     * expires on its own.
+     */
+    @Override
+    public OAuth2AuthorizationRequest removeAuthorizationRequest(final HttpServletRequest request) {
+        return loadAuthorizationRequest(request);
+    }
+
+}
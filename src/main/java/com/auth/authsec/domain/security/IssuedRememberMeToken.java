@@ -0,0 +1,36 @@
+package com.auth.authsec.domain.security;
+
+import java.util.Date;
+
+import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken;
+
+/**
+ * A persistent remember-me token which also knows when its token value was
+ * issued. The inherited date is the moment the login was last used, which
+ * decides when the login expires, while the issue date decides when the token
+ * value is due for rotation.
+ *
+ * @author Plamen
+ */
+public class IssuedRememberMeToken extends PersistentRememberMeToken {
+
+    private final Date issuedAt;
+
+    public IssuedRememberMeToken(String username, String series, String tokenValue, Date issuedAt, Date lastUsed) {
+        super(username, series, tokenValue, lastUsed);
+        this.issuedAt = issuedAt;
+    }
+
+    /**
+     * @param lastUsed - when the login was used.
+     * @return a copy of this token, last used at the given moment.
+     */
+    public IssuedRememberMeToken withLastUsed(final Date lastUsed) {
+        return new IssuedRememberMeToken(getUsername(), getSeries(), getTokenValue(), issuedAt, lastUsed);
+    }
+
+    public Date getIssuedAt() {
+        return issuedAt;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.auth.authsec.domain.security;
+
+import java.util.function.Supplier;
+
+import org.springframework.security.oauth2.client.endpoint.OAuth2AccessTokenResponseClient;
+import org.springframework.security.oauth2.client.endpoint.OAuth2AuthorizationCodeGrantRequest;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserService;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+
+import com.auth.authsec.domain.concurrency.ConcurrencyLimit;
+
+/**
+ * Bounds the outbound HTTP calls of an OAuth2 login, the token exchange and
+ * the user info request, with a concurrency limit. It wraps the clients the
+ * login is configured with. The calls run on the request thread, so with
+ * virtual request threads nothing else bounds how many of them hit the
+ * providers at once. A call that gets no permit in time fails the login with
+ * "temporarily_unavailable" instead of queueing indefinitely.
+ *
+ * @author Plamen
+ */
+public class LimitedOAuth2Clients {
+
+    private static final String TEMPORARILY_UNAVAILABLE = "temporarily_unavailable";
+
+    private final ConcurrencyLimit limit;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param limit - the limit of concurrent calls to the providers.
+     */
+    public LimitedOAuth2Clients(final ConcurrencyLimit limit) {
+        this.limit = limit;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * @param client - the token exchange to bound.
+     * @return the token exchange, made once a permit is free.
+     */
+    public OAuth2AccessTokenResponseClient<OAuth2AuthorizationCodeGrantRequest> limit(
+            final OAuth2AccessTokenResponseClient<OAuth2AuthorizationCodeGrantRequest> client) {
+
+        return request -> call(() -> client.getTokenResponse(request));
+    }
+
+    /**
+     * @param service - the user info request to bound, OAuth2 or OIDC.
+     * @return the user info request, made once a permit is free.
+     */
+    public <R extends OAuth2UserRequest, U extends OAuth2User> OAuth2UserService<R, U> limit(
+            final OAuth2UserService<R, U> service) {
+
+        return request -> call(() -> service.loadUser(request));
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Makes a call to a provider once a permit is free.
+     *
+     * @param call
+     * @return the result of the call.
+     * @throws OAuth2AuthenticationException if no permit was free in time.
+     */
+    private <T> T call(final Supplier<T> call) {
+        if (!limit.tryAcquire()) {
+            throw new OAuth2AuthenticationException(new OAuth2Error(TEMPORARILY_UNAVAILABLE),
+                    "Too many concurrent calls to the OAuth2 providers");
+        }
+
+        try {
+            return call.get();
+        } finally {
+            limit.release();
+        }
+    }
+
+}
@@ -0,0 +1,280 @@
+package com.auth.authsec.domain.security;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.stereotype.Component;
+
+import com.auth.authsec.domain.exceptions.LoginThrottledException;
+import com.auth.authsec.domain.user.UserService;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * In-memory throttle in front of the native login. Failed logins are counted
+ * per username and per client address over a sliding window, and once either
+ * count reaches its limit further logins are rejected before the user is
+ * loaded or the password is verified, so a brute-force attack no longer costs
+ * a password hash per attempt.
+ *
+ * The counts are kept in bounded, lock-free sketches, see
+ * SlidingWindowCounter, so the memory doesn't grow with the number of
+ * usernames or addresses an attacker cycles through. Successful logins don't
+ * reset the counts, they expire with the window.
+ *
+ * With a positive lockout threshold, a username reaching that many failures
+ * within the window is also locked persistently and stays locked until an
+ * admin unlocks it. Throttled logins never reach the password check and so
+ * never count as failures, which is why the lockout threshold must be below
+ * the per-username limit; a higher one would never be reached. The lock is
+ * issued once per username and window, not on every further failure, so an
+ * account unlocked by an admin is only locked again after the window passed.
+ *
+ * Only bad credentials count as failures; throttled, locked or shed logins
+ * never reach the password check.
+ *
+ * @author Plamen
+ */
+@Component
+public class LoginThrottle implements MeterBinder {
+
+    /**
+     * Number of slots the window is split into.
+     */
+    private static final int SLOTS = 6;
+
+    /**
+     * Number of rows of the sketches.
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * Maximum number of usernames whose lockout is remembered, so a lock is
+     * issued only once per window.
+     */
+    private static final int MAX_TRACKED_LOCKOUTS = 10000;
+
+    private final boolean enabled;
+
+    private final int maxFailuresPerUsername;
+
+    private final int maxFailuresPerAddress;
+
+    private final int lockoutThreshold;
+
+    private final long windowNanos;
+
+    /**
+     * When the lockout issued for a username stops being remembered, by
+     * username key.
+     */
+    private final ConcurrentMap<String, Long> lockoutsIssued = new ConcurrentHashMap<>();
+
+    private final SlidingWindowCounter usernameFailures;
+
+    private final SlidingWindowCounter addressFailures;
+
+    private final UserService userService;
+
+    private final LongAdder usernameRejections = new LongAdder();
+
+    private final LongAdder addressRejections = new LongAdder();
+
+    private final LongAdder lockouts = new LongAdder();
+
+    /**
+     * Constructor for this class.
+     *
+     * @param userService - service for locking accounts.
+     * @param enabled - whether logins are throttled at all.
+     * @param windowSeconds - length of the sliding window.
+     * @param maxFailuresPerUsername - failures per username within the window
+     * before its logins are rejected.
+     * @param maxFailuresPerAddress - failures per client address within the
+     * window before its logins are rejected.
+     * @param lockoutThreshold - failures per username within the window before
+     * the account is locked, 0 to never lock accounts. Must be below
+     * maxFailuresPerUsername.
+     * @param width - counters per sketch row, sized to the expected number of
+     * failures within the window.
+     * @throws IllegalArgumentException if the lockout threshold can't be
+     * reached before the username is throttled.
+     */
+    @Autowired
+    public LoginThrottle(final UserService userService,
+            @Value("${authsec.login-throttle.enabled:true}") final boolean enabled,
+            @Value("${authsec.login-throttle.window-seconds:300}") final long windowSeconds,
+            @Value("${authsec.login-throttle.max-failures-per-username:10}") final int maxFailuresPerUsername,
+            @Value("${authsec.login-throttle.max-failures-per-address:100}") final int maxFailuresPerAddress,
+            @Value("${authsec.login-throttle.lockout-threshold:0}") final int lockoutThreshold,
+            @Value("${authsec.login-throttle.width:32768}") final int width) {
+
+        if (enabled && lockoutThreshold > 0 && lockoutThreshold >= maxFailuresPerUsername) {
+            throw new IllegalArgumentException("The login lockout threshold (" + lockoutThreshold
+                    + ") must be below the maximum failures per username (" + maxFailuresPerUsername
+                    + "), throttled logins never count as failures");
+        }
+
+        this.userService = userService;
+        this.enabled = enabled;
+        this.maxFailuresPerUsername = maxFailuresPerUsername;
+        this.maxFailuresPerAddress = maxFailuresPerAddress;
+        this.lockoutThreshold = lockoutThreshold;
+        this.windowNanos = TimeUnit.SECONDS.toNanos(windowSeconds);
+        this.usernameFailures = new SlidingWindowCounter(windowSeconds, TimeUnit.SECONDS, SLOTS, DEPTH, width);
+        this.addressFailures = new SlidingWindowCounter(windowSeconds, TimeUnit.SECONDS, SLOTS, DEPTH, width);
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Rejects the login if too many logins for its username or from its client
+     * address failed within the window.
+     *
+     * @param authentication - the login attempt.
+     * @throws LoginThrottledException if the login is throttled.
+     */
+    public void checkAllowed(final Authentication authentication) {
+        if (!enabled) {
+            return;
+        }
+
+        final String username = authentication.getName();
+        if (!Objects.isNull(username) && usernameFailures.estimate(toKey(username)) >= maxFailuresPerUsername) {
+            usernameRejections.increment();
+            throw new LoginThrottledException(getRetryAfterSeconds());
+        }
+
+        final String address = getRemoteAddress(authentication);
+        if (!Objects.isNull(address) && addressFailures.estimate(address) >= maxFailuresPerAddress) {
+            addressRejections.increment();
+            throw new LoginThrottledException(getRetryAfterSeconds());
+        }
+    }
+
+    /**
+     * Counts a login failed with bad credentials, and locks the account when
+     * the lockout threshold is reached.
+     *
+     * @param event - the failed login.
+     */
+    @EventListener
+    public void onBadCredentials(final AuthenticationFailureBadCredentialsEvent event) {
+        if (!enabled) {
+            return;
+        }
+
+        final Authentication authentication = event.getAuthentication();
+        final String address = getRemoteAddress(authentication);
+
+        if (!Objects.isNull(address)) {
+            addressFailures.increment(address);
+        }
+
+        final String username = authentication.getName();
+        if (Objects.isNull(username)) {
+            return;
+        }
+
+        final String key = toKey(username);
+        final int failures = usernameFailures.increment(key);
+
+        if (lockoutThreshold > 0 && failures >= lockoutThreshold && startLockout(key)
+                && userService.setAccountLocked(username, true)) {
+            lockouts.increment();
+        }
+    }
+
+    /**
+     * Registers the rejection and lockout counters.
+     *
+     * @param registry - the registry to bind to.
+     */
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("authsec.login.throttled", usernameRejections, LongAdder::doubleValue)
+                .tags("key", "username")
+                .description("The number of logins rejected because of failures for the same username")
+                .register(registry);
+        FunctionCounter.builder("authsec.login.throttled", addressRejections, LongAdder::doubleValue)
+                .tags("key", "address")
+                .description("The number of logins rejected because of failures from the same address")
+                .register(registry);
+        FunctionCounter.builder("authsec.login.lockouts", lockouts, LongAdder::doubleValue)
+                .description("The number of accounts locked after repeated failed logins")
+                .register(registry);
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Remembers the lockout of a username for a window, unless one is already
+     * remembered. Expired lockouts are dropped once too many are remembered;
+     * if that doesn't free any, the lockout isn't remembered and is issued
+     * again on the next failure.
+     *
+     * @param key - the username key.
+     * @return "true" if the account has to be locked.
+     */
+    private boolean startLockout(final String key) {
+        final long now = System.nanoTime();
+
+        if (lockoutsIssued.size() >= MAX_TRACKED_LOCKOUTS) {
+            lockoutsIssued.values().removeIf(until -> now - until >= 0);
+
+            if (lockoutsIssued.size() >= MAX_TRACKED_LOCKOUTS) {
+                return true;
+            }
+        }
+
+        final long until = now + windowNanos;
+        final Long remembered = lockoutsIssued.merge(key, until,
+                (previous, next) -> now - previous >= 0 ? next : previous);
+
+        return remembered == until;
+    }
+
+    /**
+     * The oldest failures leave the window within one slot.
+     *
+     * @return seconds to wait before trying again.
+     */
+    private long getRetryAfterSeconds() {
+        return Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(usernameFailures.getSlotNanos()));
+    }
+
+    /**
+     * Usernames are unique regardless of case, so are their failures.
+     *
+     * @param username
+     * @return the counter key.
+     */
+    private static String toKey(final String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The client address, taken from the request by the login filters. Behind
+     * a proxy, it is the forwarded address only if the server is configured to
+     * use the forward headers.
+     *
+     * @param authentication
+     * @return the client address, null if unknown.
+     */
+    private static String getRemoteAddress(final Authentication authentication) {
+        return (authentication.getDetails() instanceof WebAuthenticationDetails)
+                ? ((WebAuthenticationDetails) authentication.getDetails()).getRemoteAddress()
+                : null;
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.auth.authsec.domain.security;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import com.auth.authsec.domain.converters.LocalDateTimePersistenceConverter;
+
+/**
+ * A persistent remember-me login. The series identifies the login on one
+ * device and never changes, while the token value is rotated periodically; a
+ * presented series with the wrong token value means the cookie was stolen.
+ *
+ * @author Plamen
+ */
+@Entity
+@Table(name = "persistent_logins", indexes = {
+    @Index(name = "idx_persistent_logins_username", columnList = "username"),
+    @Index(name = "idx_persistent_logins_last_used", columnList = "last_used")})
+public class RememberMeToken {
+
+    @Id
+    @Column(name = "series", length = 64)
+    private String series;
+
+    @Column(name = "username", nullable = false)
+    private String username;
+
+    @Column(name = "token", length = 64, nullable = false)
+    private String token;
+
+    /**
+     * When the current token value was issued.
+     */
+    @Column(name = "issued_at", nullable = false)
+    @Convert(converter = LocalDateTimePersistenceConverter.class)
+    private LocalDateTime issuedAt;
+
+    /**
+     * When the login was last used. Written behind, so it may lag slightly.
+     */
+    @Column(name = "last_used", nullable = false)
+    @Convert(converter = LocalDateTimePersistenceConverter.class)
+    private LocalDateTime lastUsed;
+
+    /**
+     * Default constructor;
+     */
+    public RememberMeToken() {
+        super();
+    }
+
+    public RememberMeToken(String series, String username, String token, LocalDateTime issuedAt) {
+        super();
+        this.series = series;
+        this.username = username;
+        this.token = token;
+        this.issuedAt = issuedAt;
+        this.lastUsed = issuedAt;
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    public String getSeries() {
+        return series;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public LocalDateTime getIssuedAt() {
+        return issuedAt;
+    }
+
+    public LocalDateTime getLastUsed() {
+        return lastUsed;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.auth.authsec.domain.security;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The repository for persistent remember-me logins, keyed by their series.
+ *
+ * @author Plamen
+ */
+@Repository
+public interface RememberMeTokenRepository extends JpaRepository<RememberMeToken, String> {
+
+    /**
+     * Replaces the token value of a series after it was rotated.
+     *
+     * @param series - the login's series.
+     * @param token - the new token value.
+     * @param issuedAt - when the new token value was issued.
+     * @return number of updated logins.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE RememberMeToken t SET t.token = :token, t.issuedAt = :issuedAt, t.lastUsed = :issuedAt "
+            + "WHERE t.series = :series")
+    int updateToken(@Param(value = "series") String series, @Param(value = "token") String token,
+            @Param(value = "issuedAt") LocalDateTime issuedAt);
+
+    /**
+     * Removes every remember-me login of a user.
+     *
+     * @param username - name of the user.
+     * @return number of removed logins.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RememberMeToken t WHERE t.username = :username")
+    int deleteByUsername(@Param(value = "username") String username);
+
+    /**
+     * Removes the logins that were not used since the given moment.
+     *
+     * @param cutoff - logins last used before this moment are removed.
+     * @return number of removed logins.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RememberMeToken t WHERE t.lastUsed < :cutoff")
+    int deleteUnusedSince(@Param(value = "cutoff") LocalDateTime cutoff);
+
+}
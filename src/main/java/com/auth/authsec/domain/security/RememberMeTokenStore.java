@@ -0,0 +1,359 @@
+package com.auth.authsec.domain.security;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken;
+import org.springframework.security.web.authentication.rememberme.PersistentTokenRepository;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Store of the persistent remember-me logins. Valid series are kept in a
+ * bounded in-memory cache, so validating a remember-me cookie normally doesn't
+ * hit the database. Cached series expire after a short time to live, which
+ * bounds how long a login removed by another node can still be used here. A
+ * token rotated by another node is only seen here once the cached series
+ * expires, so a mismatching token is rechecked with reloadTokenForSeries
+ * before it is treated as stolen.
+ *
+ * When a login is used without rotating its token, only the last-used
+ * timestamp changes; those timestamps are collected in memory and written
+ * behind in JDBC batches instead of one UPDATE per request. Logins that have
+ * not been used for longer than the token validity are swept periodically.
+ *
+ * Token rotations, new logins and removals are written through immediately,
+ * since they decide whether a cookie is accepted at all.
+ *
+ * @see RotatingRememberMeServices
+ * @author Plamen
+ */
+@Component
+public class RememberMeTokenStore implements PersistentTokenRepository, MeterBinder {
+
+    private static final String CACHE_NAME = "remember-me";
+
+    /**
+     * Only moves the timestamp forward, so a late flush of one node never
+     * overwrites a newer timestamp written by another one.
+     */
+    private static final String UPDATE_LAST_USED = "UPDATE persistent_logins SET last_used = ? "
+            + "WHERE series = ? AND last_used < ?";
+
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    /**
+     * The repository for managing remember-me logins.
+     */
+    private final RememberMeTokenRepository tokenRepository;
+
+    /**
+     * Template for the batched last-used updates.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Logins unused for longer than this are expired.
+     */
+    private final long tokenValiditySeconds;
+
+    /**
+     * Maximum number of cached series.
+     */
+    private final int cacheSize;
+
+    /**
+     * How long a series stays cached after it was loaded.
+     */
+    private final long cacheTimeToLiveNanos;
+
+    /**
+     * Access-ordered cache of series. Guarded by its own monitor.
+     */
+    private final Map<String, CachedToken> cache;
+
+    /**
+     * Last-used timestamps waiting to be written, by series.
+     */
+    private final ConcurrentMap<String, Date> pendingLastUsed = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor for this class.
+     *
+     * @param tokenRepository - repository for managing remember-me logins.
+     * @param jdbcTemplate - template for the batched last-used updates.
+     * @param tokenValiditySeconds - logins unused for longer than this expire.
+     * @param cacheSize - maximum number of cached series.
+     * @param cacheTimeToLiveSeconds - how long a series stays cached.
+     */
+    @Autowired
+    public RememberMeTokenStore(final RememberMeTokenRepository tokenRepository, final JdbcTemplate jdbcTemplate,
+            @Value("${authsec.remember-me.token-validity-seconds:1209600}") final long tokenValiditySeconds,
+            @Value("${authsec.remember-me.cache-size:10000}") final int cacheSize,
+            @Value("${authsec.remember-me.cache-time-to-live-seconds:60}") final long cacheTimeToLiveSeconds) {
+
+        this.tokenRepository = tokenRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tokenValiditySeconds = tokenValiditySeconds;
+        this.cacheSize = cacheSize;
+        this.cacheTimeToLiveNanos = TimeUnit.SECONDS.toNanos(cacheTimeToLiveSeconds);
+        this.cache = new LinkedHashMap<String, CachedToken>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = -4386305216407713658L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedToken> eldest) {
+                return size() > RememberMeTokenStore.this.cacheSize;
+            }
+        };
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void createNewToken(final PersistentRememberMeToken token) {
+        final LocalDateTime issuedAt = toLocalDateTime(token.getDate());
+
+        tokenRepository.save(new RememberMeToken(token.getSeries(), token.getUsername(), token.getTokenValue(),
+                issuedAt));
+
+        cachePut(new IssuedRememberMeToken(token.getUsername(), token.getSeries(), token.getTokenValue(),
+                token.getDate(), token.getDate()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateToken(final String series, final String tokenValue, final Date lastUsed) {
+        tokenRepository.updateToken(series, tokenValue, toLocalDateTime(lastUsed));
+        pendingLastUsed.remove(series);
+
+        synchronized (cache) {
+            cache.computeIfPresent(series, (key, cached) -> cached.with(new IssuedRememberMeToken(
+                    cached.token.getUsername(), series, tokenValue, lastUsed, lastUsed)));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IssuedRememberMeToken getTokenForSeries(final String seriesId) {
+        synchronized (cache) {
+            final CachedToken cached = cache.get(seriesId);
+
+            if (!Objects.isNull(cached)) {
+                if (!cached.isExpired(System.nanoTime())) {
+                    hits.increment();
+                    return cached.token;
+                }
+                cache.remove(seriesId);
+            }
+        }
+
+        misses.increment();
+
+        final RememberMeToken stored = tokenRepository.findById(seriesId).orElse(null);
+
+        if (Objects.isNull(stored)) {
+            return null;
+        }
+
+        final IssuedRememberMeToken token = new IssuedRememberMeToken(stored.getUsername(), stored.getSeries(),
+                stored.getToken(), Timestamp.valueOf(stored.getIssuedAt()), Timestamp.valueOf(stored.getLastUsed()));
+
+        cachePut(token);
+        return token;
+    }
+
+    /**
+     * Drops the cached series and loads it from the database again.
+     *
+     * @param seriesId - the login's series.
+     * @return the stored login, or null if there is none.
+     */
+    public IssuedRememberMeToken reloadTokenForSeries(final String seriesId) {
+        synchronized (cache) {
+            cache.remove(seriesId);
+        }
+        return getTokenForSeries(seriesId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeUserTokens(final String username) {
+        tokenRepository.deleteByUsername(username);
+
+        synchronized (cache) {
+            cache.values().removeIf(cached -> {
+                if (cached.token.getUsername().equals(username)) {
+                    pendingLastUsed.remove(cached.token.getSeries());
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    /**
+     * Records that a login was used without rotating its token. The
+     * timestamp is written on the next flush.
+     *
+     * @param series - the login's series.
+     * @param lastUsed - when the login was used.
+     */
+    public void recordUse(final String series, final Date lastUsed) {
+        synchronized (cache) {
+            cache.computeIfPresent(series, (key, cached) -> cached.with(cached.token.withLastUsed(lastUsed)));
+        }
+        pendingLastUsed.merge(series, lastUsed, (previous, next) -> next.after(previous) ? next : previous);
+    }
+
+    /**
+     * Writes the collected last-used timestamps in JDBC batches.
+     */
+    @Scheduled(fixedDelayString = "${authsec.remember-me.flush-interval-millis:5000}")
+    @PreDestroy
+    public void flushLastUsed() {
+        final List<Object[]> updates = new ArrayList<>();
+
+        for (Map.Entry<String, Date> pending : pendingLastUsed.entrySet()) {
+            // only drop the entry if no newer timestamp was recorded meanwhile
+            if (pendingLastUsed.remove(pending.getKey(), pending.getValue())) {
+                final Timestamp lastUsed = new Timestamp(pending.getValue().getTime());
+                updates.add(new Object[] {lastUsed, pending.getKey(), lastUsed});
+            }
+
+            if (updates.size() == FLUSH_BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(UPDATE_LAST_USED, updates);
+                updates.clear();
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_LAST_USED, updates);
+        }
+    }
+
+    /**
+     * Removes the logins that have not been used within the token validity.
+     */
+    @Scheduled(fixedDelayString = "${authsec.remember-me.sweep-interval-millis:3600000}")
+    public void sweepExpired() {
+        flushLastUsed();
+
+        final LocalDateTime cutoff = LocalDateTime.now().minusSeconds(tokenValiditySeconds);
+        final Date cutoffDate = Timestamp.valueOf(cutoff);
+
+        tokenRepository.deleteUnusedSince(cutoff);
+
+        synchronized (cache) {
+            cache.values().removeIf(cached -> cached.token.getDate().before(cutoffDate));
+        }
+    }
+
+    /**
+     * Registers the hit, miss and size meters of the series cache and the
+     * number of last-used timestamps waiting to be written.
+     *
+     * @param registry - the registry to bind to.
+     */
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .description("The number of times a remember-me login was served from the cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .description("The number of times a remember-me login had to be loaded from the database")
+                .register(registry);
+        Gauge.builder("cache.size", this, RememberMeTokenStore::getCachedTokenCount)
+                .tags("cache", CACHE_NAME)
+                .description("The number of cached remember-me logins")
+                .register(registry);
+        Gauge.builder("authsec.remember-me.pending-updates", pendingLastUsed, Map::size)
+                .description("The number of last-used timestamps waiting to be written")
+                .register(registry);
+    }
+
+    public long getTokenValiditySeconds() {
+        return tokenValiditySeconds;
+    }
+
+    public int getCachedTokenCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private void cachePut(final IssuedRememberMeToken token) {
+        if (cacheSize <= 0) {
+            return;
+        }
+
+        final CachedToken cached = new CachedToken(token, System.nanoTime() + cacheTimeToLiveNanos);
+
+        synchronized (cache) {
+            cache.put(token.getSeries(), cached);
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(final Date date) {
+        return new Timestamp(date.getTime()).toLocalDateTime();
+    }
+
+    /**
+     * A cached series and the moment it must be reloaded.
+     */
+    private static final class CachedToken {
+
+        private final IssuedRememberMeToken token;
+
+        private final long expiresAtNanos;
+
+        private CachedToken(final IssuedRememberMeToken token, final long expiresAtNanos) {
+            this.token = token;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private CachedToken with(final IssuedRememberMeToken updated) {
+            return new CachedToken(updated, expiresAtNanos);
+        }
+
+        private boolean isExpired(final long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.auth.authsec.domain.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.web.authentication.rememberme.CookieTheftException;
+import org.springframework.security.web.authentication.rememberme.InvalidCookieException;
+import org.springframework.security.web.authentication.rememberme.PersistentTokenBasedRememberMeServices;
+import org.springframework.security.web.authentication.rememberme.RememberMeAuthenticationException;
+
+/**
+ * Persistent-token remember-me services which rotate the token value only once
+ * it is older than the rotation interval, instead of on every auto-login. Every
+ * other auto-login just records the use, which the token store writes behind in
+ * batches, and the cookie stays unchanged.
+ *
+ * A presented series with the wrong token value still removes all of the
+ * user's logins, as it means an old cookie was replayed. The value is first
+ * rechecked against the database, since the cached series may predate a
+ * rotation by another node.
+ *
+ * @see RememberMeTokenStore
+ * @author Plamen
+ */
+public class RotatingRememberMeServices extends PersistentTokenBasedRememberMeServices {
+
+    private final RememberMeTokenStore tokenStore;
+
+    private final long rotationIntervalMillis;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param key - key identifying the tokens created by these services.
+     * @param userDetailsService - loads the users of auto-logins.
+     * @param tokenStore - store of the persistent logins.
+     * @param rotationIntervalSeconds - minimal age of a token before it is
+     * rotated.
+     */
+    public RotatingRememberMeServices(final String key, final UserDetailsService userDetailsService,
+            final RememberMeTokenStore tokenStore, final long rotationIntervalSeconds) {
+
+        super(key, userDetailsService, tokenStore);
+        this.tokenStore = tokenStore;
+        this.rotationIntervalMillis = TimeUnit.SECONDS.toMillis(rotationIntervalSeconds);
+        setTokenValiditySeconds((int) tokenStore.getTokenValiditySeconds());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected UserDetails processAutoLoginCookie(final String[] cookieTokens, final HttpServletRequest request,
+            final HttpServletResponse response) {
+
+        if (cookieTokens.length != 2) {
+            throw new InvalidCookieException("Cookie token did not contain 2 tokens, but contained '"
+                    + Arrays.asList(cookieTokens) + "'");
+        }
+
+        final String presentedSeries = cookieTokens[0];
+        final String presentedToken = cookieTokens[1];
+        IssuedRememberMeToken token = tokenStore.getTokenForSeries(presentedSeries);
+
+        if (!Objects.isNull(token) && !matches(presentedToken, token)) {
+            token = tokenStore.reloadTokenForSeries(presentedSeries);
+        }
+
+        if (Objects.isNull(token)) {
+            throw new RememberMeAuthenticationException("No persistent token found for series id: " + presentedSeries);
+        }
+
+        if (!matches(presentedToken, token)) {
+            tokenStore.removeUserTokens(token.getUsername());
+            throw new CookieTheftException(
+                    "Invalid remember-me token (Series/token) mismatch. Implies previous cookie theft attack.");
+        }
+
+        final long now = System.currentTimeMillis();
+
+        if (token.getDate().getTime() + TimeUnit.SECONDS.toMillis(getTokenValiditySeconds()) < now) {
+            throw new RememberMeAuthenticationException("Remember-me login has expired");
+        }
+
+        if (now - token.getIssuedAt().getTime() >= rotationIntervalMillis) {
+            final String newToken = generateTokenData();
+
+            tokenStore.updateToken(presentedSeries, newToken, new Date(now));
+            setCookie(new String[] {presentedSeries, newToken}, getTokenValiditySeconds(), request, response);
+        } else {
+            tokenStore.recordUse(presentedSeries, new Date(now));
+        }
+
+        return getUserDetailsService().loadUserByUsername(token.getUsername());
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * @param presentedToken - the token value of the cookie.
+     * @param token - the stored login.
+     * @return whether the cookie carries the login's current token value.
+     */
+    private static boolean matches(final String presentedToken, final IssuedRememberMeToken token) {
+        return MessageDigest.isEqual(presentedToken.getBytes(StandardCharsets.US_ASCII),
+                token.getTokenValue().getBytes(StandardCharsets.US_ASCII));
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.auth.authsec.domain.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The claims carried by a stateless session token: who the user is, which
+ * authorities they were granted at login and when the token expires.
+ *
+ * @author Plamen
+ */
+public class SessionToken {
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private final String username;
+
+    private final List<String> authorities;
+
+    /**
+     * Expiry of the token, in seconds since the epoch.
+     */
+    private final long expiresAt;
+
+    public SessionToken(String username, List<String> authorities, long expiresAt) {
+        super();
+        this.username = username;
+        this.authorities = Collections.unmodifiableList(new ArrayList<>(authorities));
+        this.expiresAt = expiresAt;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * @param now - current time, in seconds since the epoch.
+     * @return "true" if the token is no longer valid.
+     */
+    public boolean isExpired(final long now) {
+        return now >= expiresAt;
+    }
+
+    /**
+     * A token is refreshed once less than half of its lifetime is left, so
+     * an active user is never logged out while idle users are.
+     *
+     * @param now - current time, in seconds since the epoch.
+     * @param timeToLiveSeconds - lifetime of a freshly issued token.
+     * @return "true" if a new token should be issued.
+     */
+    public boolean needsRefresh(final long now, final long timeToLiveSeconds) {
+        return expiresAt - now < timeToLiveSeconds / 2;
+    }
+
+    /**
+     * Serializes the claims into the compact binary token payload.
+     *
+     * @return the payload.
+     */
+    public byte[] toBytes() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(expiresAt);
+            out.writeUTF(username);
+            out.writeShort(authorities.size());
+
+            for (String authority : authorities) {
+                out.writeUTF(authority);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the claims back from a token payload.
+     *
+     * @param payload
+     * @return the claims.
+     * @throws IOException if the payload is malformed.
+     */
+    public static SessionToken fromBytes(final byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            if (in.readByte() != FORMAT_VERSION) {
+                throw new IOException("Unsupported session token format");
+            }
+
+            final long expiresAt = in.readLong();
+            final String username = in.readUTF();
+            final int count = in.readUnsignedShort();
+            final List<String> authorities = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                authorities.add(in.readUTF());
+            }
+
+            return new SessionToken(username, authorities, expiresAt);
+        }
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    public String getUsername() {
+        return username;
+    }
+
+    public List<String> getAuthorities() {
+        return authorities;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.auth.authsec.domain.security;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AccountStatusException;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Authenticates requests from the signed session token of the stateless
+ * session mode. The token is taken from the session cookie or from a bearer
+ * Authorization header, and is validated without touching the HttpSession or
+ * the database. Tokens taken from the cookie are reissued once half of their
+ * lifetime has passed, so active users stay logged in. The reissued token
+ * carries the current authorities of the account, loaded through the user
+ * service, and the cookie is cleared instead if the account was deleted,
+ * locked, disabled or has expired, so such changes apply within half a token
+ * lifetime. Provider logins without a local account log in again then.
+ *
+ * @see SessionTokenCodec
+ * @author Plamen
+ */
+public class SessionTokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final SessionTokenCodec codec;
+
+    /**
+     * Reloads the account when a token is reissued.
+     */
+    private final UserDetailsService userDetailsService;
+
+    private final AccountStatusUserDetailsChecker accountStatusChecker = new AccountStatusUserDetailsChecker();
+
+    /**
+     * Constructor for this class.
+     *
+     * @param codec - verifies and issues the session tokens.
+     * @param userDetailsService - reloads the account when a token is
+     * reissued.
+     */
+    public SessionTokenAuthenticationFilter(final SessionTokenCodec codec,
+            final UserDetailsService userDetailsService) {
+        this.codec = codec;
+        this.userDetailsService = userDetailsService;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+            final FilterChain filterChain) throws ServletException, IOException {
+
+        if (Objects.isNull(SecurityContextHolder.getContext().getAuthentication())) {
+            authenticate(request, response);
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Puts the authentication carried by the request's token, if any, into
+     * the security context.
+     *
+     * @param request
+     * @param response
+     */
+    private void authenticate(final HttpServletRequest request, final HttpServletResponse response) {
+        final String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        final boolean fromHeader = !Objects.isNull(header) && header.startsWith(BEARER_PREFIX);
+        final String rawToken = fromHeader ? header.substring(BEARER_PREFIX.length()).trim()
+                : TokenCookies.read(request, TokenCookies.SESSION_COOKIE);
+
+        final SessionToken token = codec.decode(rawToken);
+
+        if (Objects.isNull(token)) {
+            return;
+        }
+
+        final List<GrantedAuthority> authorities = token.getAuthorities().stream()
+                .map(SimpleGrantedAuthority::new).collect(Collectors.toList());
+        final UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                token.getUsername(), null, authorities);
+
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        if (!fromHeader && token.needsRefresh(SessionTokenCodec.now(), codec.getTimeToLiveSeconds())) {
+            refresh(request, response, token.getUsername());
+        }
+    }
+
+    /**
+     * Reissues the session cookie with the current authorities of the account,
+     * which also authenticate the request. If the account can no longer log
+     * in, the cookie is cleared and the request stays anonymous.
+     *
+     * @param request
+     * @param response
+     * @param username - name of the token's account.
+     */
+    private void refresh(final HttpServletRequest request, final HttpServletResponse response,
+            final String username) {
+        final UserDetails user = loadActiveUser(username);
+
+        if (Objects.isNull(user)) {
+            SecurityContextHolder.clearContext();
+            TokenCookies.clear(request, response, TokenCookies.SESSION_COOKIE);
+            return;
+        }
+
+        final UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                user.getUsername(), null, user.getAuthorities());
+
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        TokenCookies.write(request, response, TokenCookies.SESSION_COOKIE, codec.issue(authentication),
+                (int) codec.getTimeToLiveSeconds());
+    }
+
+    /**
+     * @param username
+     * @return the account, or null if it does not exist or cannot log in.
+     */
+    private UserDetails loadActiveUser(final String username) {
+        try {
+
+            final UserDetails user = userDetailsService.loadUserByUsername(username);
+            accountStatusChecker.check(user);
+            return user;
+
+        } catch (UsernameNotFoundException | AccountStatusException e) {
+            return null;
+        }
+    }
+
+}
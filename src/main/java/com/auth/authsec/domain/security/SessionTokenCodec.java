@@ -0,0 +1,303 @@
+package com.auth.authsec.domain.security;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+/**
+ * Issues and verifies the signed tokens of the stateless session mode. A token
+ * has the form "keyId.payload.signature", where the signature is an HMAC-SHA256
+ * over the key id and payload. Verifying a token only needs the keys from the
+ * local configuration, so any node can validate any token without a session
+ * lookup or a database hit.
+ *
+ * Every payload starts with the purpose it was signed for, e.g. a session or a
+ * pending OAuth2 authorization request, and is only accepted for that purpose,
+ * so a token signed for one use cannot be replayed as another.
+ *
+ * Keys are configured as a list of "keyId:base64Secret" pairs. New tokens are
+ * always signed with the active key, while tokens signed with any other
+ * configured key are still accepted, so a key is rotated by adding the new key,
+ * making it active and removing the old one once its tokens have expired.
+ *
+ * @author Plamen
+ */
+@Component
+@ConditionalOnProperty(name = "authsec.session.stateless", havingValue = "true")
+public class SessionTokenCodec {
+
+    /**
+     * Purpose of the session tokens.
+     */
+    public static final String SESSION_PURPOSE = "session";
+
+    /**
+     * Purpose of the pending OAuth2 authorization requests.
+     */
+    public static final String AUTHORIZATION_REQUEST_PURPOSE = "oauth2-authz";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * Secrets shorter than the HMAC-SHA256 output are rejected.
+     */
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private static final char SEPARATOR = '.';
+
+    /**
+     * Ends the purpose at the start of a payload.
+     */
+    private static final byte PURPOSE_END = 0;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Every configured key, by key id.
+     */
+    private final Map<String, SigningKey> keys;
+
+    /**
+     * The key new tokens are signed with.
+     */
+    private final SigningKey activeKey;
+
+    private final long timeToLiveSeconds;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param keys - comma separated "keyId:base64Secret" pairs.
+     * @param activeKeyId - id of the key new tokens are signed with.
+     * @param timeToLiveSeconds - lifetime of an issued token.
+     */
+    @Autowired
+    public SessionTokenCodec(@Value("${authsec.session.token.keys:}") final String keys,
+            @Value("${authsec.session.token.active-key:}") final String activeKeyId,
+            @Value("${authsec.session.token.time-to-live-seconds:900}") final long timeToLiveSeconds) {
+
+        this.keys = Collections.unmodifiableMap(parseKeys(keys));
+        this.activeKey = this.keys.get(activeKeyId);
+        this.timeToLiveSeconds = timeToLiveSeconds;
+
+        if (Objects.isNull(activeKey)) {
+            throw new IllegalStateException("The active session token key '" + activeKeyId + "' is not configured");
+        }
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Issues a token for the given authentication, valid for the configured
+     * time to live.
+     *
+     * @param authentication - a successful authentication.
+     * @return the signed token.
+     */
+    public String issue(final Authentication authentication) {
+        final List<String> authorities = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority).collect(Collectors.toList());
+
+        return sign(SESSION_PURPOSE,
+                new SessionToken(authentication.getName(), authorities, now() + timeToLiveSeconds).toBytes());
+    }
+
+    /**
+     * Verifies a token and reads its claims.
+     *
+     * @param token - the signed token.
+     * @return the claims, or null if the token is malformed, forged, signed
+     * with an unknown key or for another purpose, or expired.
+     */
+    public SessionToken decode(final String token) {
+        final byte[] payload = verify(SESSION_PURPOSE, token);
+
+        if (Objects.isNull(payload)) {
+            return null;
+        }
+
+        try {
+
+            final SessionToken sessionToken = SessionToken.fromBytes(payload);
+            return sessionToken.isExpired(now()) ? null : sessionToken;
+
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Signs an arbitrary payload with the active key, for the given purpose.
+     *
+     * @param purpose - what the token is used for, e.g. SESSION_PURPOSE.
+     * @param payload
+     * @return "keyId.payload.signature"
+     */
+    public String sign(final String purpose, final byte[] payload) {
+        final byte[] tag = purpose.getBytes(StandardCharsets.US_ASCII);
+        final byte[] tagged = Arrays.copyOf(tag, tag.length + 1 + payload.length);
+
+        tagged[tag.length] = PURPOSE_END;
+        System.arraycopy(payload, 0, tagged, tag.length + 1, payload.length);
+
+        final String signed = activeKey.id + SEPARATOR + ENCODER.encodeToString(tagged);
+        return signed + SEPARATOR + ENCODER.encodeToString(activeKey.mac(signed));
+    }
+
+    /**
+     * Checks the signature and the purpose of a signed payload.
+     *
+     * @param purpose - what the token must have been signed for.
+     * @param token - "keyId.payload.signature"
+     * @return the payload, or null if the token is malformed, forged, signed
+     * with an unknown key or for another purpose.
+     */
+    public byte[] verify(final String purpose, final String token) {
+        final byte[] tagged = verifySignature(token);
+        final byte[] tag = purpose.getBytes(StandardCharsets.US_ASCII);
+
+        if (Objects.isNull(tagged) || tagged.length <= tag.length || tagged[tag.length] != PURPOSE_END
+                || !MessageDigest.isEqual(tag, Arrays.copyOf(tagged, tag.length))) {
+            return null;
+        }
+        return Arrays.copyOfRange(tagged, tag.length + 1, tagged.length);
+    }
+
+    public long getTimeToLiveSeconds() {
+        return timeToLiveSeconds;
+    }
+
+    /**
+     * @return current time, in seconds since the epoch.
+     */
+    public static long now() {
+        return System.currentTimeMillis() / 1000L;
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Checks the signature of a signed payload.
+     *
+     * @param token - "keyId.payload.signature"
+     * @return the payload including its purpose, or null if the token is
+     * malformed, forged or signed with an unknown key.
+     */
+    private byte[] verifySignature(final String token) {
+        if (Objects.isNull(token)) {
+            return null;
+        }
+
+        final int keyEnd = token.indexOf(SEPARATOR);
+        final int payloadEnd = token.lastIndexOf(SEPARATOR);
+
+        if (keyEnd <= 0 || payloadEnd <= keyEnd) {
+            return null;
+        }
+
+        final SigningKey key = keys.get(token.substring(0, keyEnd));
+
+        if (Objects.isNull(key)) {
+            return null;
+        }
+
+        try {
+
+            final byte[] signature = DECODER.decode(token.substring(payloadEnd + 1));
+
+            if (!MessageDigest.isEqual(signature, key.mac(token.substring(0, payloadEnd)))) {
+                return null;
+            }
+            return DECODER.decode(token.substring(keyEnd + 1, payloadEnd));
+
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the configured "keyId:base64Secret" pairs.
+     *
+     * @param keys
+     * @return the keys by id.
+     */
+    private static Map<String, SigningKey> parseKeys(final String keys) {
+        final Map<String, SigningKey> parsed = new HashMap<>();
+
+        for (String entry : keys.split(",")) {
+            final String trimmed = entry.trim();
+
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+
+            final int separator = trimmed.indexOf(':');
+
+            if (separator <= 0 || trimmed.substring(0, separator).indexOf(SEPARATOR) >= 0) {
+                throw new IllegalStateException(
+                        "Session token keys must be 'keyId:base64Secret' pairs, without dots in the key id");
+            }
+
+            final String id = trimmed.substring(0, separator);
+            final byte[] secret = Base64.getDecoder().decode(trimmed.substring(separator + 1));
+
+            if (secret.length < MIN_SECRET_BYTES) {
+                throw new IllegalStateException(
+                        "Session token key '" + id + "' must be at least " + MIN_SECRET_BYTES + " bytes long");
+            }
+            parsed.put(id, new SigningKey(id, secret));
+        }
+
+        return parsed;
+    }
+
+    /**
+     * A configured signing key. Mac instances are not thread-safe, so every
+     * thread keeps its own, initialized once.
+     */
+    private static final class SigningKey {
+
+        private final String id;
+
+        private final ThreadLocal<Mac> macs;
+
+        private SigningKey(final String id, final byte[] secret) {
+            final SecretKeySpec keySpec = new SecretKeySpec(secret, ALGORITHM);
+
+            this.id = id;
+            this.macs = ThreadLocal.withInitial(() -> {
+                try {
+                    final Mac mac = Mac.getInstance(ALGORITHM);
+                    mac.init(keySpec);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        private byte[] mac(final String data) {
+            return macs.get().doFinal(data.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+}
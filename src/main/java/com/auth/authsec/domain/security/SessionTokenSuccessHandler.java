@@ -0,0 +1,48 @@
+package com.auth.authsec.domain.security;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
+
+/**
+ * Success handler for form and OAuth2 logins in the stateless session mode.
+ * Issues the signed session token as a cookie instead of storing the
+ * authentication in the HttpSession, then redirects as usual.
+ *
+ * @author Plamen
+ */
+public class SessionTokenSuccessHandler extends SimpleUrlAuthenticationSuccessHandler {
+
+    private final SessionTokenCodec codec;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param codec - issues the session tokens.
+     * @param defaultTargetUrl - the page to redirect to after logging in.
+     */
+    public SessionTokenSuccessHandler(final SessionTokenCodec codec, final String defaultTargetUrl) {
+        super(defaultTargetUrl);
+        this.codec = codec;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onAuthenticationSuccess(final HttpServletRequest request, final HttpServletResponse response,
+            final Authentication authentication) throws IOException, ServletException {
+
+        TokenCookies.write(request, response, TokenCookies.SESSION_COOKIE, codec.issue(authentication),
+                (int) codec.getTimeToLiveSeconds());
+        TokenCookies.clear(request, response, TokenCookies.AUTHORIZATION_REQUEST_COOKIE);
+
+        super.onAuthenticationSuccess(request, response, authentication);
+    }
+
+}
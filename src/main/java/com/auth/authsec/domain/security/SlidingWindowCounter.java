@@ -0,0 +1,232 @@
+package com.auth.authsec.domain.security;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Approximate, lock-free counter of events per key over a sliding time window,
+ * with memory bounded regardless of the number of keys.
+ *
+ * The window is split into slots, each holding a count-min sketch: a few rows
+ * of counters, every key being counted in one counter per row, picked by a
+ * seeded hash. All counters live in one AtomicIntegerArray, so concurrent
+ * increments of different keys never contend on a lock. The estimate of a key
+ * is the minimum over the rows of its counters summed over the slots still in
+ * the window. Collisions can only ever make the estimate too high, by at most
+ * about e / width of all events in the window with high probability, so the
+ * width is sized to the expected failure volume.
+ *
+ * A slot is cleared the first time it is used for a new period. While it is
+ * cleared, it is marked as such and left out of the estimates, so counts of the
+ * old period are never taken for counts of the new one. Events counted into it
+ * concurrently with the clearing may be lost, which only ever errs on the side
+ * of a lower count.
+ *
+ * The hash seeds are random per instance, so keys colliding on purpose can't be
+ * precomputed to inflate the count of another key.
+ *
+ * @author Plamen
+ */
+public class SlidingWindowCounter {
+
+    private static final long UNUSED = Long.MIN_VALUE;
+
+    /**
+     * Period of a slot while its counters are being cleared.
+     */
+    private static final long CLEARING = Long.MIN_VALUE + 1;
+
+    private final int slots;
+
+    private final int depth;
+
+    private final int width;
+
+    private final long slotNanos;
+
+    /**
+     * Counters by slot, row and column.
+     */
+    private final AtomicIntegerArray counts;
+
+    /**
+     * The period each slot currently counts, UNUSED if it never counted and
+     * CLEARING while it is cleared.
+     */
+    private final AtomicLongArray slotPeriods;
+
+    private final long[] seeds;
+
+    /**
+     * Source of the current time in nanoseconds.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param window - length of the sliding window.
+     * @param unit - unit of the window.
+     * @param slots - number of slots the window is split into.
+     * @param depth - number of rows of each sketch.
+     * @param width - number of counters per row, rounded up to a power of two.
+     */
+    public SlidingWindowCounter(final long window, final TimeUnit unit, final int slots, final int depth,
+            final int width) {
+
+        this(window, unit, slots, depth, width, System::nanoTime);
+    }
+
+    /**
+     * Constructor with an explicit clock, for tests.
+     *
+     * @param window - length of the sliding window.
+     * @param unit - unit of the window.
+     * @param slots - number of slots the window is split into.
+     * @param depth - number of rows of each sketch.
+     * @param width - number of counters per row, rounded up to a power of two.
+     * @param clock - source of the current time in nanoseconds.
+     */
+    SlidingWindowCounter(final long window, final TimeUnit unit, final int slots, final int depth,
+            final int width, final LongSupplier clock) {
+
+        if (slots < 1 || depth < 1 || width < 1 || unit.toNanos(window) < slots) {
+            throw new IllegalArgumentException("Invalid sliding window: window=" + window + " " + unit + ", slots="
+                    + slots + ", depth=" + depth + ", width=" + width);
+        }
+
+        this.slots = slots;
+        this.depth = depth;
+        this.width = toPowerOfTwo(width);
+        this.slotNanos = unit.toNanos(window) / slots;
+        this.counts = new AtomicIntegerArray(slots * depth * this.width);
+        this.slotPeriods = new AtomicLongArray(slots);
+        this.seeds = new long[depth];
+        this.clock = clock;
+
+        for (int slot = 0; slot < slots; slot++) {
+            slotPeriods.set(slot, UNUSED);
+        }
+
+        final SecureRandom random = new SecureRandom();
+        for (int row = 0; row < depth; row++) {
+            seeds[row] = random.nextLong();
+        }
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Counts an event of the given key.
+     *
+     * @param key
+     * @return the estimated number of events of the key in the window,
+     * including this one.
+     */
+    public int increment(final String key) {
+        final long period = currentPeriod();
+        final int slot = startPeriod(period);
+        final int slotOffset = slot * depth * width;
+
+        for (int row = 0; row < depth; row++) {
+            counts.incrementAndGet(slotOffset + row * width + column(key, row));
+        }
+
+        return estimate(key, period);
+    }
+
+    /**
+     * @param key
+     * @return the estimated number of events of the key in the window.
+     */
+    public int estimate(final String key) {
+        return estimate(key, currentPeriod());
+    }
+
+    /**
+     * @return how long the oldest slot still stays in the window, at most.
+     */
+    public long getSlotNanos() {
+        return slotNanos;
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private int estimate(final String key, final long period) {
+        int estimate = Integer.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            final int column = column(key, row);
+            int sum = 0;
+
+            for (int slot = 0; slot < slots; slot++) {
+                final long slotPeriod = slotPeriods.get(slot);
+
+                if (slotPeriod != UNUSED && slotPeriod != CLEARING && period - slotPeriod < slots
+                        && slotPeriod <= period) {
+                    sum += counts.get((slot * depth + row) * width + column);
+                }
+            }
+            estimate = Math.min(estimate, sum);
+        }
+
+        return estimate;
+    }
+
+    private static int toPowerOfTwo(final int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(Math.min(value - 1, 1 << 29)) << 1;
+    }
+
+    private long currentPeriod() {
+        return Math.floorDiv(clock.getAsLong(), slotNanos);
+    }
+
+    /**
+     * Moves the slot of the given period to that period, clearing the counts
+     * it still holds from an older one. Only the thread winning the move
+     * clears the slot, which is marked as CLEARING until it is done.
+     *
+     * @param period
+     * @return the slot of the period.
+     */
+    private int startPeriod(final long period) {
+        final int slot = (int) Math.floorMod(period, (long) slots);
+        final long slotPeriod = slotPeriods.get(slot);
+
+        if (slotPeriod != CLEARING && slotPeriod < period && slotPeriods.compareAndSet(slot, slotPeriod, CLEARING)) {
+            final int slotOffset = slot * depth * width;
+
+            for (int i = 0; i < depth * width; i++) {
+                counts.set(slotOffset + i, 0);
+            }
+            slotPeriods.set(slot, period);
+        }
+
+        return slot;
+    }
+
+    /**
+     * Seeded 64 bit FNV-1a over the characters of the key, with a final
+     * avalanche, reduced to a column of the row.
+     *
+     * @param key
+     * @param row
+     * @return the key's column in the row.
+     */
+    private int column(final String key, final int row) {
+        long hash = seeds[row] ^ 0xcbf29ce484222325L;
+
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+
+        return (int) hash & (width - 1);
+    }
+
+}
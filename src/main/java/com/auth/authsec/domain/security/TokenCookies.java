@@ -0,0 +1,93 @@
+package com.auth.authsec.domain.security;
+
+import java.util.Objects;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Helper for reading and writing the cookies of the stateless session mode.
+ * The cookies are HTTP only, scoped to the application's context path and only
+ * sent over HTTPS when the request came in over HTTPS.
+ *
+ * @author Plamen
+ */
+public final class TokenCookies {
+
+    /**
+     * Cookie carrying the session token.
+     */
+    public static final String SESSION_COOKIE = "AUTHSEC_SESSION";
+
+    /**
+     * Cookie carrying a pending OAuth2 authorization request.
+     */
+    public static final String AUTHORIZATION_REQUEST_COOKIE = "AUTHSEC_OAUTH2_REQUEST";
+
+    private TokenCookies() {
+        super();
+    }
+
+    /**
+     * Reads a cookie.
+     *
+     * @param request
+     * @param name - name of the cookie.
+     * @return the cookie's value, or null if the request doesn't carry it.
+     */
+    public static String read(final HttpServletRequest request, final String name) {
+        final Cookie[] cookies = request.getCookies();
+
+        if (Objects.isNull(cookies)) {
+            return null;
+        }
+
+        for (Cookie cookie : cookies) {
+            if (name.equals(cookie.getName())) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes a cookie.
+     *
+     * @param request
+     * @param response
+     * @param name - name of the cookie.
+     * @param value - value of the cookie.
+     * @param maxAgeSeconds - lifetime of the cookie.
+     */
+    public static void write(final HttpServletRequest request, final HttpServletResponse response,
+            final String name, final String value, final int maxAgeSeconds) {
+
+        final Cookie cookie = new Cookie(name, value);
+        cookie.setPath(getCookiePath(request));
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        cookie.setMaxAge(maxAgeSeconds);
+        response.addCookie(cookie);
+    }
+
+    /**
+     * Removes a cookie from the browser.
+     *
+     * @param request
+     * @param response
+     * @param name - name of the cookie.
+     */
+    public static void clear(final HttpServletRequest request, final HttpServletResponse response,
+            final String name) {
+        write(request, response, name, "", 0);
+    }
+
+    private static String getCookiePath(final HttpServletRequest request) {
+        final String contextPath = request.getContextPath();
+        return StringUtils.hasLength(contextPath) ? contextPath : "/";
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.auth.authsec.domain.user;
+
+/**
+ * Role based filters for account listings.
+ *
+ * @author Plamen
+ */
+public enum AccountFilter {
+
+    /**
+     * Every account.
+     */
+    ALL,
+
+    /**
+     * Accounts with the admin role.
+     */
+    ADMINS,
+
+    /**
+     * Accounts without the admin role.
+     */
+    USERS
+
+}
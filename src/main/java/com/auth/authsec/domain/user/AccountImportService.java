@@ -0,0 +1,31 @@
+package com.auth.authsec.domain.user;
+
+import java.util.List;
+
+import com.auth.authsec.domain.exceptions.ImportTooLargeException;
+import com.auth.authsec.ui.user.ImportReport;
+import com.auth.authsec.ui.user.UserForm;
+
+/**
+ * The service for importing accounts in bulk, e.g. when onboarding a customer
+ * with all of its users at once.
+ *
+ * @author Plamen
+ */
+public interface AccountImportService {
+
+    /**
+     * Imports the given accounts. Passwords are hashed in parallel and the
+     * accounts are inserted in batches, committing every chunk separately.
+     * Accounts that are invalid or whose username already exists are skipped
+     * and reported, without failing the rest of the import. The import runs
+     * on the calling thread, so the number of accounts per import is capped.
+     *
+     * @param accounts - the accounts to import, with raw passwords.
+     * @return the number of imported accounts and the rejected rows.
+     * @throws ImportTooLargeException if there are more accounts than a single
+     * import may hold.
+     */
+    ImportReport importAccounts(List<UserForm> accounts);
+
+}
@@ -0,0 +1,28 @@
+package com.auth.authsec.domain.user;
+
+/**
+ * Read-only projection of a single role assignment of a user.
+ *
+ * @author Plamen
+ */
+public class AccountRole {
+
+    private final Long userId;
+
+    private final String roleName;
+
+    public AccountRole(Long userId, String roleName) {
+        super();
+        this.userId = userId;
+        this.roleName = roleName;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getRoleName() {
+        return roleName;
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.auth.authsec.domain.user;
+
+import java.time.LocalDateTime;
+
+/**
+ * An account joined with one of its roles. Accounts with several roles span
+ * several consecutive rows when the rows are ordered by the account id.
+ *
+ * @author Plamen
+ */
+public class AccountRow extends AccountSummary {
+
+    /**
+     * Name of the role on this row, null if the account has no roles.
+     */
+    private final String roleName;
+
+    public AccountRow(Long id, String username, LocalDateTime creationDate, String roleName) {
+        super(id, username, creationDate);
+        this.roleName = roleName;
+    }
+
+    public String getRoleName() {
+        return roleName;
+    }
+
+}
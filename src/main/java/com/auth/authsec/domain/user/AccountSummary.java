@@ -0,0 +1,39 @@
+package com.auth.authsec.domain.user;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of a user account for listings. Selected directly by
+ * the repository, so listings never load the password hash and never create
+ * managed entities that Hibernate has to track.
+ *
+ * @author Plamen
+ */
+public class AccountSummary {
+
+    private final Long id;
+
+    private final String username;
+
+    private final LocalDateTime creationDate;
+
+    public AccountSummary(Long id, String username, LocalDateTime creationDate) {
+        super();
+        this.id = id;
+        this.username = username;
+        this.creationDate = creationDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public LocalDateTime getCreationDate() {
+        return creationDate;
+    }
+
+}
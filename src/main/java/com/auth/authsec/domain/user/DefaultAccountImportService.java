@@ -0,0 +1,445 @@
+package com.auth.authsec.domain.user;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.auth.authsec.domain.audit.AuditEventType;
+import com.auth.authsec.domain.audit.AuditRecord;
+import com.auth.authsec.domain.audit.AuditTrail;
+import com.auth.authsec.domain.config.Errors;
+import com.auth.authsec.domain.crypto.OffloadingPasswordEncoder;
+import com.auth.authsec.domain.crypto.PasswordHashingExecutor;
+import com.auth.authsec.domain.exceptions.ImportTooLargeException;
+import com.auth.authsec.domain.exceptions.PasswordHashingOverloadException;
+import com.auth.authsec.domain.role.Role;
+import com.auth.authsec.domain.role.RoleRegistry;
+import com.auth.authsec.domain.user.User.UserBuilder;
+import com.auth.authsec.ui.user.ImportReport;
+import com.auth.authsec.ui.user.ImportReport.RowFailure;
+import com.auth.authsec.ui.user.UserForm;
+
+/**
+ * Implementation of the AccountImportService. An import runs in three steps:
+ * the accounts are validated and checked against the existing usernames, the
+ * passwords of the remaining accounts are hashed in parallel, and the accounts
+ * are inserted chunk by chunk, each chunk in its own transaction. Every
+ * inserted account is recorded as a registration in the audit trail once its
+ * chunk commits.
+ *
+ * The hashing runs on the shared password hashing pool, but an import keeps
+ * only a few hashes in flight, by default half the workers, so it can neither
+ * fill the queue nor take every core from interactive logins. When logins do
+ * fill the queue, the import waits for its own hashes before queuing more.
+ *
+ * The import runs on the request thread, so the number of accounts per import
+ * is capped; at the default calibration of 250ms per hash on an 8 core host,
+ * the default cap of 10000 accounts takes about ten minutes.
+ *
+ * @see AccountImportService
+ * @author Plamen
+ */
+@Service
+public class DefaultAccountImportService implements AccountImportService {
+
+    /**
+     * Maximum number of usernames in a single existence check.
+     */
+    private static final int LOOKUP_BATCH_SIZE = 1000;
+
+    /**
+     * The repository for managing User entities.
+     */
+    private final UserRepository userRepository;
+
+    /**
+     * The in-memory registry of Role entities.
+     */
+    private final RoleRegistry roleRegistry;
+
+    /**
+     * The encoder doing the actual hashing, called on the password hashing
+     * pool.
+     */
+    private final PasswordEncoder passwordEncoder;
+
+    /**
+     * The shared password hashing pool.
+     */
+    private final PasswordHashingExecutor hashingExecutor;
+
+    /**
+     * Validates the imported forms the same way registration does.
+     */
+    private final Validator validator;
+
+    /**
+     * Runs each chunk in its own transaction.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Audit trail of the imported accounts.
+     */
+    private final AuditTrail auditTrail;
+
+    /**
+     * Maximum number of hashes an import keeps queued or running on the pool.
+     */
+    private final int hashingParallelism;
+
+    /**
+     * Number of accounts inserted per transaction.
+     */
+    private final int chunkSize;
+
+    /**
+     * Maximum number of accounts in a single import.
+     */
+    private final int maxAccounts;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param userRepository - repository for managing user entities.
+     * @param roleRegistry - registry of role entities.
+     * @param passwordEncoder - object for encoding passwords in the database.
+     * @param hashingExecutor - the shared password hashing pool.
+     * @param validator - validator for the imported forms.
+     * @param transactionManager - manager of the chunk transactions.
+     * @param auditTrail - audit trail of the imported accounts.
+     * @param chunkSize - number of accounts inserted per transaction.
+     * @param maxAccounts - maximum number of accounts in a single import.
+     * @param hashingParallelism - maximum number of hashes in flight, defaults
+     * to half the hashing workers when not positive.
+     */
+    @Autowired
+    public DefaultAccountImportService(UserRepository userRepository, RoleRegistry roleRegistry,
+            PasswordEncoder passwordEncoder, PasswordHashingExecutor hashingExecutor, Validator validator,
+            PlatformTransactionManager transactionManager, AuditTrail auditTrail,
+            @Value("${authsec.account-import.chunk-size:500}") int chunkSize,
+            @Value("${authsec.account-import.max-accounts:10000}") int maxAccounts,
+            @Value("${authsec.account-import.hashing-parallelism:0}") int hashingParallelism) {
+
+        this.userRepository = userRepository;
+        this.roleRegistry = roleRegistry;
+        this.passwordEncoder = (passwordEncoder instanceof OffloadingPasswordEncoder)
+                ? ((OffloadingPasswordEncoder) passwordEncoder).getDelegate()
+                : passwordEncoder;
+        this.hashingExecutor = hashingExecutor;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.auditTrail = auditTrail;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxAccounts = maxAccounts;
+        this.hashingParallelism = hashingParallelism > 0 ? hashingParallelism
+                : Math.max(1, hashingExecutor.getPoolSize() / 2);
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ImportReport importAccounts(final List<UserForm> accounts) {
+        if (accounts.size() > maxAccounts) {
+            throw new ImportTooLargeException();
+        }
+
+        final List<RowFailure> failures = new ArrayList<>();
+        final List<PendingAccount> pending = rejectExisting(validate(accounts, failures), failures);
+
+        hashPasswords(pending);
+
+        final LocalDateTime creationDate = LocalDateTime.now();
+        final String actor = getActor();
+        int imported = 0;
+
+        for (int from = 0; from < pending.size(); from += chunkSize) {
+            final List<PendingAccount> chunk = pending.subList(from, Math.min(from + chunkSize, pending.size()));
+            imported += insertChunk(chunk, creationDate, actor, failures);
+        }
+
+        failures.sort(Comparator.comparingInt(RowFailure::getRow));
+        return new ImportReport(accounts.size(), imported, failures);
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Validates the forms, resolves their roles and rejects usernames that
+     * occur more than once in the import.
+     *
+     * @param accounts - the imported forms.
+     * @param failures - receives the rejected rows.
+     * @return the accounts that passed validation.
+     */
+    private List<PendingAccount> validate(final List<UserForm> accounts, final List<RowFailure> failures) {
+        final List<PendingAccount> valid = new ArrayList<>(accounts.size());
+        final Set<String> seen = new HashSet<>();
+
+        for (int row = 0; row < accounts.size(); row++) {
+            final UserForm form = accounts.get(row);
+
+            if (!isValid(form)) {
+                failures.add(new RowFailure(row, Objects.isNull(form) ? null : form.getUsername(),
+                        Errors.INVALID_ACCOUNT));
+                continue;
+            }
+
+            final String usernameKey = form.getUsername().toLowerCase(Locale.ROOT);
+
+            if (!seen.add(usernameKey)) {
+                failures.add(new RowFailure(row, form.getUsername(), Errors.DUPLICATE_USERNAME));
+                continue;
+            }
+
+            valid.add(new PendingAccount(row, form, usernameKey, roleRegistry.getOrCreate(form.getRoles().get(0))));
+        }
+
+        return valid;
+    }
+
+    /**
+     * Rejects the accounts whose username is already taken, looking the
+     * usernames up in batches.
+     *
+     * @param accounts - the validated accounts.
+     * @param failures - receives the rejected rows.
+     * @return the accounts that can be inserted.
+     */
+    private List<PendingAccount> rejectExisting(final List<PendingAccount> accounts,
+            final List<RowFailure> failures) {
+
+        final Set<String> existing = new HashSet<>();
+
+        for (int from = 0; from < accounts.size(); from += LOOKUP_BATCH_SIZE) {
+            final List<String> keys = accounts.subList(from, Math.min(from + LOOKUP_BATCH_SIZE, accounts.size()))
+                    .stream().map(account -> account.usernameKey).collect(Collectors.toList());
+
+            existing.addAll(userRepository.findExistingUsernameKeys(keys));
+        }
+
+        if (existing.isEmpty()) {
+            return accounts;
+        }
+
+        final List<PendingAccount> remaining = new ArrayList<>(accounts.size());
+
+        for (PendingAccount account : accounts) {
+            if (existing.contains(account.usernameKey)) {
+                failures.add(new RowFailure(account.row, account.form.getUsername(),
+                        Errors.USERNAME_ALREADY_EXISTS));
+            } else {
+                remaining.add(account);
+            }
+        }
+
+        return remaining;
+    }
+
+    /**
+     * Hashes the passwords of the given accounts on the hashing pool, keeping
+     * at most hashingParallelism hashes in flight.
+     *
+     * @param accounts
+     */
+    private void hashPasswords(final List<PendingAccount> accounts) {
+        final Deque<Future<Object>> inFlight = new ArrayDeque<>(hashingParallelism);
+
+        for (PendingAccount account : accounts) {
+            if (inFlight.size() >= hashingParallelism) {
+                hashingExecutor.await(inFlight.poll());
+            }
+            inFlight.add(submitHash(account, inFlight));
+        }
+
+        while (!inFlight.isEmpty()) {
+            hashingExecutor.await(inFlight.poll());
+        }
+    }
+
+    /**
+     * Queues the hashing of an account's password. While the queue is full,
+     * waits for the oldest hash of the import instead of failing it.
+     *
+     * @param account
+     * @param inFlight - the hashes of the import in flight, oldest first.
+     * @return the pending hash.
+     * @throws PasswordHashingOverloadException if the queue is full and the
+     * import has no hash in flight to wait for.
+     */
+    private Future<Object> submitHash(final PendingAccount account, final Deque<Future<Object>> inFlight) {
+        while (true) {
+            try {
+
+                return hashingExecutor.submit(() -> {
+                    account.encodedPassword = passwordEncoder.encode(account.form.getPassword());
+                    return null;
+                });
+
+            } catch (PasswordHashingOverloadException e) {
+                if (inFlight.isEmpty()) {
+                    throw e;
+                }
+                hashingExecutor.await(inFlight.poll());
+            }
+        }
+    }
+
+    /**
+     * Inserts a chunk of accounts in a single transaction. If the chunk fails,
+     * e.g. because a username was taken concurrently, its accounts are retried
+     * one by one so only the offending rows are rejected. A rejected row is
+     * reported as an existing username only if the username is taken now.
+     *
+     * @param chunk - the accounts to insert.
+     * @param creationDate - creation date of the imported accounts.
+     * @param actor - name of the importing user.
+     * @param failures - receives the rejected rows.
+     * @return number of inserted accounts.
+     */
+    private int insertChunk(final List<PendingAccount> chunk, final LocalDateTime creationDate,
+            final String actor, final List<RowFailure> failures) {
+
+        try {
+
+            insert(chunk, creationDate, actor);
+            return chunk.size();
+
+        } catch (DataIntegrityViolationException e) {
+            int imported = 0;
+
+            for (PendingAccount account : chunk) {
+                try {
+
+                    insert(Collections.singletonList(account), creationDate, actor);
+                    imported++;
+
+                } catch (DataIntegrityViolationException rowException) {
+                    final boolean taken = !userRepository
+                            .findExistingUsernameKeys(Collections.singletonList(account.usernameKey)).isEmpty();
+
+                    failures.add(new RowFailure(account.row, account.form.getUsername(),
+                            taken ? Errors.USERNAME_ALREADY_EXISTS : Errors.ACCOUNT_NOT_STORED));
+                }
+            }
+
+            return imported;
+        }
+    }
+
+    /**
+     * Inserts the given accounts and commits. The inserts are flushed as JDBC
+     * batches, and the registrations are recorded once the transaction
+     * commits, so a chunk that is rolled back and retried row by row records
+     * each account only once.
+     *
+     * @param accounts
+     * @param creationDate
+     * @param actor - name of the importing user.
+     */
+    private void insert(final List<PendingAccount> accounts, final LocalDateTime creationDate,
+            final String actor) {
+        transactionTemplate.execute(status -> {
+            final List<User> users = new ArrayList<>(accounts.size());
+
+            for (PendingAccount account : accounts) {
+                final List<Role> roles = new ArrayList<>();
+                roles.add(account.role);
+
+                users.add(new UserBuilder().username(account.form.getUsername()).password(account.encodedPassword)
+                        .roles(roles).creationDate(creationDate).isAccountNonExpired(true).isAccountNonLocked(true)
+                        .isCredentialsNonExpired(true).isEnabled(true).build());
+            }
+
+            userRepository.saveAll(users);
+            userRepository.flush();
+
+            for (PendingAccount account : accounts) {
+                auditTrail.record(AuditRecord.now(AuditEventType.REGISTRATION, actor, account.form.getUsername(),
+                        null));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return name of the current user, or null when anonymous.
+     */
+    private static String getActor() {
+        final Authentication current = SecurityContextHolder.getContext().getAuthentication();
+
+        return Objects.isNull(current) || current instanceof AnonymousAuthenticationToken ? null
+                : current.getName();
+    }
+
+    /**
+     * Checks a form the same way registration does, and that it has a role.
+     *
+     * @param form
+     * @return "true" if the form can be imported.
+     */
+    private boolean isValid(final UserForm form) {
+        if (Objects.isNull(form) || Objects.isNull(form.getUsername()) || Objects.isNull(form.getPassword())
+                || Objects.isNull(form.getRoles()) || form.getRoles().isEmpty()) {
+            return false;
+        }
+
+        final Set<ConstraintViolation<UserForm>> violations = validator.validate(form);
+        return violations.isEmpty();
+    }
+
+    /**
+     * A validated account waiting to be inserted.
+     */
+    private static final class PendingAccount {
+
+        /**
+         * Position of the account in the import.
+         */
+        private final int row;
+
+        private final UserForm form;
+
+        private final String usernameKey;
+
+        private final Role role;
+
+        /**
+         * Written by a hashing worker, read after its hash was awaited.
+         */
+        private volatile String encodedPassword;
+
+        private PendingAccount(final int row, final UserForm form, final String usernameKey, final Role role) {
+            this.row = row;
+            this.form = form;
+            this.usernameKey = usernameKey;
+            this.role = role;
+        }
+    }
+
+}
@@ -1,14 +1,25 @@
 package com.auth.authsec.domain.user;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-
-import javax.persistence.EntityNotFoundException;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -16,16 +27,29 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.auth.authsec.domain.audit.AuditEventType;
+import com.auth.authsec.domain.audit.AuditRecord;
+import com.auth.authsec.domain.audit.AuditTrail;
 import com.auth.authsec.domain.config.Errors;
 import com.auth.authsec.domain.converters.Converter;
+import com.auth.authsec.domain.datasource.ReplicaRoutingDataSource;
 import com.auth.authsec.domain.exceptions.NoSuchRoleException;
 import com.auth.authsec.domain.exceptions.NoSuchUserException;
 import com.auth.authsec.domain.exceptions.NullResultListException;
+import com.auth.authsec.domain.exceptions.PasswordHashingOverloadException;
 import com.auth.authsec.domain.exceptions.InvalidEntityStateException;
 import com.auth.authsec.domain.exceptions.UserAlreadyExistsException;
+import com.auth.authsec.domain.role.Authority;
 import com.auth.authsec.domain.role.Role;
-import com.auth.authsec.domain.role.RoleRepository;
+import com.auth.authsec.domain.role.RoleRegistry;
+import com.auth.authsec.ui.user.AccountPage;
+import com.auth.authsec.ui.user.BulkOperationResult;
 import com.auth.authsec.ui.user.UserForm;
 
 /**
@@ -36,15 +60,32 @@ import com.auth.authsec.ui.user.UserForm;
 @Service
 public class DefaultUserService implements UserService {
 
+    private static final String ROLE_ADMIN = "ROLE_ADMIN";
+
+    /**
+     * The largest page an account listing can return.
+     */
+    private static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Maximum number of user ids in a single role lookup.
+     */
+    private static final int ROLE_LOOKUP_BATCH_SIZE = 1000;
+
+    /**
+     * Maximum number of user ids in a single bulk statement.
+     */
+    private static final int BULK_BATCH_SIZE = 1000;
+
     /**
      * The repository for managing User entities.
      */
     private final UserRepository userRepository;
 
     /**
-     * The repository for managing Role entities.
+     * The in-memory registry of Role entities.
      */
-    private final RoleRepository roleRepository;
+    private final RoleRegistry roleRegistry;
 
     /**
      * The Converter class for mapping UI User Forms to domain-level User
@@ -57,21 +98,49 @@ public class DefaultUserService implements UserService {
      */
     private final PasswordEncoder passwordEncoder;
 
+    /**
+     * Cache of loaded principals, so repeated logins don't hit the database.
+     * Changed accounts are evicted once their change commits.
+     */
+    private final PrincipalCache principalCache;
+
+    /**
+     * Audit trail of registrations, promotions and deletions.
+     */
+    private final AuditTrail auditTrail;
+
+    /**
+     * Read-only transaction of the username lookup, only started on a
+     * principal cache miss. The lookup is pinned to the primary even when read
+     * replicas are configured: a lagging replica would hand out an account
+     * from before a lock or deletion, after its eviction, and the principal
+     * cache would keep it.
+     */
+    private final TransactionTemplate lookupTransaction;
+
     /**
      * @Autowired constructor, injecting dependencies at runtime.
      * @param userRepository - repository for managing user entities.
      * @param passwordEncoder - object for encoding passwords in the database.
-     * @param roleRepository - repository for managing role entities.
+     * @param roleRegistry - registry of role entities.
      * @param userConverter - object for mapping user entities to UI forms.
+     * @param principalCache - cache of loaded principals.
+     * @param auditTrail - audit trail of account changes.
+     * @param transactionManager - manager of the username lookups.
      */
     @Autowired
     public DefaultUserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
-            RoleRepository roleRepository, Converter<UserForm, User> userConverter) {
+            RoleRegistry roleRegistry, Converter<UserForm, User> userConverter, PrincipalCache principalCache,
+            AuditTrail auditTrail, PlatformTransactionManager transactionManager) {
 
         this.userRepository = userRepository;
-        this.roleRepository = roleRepository;
+        this.roleRegistry = roleRegistry;
         this.userConverter = userConverter;
         this.passwordEncoder = passwordEncoder;
+        this.principalCache = principalCache;
+        this.auditTrail = auditTrail;
+        this.lookupTransaction = new TransactionTemplate(transactionManager);
+        this.lookupTransaction.setReadOnly(true);
 
     }
 
@@ -81,13 +150,32 @@ public class DefaultUserService implements UserService {
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findOneByUsername(username);
+        UserDetails cached = principalCache.getUserFromCache(username);
+
+        if (!Objects.isNull(cached)) {
+            return cached;
+        }
+
+        // taken before reading, so a change committed meanwhile keeps the result out of the cache
+        final long stamp = principalCache.getInvalidationStamp();
+        User user = ReplicaRoutingDataSource.readFromPrimary(() -> lookupTransaction.execute(status -> {
+            final User found = userRepository.findOneByUsername(username);
+
+            // the principal outlives the session, its roles must be loaded here
+            if (!Objects.isNull(found)) {
+                found.initializeRoles();
+            }
+            return found;
+        }));
 
         if (Objects.isNull(user)) {
             throw new UsernameNotFoundException(Errors.INVALID_CREDENTIALS);
         }
 
-        return user;
+        // the principal is shared by sessions and threads, never hand out the entity
+        final UserDetails principal = PrincipalSnapshot.of(user);
+        principalCache.putUserInCache(principal, stamp);
+        return principal;
     }
 
     /**
@@ -100,9 +188,12 @@ public class DefaultUserService implements UserService {
             User user = new User();
             user = setAccountDetails(user, userForm, true);
             userRepository.save(user);
+            audit(AuditEventType.REGISTRATION, user.getUsername());
 
         } catch (DataIntegrityViolationException exception) {
             throw new UserAlreadyExistsException();
+        } finally {
+            evictAfterCommit(Collections.singletonList(userForm.getUsername()));
         }
 
     }
@@ -111,12 +202,13 @@ public class DefaultUserService implements UserService {
      * {@inheritDoc}
      */
     @Override
+    @Transactional(readOnly = true)
     public List<UserForm> getAllAccounts() {
         List<UserForm> accounts = new ArrayList<>();
 
         try {
 
-            accounts = userRepository.findAll().stream().map(userConverter::convertToForm).collect(Collectors.toList());
+            accounts = toForms(userRepository.findAllSummaries());
 
         } catch (NullPointerException e) {
             throw new NullResultListException();
@@ -129,13 +221,85 @@ public class DefaultUserService implements UserService {
      * {@inheritDoc}
      */
     @Override
+    @Transactional(readOnly = true)
+    public AccountPage getAccountPage(final AccountFilter filter, final Long after, final int limit) {
+        final int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        final long cursor = Objects.isNull(after) ? 0L : after;
+
+        // one extra row tells whether there is a next page
+        final Pageable pageable = PageRequest.of(0, pageSize + 1);
+
+        List<AccountSummary> summaries;
+
+        switch (filter) {
+            case ADMINS:
+                summaries = userRepository.findSummaryPageWithRoleAfter(cursor, ROLE_ADMIN, pageable);
+                break;
+            case USERS:
+                summaries = userRepository.findSummaryPageWithoutRoleAfter(cursor, ROLE_ADMIN, pageable);
+                break;
+            default:
+                summaries = userRepository.findSummaryPageAfter(cursor, pageable);
+                break;
+        }
+
+        Long nextCursor = null;
+
+        if (summaries.size() > pageSize) {
+            summaries = summaries.subList(0, pageSize);
+            nextCursor = summaries.get(pageSize - 1).getId();
+        }
+
+        return new AccountPage(toForms(summaries), nextCursor, pageSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportAccounts(final AccountFilter filter, final Consumer<UserForm> sink) {
+        try (Stream<AccountRow> rows = streamAccountRows(filter)) {
+
+            final Iterator<AccountRow> iterator = rows.iterator();
+
+            AccountRow current = null;
+            List<String> roles = new ArrayList<>();
+
+            // rows of the same account are consecutive, one row per role
+            while (iterator.hasNext()) {
+                final AccountRow row = iterator.next();
+
+                if (!Objects.isNull(current) && !current.getId().equals(row.getId())) {
+                    sink.accept(toForm(current, roles));
+                    roles = new ArrayList<>();
+                }
+
+                current = row;
+
+                if (!Objects.isNull(row.getRoleName())) {
+                    roles.add(row.getRoleName());
+                }
+            }
+
+            if (!Objects.isNull(current)) {
+                sink.accept(toForm(current, roles));
+            }
+
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
     public List<UserForm> getAllWithoutCurrent() {
         List<UserForm> allWithoutCurrent = new ArrayList<>();
 
         try {
 
-            allWithoutCurrent = userRepository.findAll().stream().filter(currentUser -> withoutCurrent(currentUser))
-                    .map(userConverter::convertToForm).collect(Collectors.toList());
+            allWithoutCurrent = toForms(userRepository.findAllSummariesExceptUsername(getLoggedInUser().getName()));
 
         } catch (NullPointerException e) {
             throw new NullResultListException();
@@ -148,13 +312,13 @@ public class DefaultUserService implements UserService {
      * {@inheritDoc}
      */
     @Override
+    @Transactional(readOnly = true)
     public List<UserForm> getAllAdminAccounts() {
         List<UserForm> admins = new ArrayList<>();
 
         try {
 
-            admins = userRepository.findAll().stream().filter(currentUser -> isAdmin(currentUser))
-                    .map(userConverter::convertToForm).collect(Collectors.toList());
+            admins = toForms(userRepository.findAllSummariesWithRole(ROLE_ADMIN));
 
         } catch (NullPointerException e) {
             throw new NullResultListException();
@@ -167,13 +331,13 @@ public class DefaultUserService implements UserService {
      * {@inheritDoc}
      */
     @Override
+    @Transactional(readOnly = true)
     public List<UserForm> getAllUserAccounts() {
         List<UserForm> users = new ArrayList<>();
 
         try {
 
-            users = userRepository.findAll().stream().filter(currentUser -> !isAdmin(currentUser))
-                    .map(userConverter::convertToForm).collect(Collectors.toList());
+            users = toForms(userRepository.findAllSummariesWithoutRole(ROLE_ADMIN));
 
         } catch (NullPointerException e) {
             throw new NullResultListException();
@@ -200,6 +364,7 @@ public class DefaultUserService implements UserService {
      * {@inheritDoc}
      */
     @Override
+    @Transactional
     public void updateUserAccountToAdminAccount(final String username) {
         User user = userRepository.findOneByUsername(username);
 
@@ -209,14 +374,17 @@ public class DefaultUserService implements UserService {
 
         try {
 
-            List<Role> newRoles = roleRepository.findAll().stream().filter(x -> x.getAuthority().equals("ROLE_ADMIN"))
-                    .collect(Collectors.toList());
+            List<Role> newRoles = new ArrayList<>();
+            newRoles.add(roleRegistry.get(ROLE_ADMIN));
 
             user.setRoles(newRoles);
             userRepository.save(user);
+            audit(AuditEventType.PROMOTION, user.getUsername());
 
         } catch (NullPointerException e) {
             throw new NullResultListException();
+        } finally {
+            evictAfterCommit(Collections.singletonList(username));
         }
 
     }
@@ -225,29 +393,277 @@ public class DefaultUserService implements UserService {
      * {@inheritDoc}
      */
     @Override
-    public void deleteAccount(final String username) {
+    @Transactional
+    public BulkOperationResult updateUserAccountsToAdminAccounts(final List<String> usernames) {
+        final Map<String, Long> found = new LinkedHashMap<>();
+        final List<String> notFound = findIds(usernames, found);
+        final List<String> skipped = new ArrayList<>();
+
+        try {
+
+            final Set<Long> admins = new HashSet<>();
+            forEachBatch(found.values(), batch -> admins.addAll(userRepository.findIdsWithRole(batch, ROLE_ADMIN)));
+
+            final List<Long> ids = new ArrayList<>();
+
+            for (Map.Entry<String, Long> account : found.entrySet()) {
+                if (admins.contains(account.getValue())) {
+                    skipped.add(account.getKey());
+                } else {
+                    ids.add(account.getValue());
+                    audit(AuditEventType.PROMOTION, account.getKey());
+                }
+            }
+
+            final Long adminRoleId = roleRegistry.get(ROLE_ADMIN).getId();
+
+            forEachBatch(ids, batch -> {
+                userRepository.deleteRoleLinks(batch);
+                userRepository.insertRoleLinks(batch, adminRoleId);
+            });
+
+            return new BulkOperationResult(usernames.size(), ids.size(), notFound, skipped);
+
+        } finally {
+            evictAfterCommit(found.keySet());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updatePassword(final String username, final String encodedPassword) {
+        try {
+
+            userRepository.updatePassword(username, encodedPassword);
+
+        } finally {
+            evictAfterCommit(Collections.singletonList(username));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean setAccountLocked(final String username, final boolean locked) {
+        if (Objects.isNull(username)) {
+            throw new NoSuchUserException();
+        }
+
         try {
 
-            User user = userRepository.findOneByUsername(username);
-            userRepository.delete(user);
+            return userRepository.updateAccountNonLocked(username, !locked) > 0;
 
-        } catch (EntityNotFoundException | IllegalArgumentException | NullPointerException e) {
+        } finally {
+            evictAfterCommit(Collections.singletonList(username));
+        }
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public void deleteAccount(final String username) {
+        if (Objects.isNull(username)) {
             throw new NoSuchUserException();
         }
+
+        try {
+
+            final Map<String, Long> found = new LinkedHashMap<>();
+            findIds(Collections.singletonList(username), found);
+
+            if (found.isEmpty()) {
+                throw new NoSuchUserException();
+            }
+
+            deleteByIds(found.values());
+            audit(AuditEventType.DELETION, username);
+
+        } finally {
+            evictAfterCommit(Collections.singletonList(username));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public BulkOperationResult deleteAccounts(final List<String> usernames) {
+        final Map<String, Long> found = new LinkedHashMap<>();
+        final List<String> notFound = findIds(usernames, found);
+        final List<String> skipped = new ArrayList<>();
+
+        try {
+
+            final String currentUsername = getLoggedInUser().getName();
+
+            if (!Objects.isNull(currentUsername)
+                    && !Objects.isNull(found.remove(currentUsername.toLowerCase(Locale.ROOT)))) {
+                skipped.add(currentUsername);
+            }
+
+            deleteByIds(found.values());
+            found.keySet().forEach(deleted -> audit(AuditEventType.DELETION, deleted));
+
+            return new BulkOperationResult(usernames.size(), found.size(), notFound, skipped);
+
+        } finally {
+            evictAfterCommit(found.keySet());
+        }
     }
 
     // -------------------------------------------- Private Methods --------------------------------------------
     /**
-     * (this::WithoutCurrent) <=> (currentUser -> withoutCurrent(currentUser))
+     * Evicts the given principals from the cache once the current transaction
+     * commits, or right away outside of a transaction. Evicted before the
+     * commit, a concurrent login could still read and cache the old account.
      *
-     * Method to check if the processed user is the current logged in user.
+     * @param usernames - names of the changed accounts.
+     */
+    private void evictAfterCommit(final Collection<String> usernames) {
+        final List<String> evicted = new ArrayList<>(usernames);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    evicted.forEach(principalCache::removeUserFromCache);
+                }
+            });
+            return;
+        }
+
+        evicted.forEach(principalCache::removeUserFromCache);
+    }
+
+    /**
+     * Records a change of the given account, made by the current user, in the
+     * audit trail. Within a transaction, the change is recorded on commit.
      *
-     * @param user
-     * @return
+     * @param type - the kind of change.
+     * @param subject - name of the changed account.
      */
-    private boolean withoutCurrent(final User user) {
-        return !user.getUsername().equals(getLoggedInUser().getName());
+    private void audit(final AuditEventType type, final String subject) {
+        final Authentication current = getLoggedInUser();
+        final String actor = Objects.isNull(current) || current instanceof AnonymousAuthenticationToken ? null
+                : current.getName();
+
+        auditTrail.record(AuditRecord.now(type, actor, subject, null));
+    }
+
+    /**
+     * Looks up the ids of the accounts with the given usernames, in batches.
+     *
+     * @param usernames - names of the accounts.
+     * @param found - receives the id of each existing account, keyed by its
+     * lower case username.
+     * @return the usernames without an account.
+     */
+    private List<String> findIds(final List<String> usernames, final Map<String, Long> found) {
+        final Map<String, String> requested = new LinkedHashMap<>();
+
+        for (String username : usernames) {
+            if (!Objects.isNull(username)) {
+                requested.putIfAbsent(username.toLowerCase(Locale.ROOT), username);
+            }
+        }
+
+        forEachBatch(requested.keySet(), batch -> {
+            for (AccountSummary summary : userRepository.findSummariesByUsernameKeys(batch)) {
+                found.put(summary.getUsername().toLowerCase(Locale.ROOT), summary.getId());
+            }
+        });
+
+        return requested.entrySet().stream().filter(entry -> !found.containsKey(entry.getKey()))
+                .map(Map.Entry::getValue).collect(Collectors.toList());
+    }
+
+    /**
+     * Deletes the given accounts together with their role links.
+     *
+     * @param ids - ids of the accounts.
+     */
+    private void deleteByIds(final Collection<Long> ids) {
+        forEachBatch(ids, batch -> {
+            userRepository.deleteRoleLinks(batch);
+            userRepository.deleteAllByIds(batch);
+        });
+    }
+
+    /**
+     * Hands the given values to the action in batches of at most
+     * BULK_BATCH_SIZE, keeping the IN lists of the bulk statements bounded.
+     *
+     * @param values
+     * @param action
+     */
+    private static <T> void forEachBatch(final Collection<T> values, final Consumer<List<T>> action) {
+        final List<T> all = new ArrayList<>(values);
+
+        for (int from = 0; from < all.size(); from += BULK_BATCH_SIZE) {
+            action.accept(all.subList(from, Math.min(from + BULK_BATCH_SIZE, all.size())));
+        }
+    }
+
+    /**
+     * Opens a stream over the account rows matching the given filter. Must be
+     * consumed and closed inside a transaction.
+     *
+     * @param filter
+     * @return stream of account rows, ordered by user id.
+     */
+    private Stream<AccountRow> streamAccountRows(final AccountFilter filter) {
+        switch (filter) {
+            case ADMINS:
+                return userRepository.streamRowsWithRole(ROLE_ADMIN);
+            case USERS:
+                return userRepository.streamRowsWithoutRole(ROLE_ADMIN);
+            default:
+                return userRepository.streamAllRows();
+        }
+    }
+
+    /**
+     * Maps account summaries to forms, loading the role names of all the
+     * accounts with a few batched queries.
+     *
+     * @param summaries
+     * @return forms in the order of the summaries.
+     */
+    private List<UserForm> toForms(final List<AccountSummary> summaries) {
+        final Map<Long, List<String>> rolesByUser = new HashMap<>();
+        final List<Long> ids = summaries.stream().map(AccountSummary::getId).collect(Collectors.toList());
+
+        for (int from = 0; from < ids.size(); from += ROLE_LOOKUP_BATCH_SIZE) {
+            final List<Long> batch = ids.subList(from, Math.min(from + ROLE_LOOKUP_BATCH_SIZE, ids.size()));
+
+            for (AccountRole role : userRepository.findRolesOfUsers(batch)) {
+                rolesByUser.computeIfAbsent(role.getUserId(), id -> new ArrayList<>()).add(role.getRoleName());
+            }
+        }
+
+        return summaries.stream()
+                .map(summary -> toForm(summary, rolesByUser.getOrDefault(summary.getId(), new ArrayList<>())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Maps an account summary to a form. The form never carries the password.
+     *
+     * @param summary
+     * @param roles - role names of the account.
+     * @return the form.
+     */
+    private static UserForm toForm(final AccountSummary summary, final List<String> roles) {
+        final UserForm form = new UserForm(summary.getUsername(), null, roles);
+        form.setCreationDate(summary.getCreationDate());
+        return form;
     }
 
     /**
@@ -270,24 +686,19 @@ public class DefaultUserService implements UserService {
      * role.
      */
     private final boolean isAdmin(final User user) {
-        return (user.getAuthorities().contains(new Role("ROLE_ADMIN")));
+        return user.hasAuthority(Authority.ADMIN);
     }
 
     /**
-     * Private method for fetching a role type. If the role does not exist, it
-     * creates and saves the given role by the roleName parameter.
+     * Private method for fetching a role type from the role registry. If the
+     * role does not exist, the registry creates and saves the given role by the
+     * roleName parameter.
      *
      * @param roleName - name to search for.
      * @return fetched Role entity.
      */
     private final Role getUserRole(final String roleName) {
-        Role role = roleRepository.findOneByRoleName(roleName);
-
-        if (Objects.isNull(role)) {
-            role = new Role(roleName);
-            roleRepository.save(role);
-        }
-        return role;
+        return roleRegistry.getOrCreate(roleName);
     }
 
     /**
@@ -314,6 +725,8 @@ public class DefaultUserService implements UserService {
             user = userConverter.convertToModel(userForm);
             user.setRoles(roles);
 
+        } catch (PasswordHashingOverloadException e) {
+            throw e;
         } catch (RuntimeException e) {
             throw new NoSuchRoleException();
         }
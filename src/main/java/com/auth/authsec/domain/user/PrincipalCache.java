@@ -0,0 +1,314 @@
+package com.auth.authsec.domain.user;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Bounded, in-process cache of loaded principals, sitting in front of the
+ * username lookup in the user service. Entries are evicted in least recently
+ * used order once the maximum size is reached and expire after a fixed time to
+ * live, so a stale principal can never outlive the configured window even if an
+ * invalidation is missed.
+ *
+ * Usernames are matched case-insensitively, the same way the repository looks
+ * them up.
+ *
+ * Principals are cached as immutable snapshots, never as the User entity, so a
+ * cached principal can't be changed by, or leak Hibernate state into, the
+ * threads sharing it.
+ *
+ * Every removal advances an invalidation stamp. A loader takes the stamp
+ * before reading the principal and caches it with that stamp, which is refused
+ * if a removal happened in between, so a login that read an account before a
+ * change committed can't cache it after the change evicted it.
+ *
+ * @see PrincipalSnapshot
+ * @see UserCache
+ * @author Plamen
+ */
+@Component
+public class PrincipalCache implements UserCache, MeterBinder {
+
+    private static final String CACHE_NAME = "principals";
+
+    /**
+     * Maximum number of cached principals. A value of zero disables caching.
+     */
+    private final int maxSize;
+
+    /**
+     * How long a principal stays valid after it was put in the cache.
+     */
+    private final long timeToLiveNanos;
+
+    /**
+     * Access-ordered map of cached principals. Guarded by its own monitor.
+     */
+    private final Map<String, CachedPrincipal> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Source of the current time in nanoseconds.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Number of removals so far. Guarded by the monitor of the entries.
+     */
+    private long invalidations;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param maxSize - maximum number of cached principals.
+     * @param timeToLiveSeconds - time to live of a cached principal.
+     */
+    @Autowired
+    public PrincipalCache(@Value("${authsec.principal-cache.max-size:10000}") final int maxSize,
+            @Value("${authsec.principal-cache.time-to-live-seconds:300}") final long timeToLiveSeconds) {
+
+        this(maxSize, TimeUnit.SECONDS.toNanos(timeToLiveSeconds), System::nanoTime);
+    }
+
+    /**
+     * Constructor with an explicit clock, for tests.
+     *
+     * @param maxSize - maximum number of cached principals.
+     * @param timeToLiveNanos - time to live of a cached principal.
+     * @param clock - source of the current time in nanoseconds.
+     */
+    PrincipalCache(final int maxSize, final long timeToLiveNanos, final LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = timeToLiveNanos;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, CachedPrincipal>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 2984431712563082331L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPrincipal> eldest) {
+                if (size() > PrincipalCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public UserDetails getUserFromCache(final String username) {
+        if (Objects.isNull(username)) {
+            misses.increment();
+            return null;
+        }
+
+        final String key = toKey(username);
+
+        synchronized (entries) {
+            final CachedPrincipal cached = entries.get(key);
+
+            if (Objects.isNull(cached)) {
+                misses.increment();
+                return null;
+            }
+
+            if (cached.isExpired(clock.getAsLong())) {
+                entries.remove(key);
+                evictions.increment();
+                misses.increment();
+                return null;
+            }
+
+            hits.increment();
+            return cached.principal;
+        }
+    }
+
+    /**
+     * Caches an immutable snapshot of the given principal, whose authorities
+     * must be loaded.
+     *
+     * @param user - the loaded principal.
+     */
+    @Override
+    public void putUserInCache(final UserDetails user) {
+        put(user, null);
+    }
+
+    /**
+     * Caches an immutable snapshot of the given principal, unless a principal
+     * was removed since the given stamp was taken.
+     *
+     * @param user - the loaded principal.
+     * @param stamp - the invalidation stamp taken before loading the principal.
+     * @return "true" if the principal was cached.
+     * @see #getInvalidationStamp()
+     */
+    public boolean putUserInCache(final UserDetails user, final long stamp) {
+        return put(user, stamp);
+    }
+
+    /**
+     * The current invalidation stamp, to be taken before loading a principal
+     * that is going to be cached.
+     *
+     * @return the number of removals so far.
+     */
+    public long getInvalidationStamp() {
+        synchronized (entries) {
+            return invalidations;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeUserFromCache(final String username) {
+        if (Objects.isNull(username)) {
+            return;
+        }
+
+        synchronized (entries) {
+            invalidations++;
+            entries.remove(toKey(username));
+        }
+    }
+
+    /**
+     * Drops every cached principal.
+     */
+    public void clear() {
+        synchronized (entries) {
+            invalidations++;
+            entries.clear();
+        }
+    }
+
+    /**
+     * Registers the hit, miss, eviction and size meters of this cache.
+     *
+     * @param registry - the registry to bind to.
+     */
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .description("The number of times a principal was served from the cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .description("The number of times a principal had to be loaded from the database")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME)
+                .description("The number of principals evicted by size or expiry")
+                .register(registry);
+        Gauge.builder("cache.size", this, PrincipalCache::size)
+                .tags("cache", CACHE_NAME)
+                .description("The number of cached principals")
+                .register(registry);
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Caches an immutable snapshot of the given principal.
+     *
+     * @param user - the loaded principal.
+     * @param stamp - the stamp the removals must not have passed, null for
+     * none.
+     * @return "true" if the principal was cached.
+     */
+    private boolean put(final UserDetails user, final Long stamp) {
+        if (maxSize <= 0 || Objects.isNull(user) || Objects.isNull(user.getUsername())) {
+            return false;
+        }
+
+        final CachedPrincipal cached = new CachedPrincipal(PrincipalSnapshot.of(user),
+                clock.getAsLong() + timeToLiveNanos);
+
+        synchronized (entries) {
+            if (!Objects.isNull(stamp) && invalidations != stamp) {
+                return false;
+            }
+            entries.put(toKey(user.getUsername()), cached);
+            return true;
+        }
+    }
+
+    /**
+     * Usernames are unique regardless of case, so the cache key is the lower
+     * case form of the username.
+     *
+     * @param username
+     * @return the cache key.
+     */
+    private static String toKey(final String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A cached principal and the moment it expires.
+     */
+    private static final class CachedPrincipal {
+
+        private final PrincipalSnapshot principal;
+
+        private final long expiresAtNanos;
+
+        private CachedPrincipal(final PrincipalSnapshot principal, final long expiresAtNanos) {
+            this.principal = principal;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(final long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.auth.authsec.domain.user;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.auth.authsec.domain.role.Authority;
+
+/**
+ * Immutable copy of a loaded principal, the form in which principals are
+ * cached and handed to Spring Security. Unlike the User entity it holds no
+ * Hibernate state and can't be changed, so one instance can safely be shared
+ * by every thread and session of the same user.
+ *
+ * It doesn't implement CredentialsContainer on purpose: erasing the
+ * credentials of one login must not erase the password hash of the cached
+ * principal the next login is checked against.
+ *
+ * @see PrincipalCache
+ * @author Plamen
+ */
+public final class PrincipalSnapshot implements UserDetails {
+
+    private static final long serialVersionUID = 6243317025983520961L;
+
+    private final String username;
+
+    private final String password;
+
+    private final List<GrantedAuthority> authorities;
+
+    private final long authorityMask;
+
+    private final boolean accountNonExpired;
+
+    private final boolean accountNonLocked;
+
+    private final boolean credentialsNonExpired;
+
+    private final boolean enabled;
+
+    private PrincipalSnapshot(final UserDetails user) {
+        this.username = user.getUsername();
+        this.password = user.getPassword();
+        this.authorities = copyOf(user.getAuthorities());
+        this.authorityMask = Authority.maskOf(this.authorities);
+        this.accountNonExpired = user.isAccountNonExpired();
+        this.accountNonLocked = user.isAccountNonLocked();
+        this.credentialsNonExpired = user.isCredentialsNonExpired();
+        this.enabled = user.isEnabled();
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Copies the given principal. Its authorities must be loaded.
+     *
+     * @param user - the principal to copy.
+     * @return the snapshot, the given principal itself if it is one already.
+     */
+    public static PrincipalSnapshot of(final UserDetails user) {
+        return (user instanceof PrincipalSnapshot) ? (PrincipalSnapshot) user : new PrincipalSnapshot(user);
+    }
+
+    /**
+     * @param authority
+     * @return "true" if the principal has the given authority.
+     */
+    public boolean hasAuthority(final Authority authority) {
+        return authority.isIn(authorityMask);
+    }
+
+    /**
+     * Principals are equal if their usernames are, like Spring Security's own
+     * User, so the session registry recognizes the same user across logins.
+     */
+    @Override
+    public boolean equals(final Object other) {
+        return (other instanceof PrincipalSnapshot) && username.equals(((PrincipalSnapshot) other).username);
+    }
+
+    @Override
+    public int hashCode() {
+        return username.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "PrincipalSnapshot [username=" + username + ", authorities=" + authorities + ", isAccountNonExpired="
+                + accountNonExpired + ", isAccountNonLocked=" + accountNonLocked + ", isCredentialsNonExpired="
+                + credentialsNonExpired + ", isEnabled=" + enabled + "]";
+    }
+
+    // ----------------------------------------- Getter Methods -----------------------------------------
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * @return the authorities, unmodifiable.
+     */
+    @Override
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    /**
+     * @return the mask of the known authorities of the principal.
+     * @see Authority
+     */
+    public long getAuthorityMask() {
+        return authorityMask;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return accountNonExpired;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return accountNonLocked;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return credentialsNonExpired;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private static List<GrantedAuthority> copyOf(final Collection<? extends GrantedAuthority> authorities) {
+        if (Objects.isNull(authorities) || authorities.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<GrantedAuthority> copy = new ArrayList<>(authorities.size());
+
+        for (GrantedAuthority authority : authorities) {
+            copy.add(new SimpleGrantedAuthority(authority.getAuthority()));
+        }
+        return Collections.unmodifiableList(copy);
+    }
+
+}
@@ -1,24 +1,39 @@
 package com.auth.authsec.domain.user;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.persistence.UniqueConstraint;
 
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.auth.authsec.domain.converters.LocalDateTimePersistenceConverter;
+import com.auth.authsec.domain.role.Authority;
 import com.auth.authsec.domain.role.Role;
 
 /**
@@ -26,34 +41,79 @@ import com.auth.authsec.domain.role.Role;
  * locally in the app's database. Implements the UserDetails interface so Spring
  * Security can manage authorities and account details for the user in the
  * background.
+ *
+ * Users and their role links are kept in the read-write second-level cache,
+ * which Hibernate keeps consistent with the writes going through it. Bulk
+ * updates evict the whole region.
  */
 @Entity
-@Table(name = "users", uniqueConstraints = @UniqueConstraint(columnNames = "username"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "users", uniqueConstraints = @UniqueConstraint(columnNames = "username"),
+        indexes = @Index(name = "idx_users_username_key", columnList = "username_key", unique = true))
 public class User implements UserDetails {
 
     private static final long serialVersionUID = -1306352279165749420L;
 
+    /**
+     * Set in a computed authority mask, so a mask of zero means "not computed
+     * yet", also after deserialization.
+     */
+    private static final long MASK_COMPUTED = Long.MIN_VALUE;
+
+    /**
+     * Ids are handed out from a sequence in blocks of 50, instead of by the
+     * database on insert, so Hibernate can batch the inserts into "users" and
+     * "users_roles". On databases without sequences the generator falls back
+     * to a single row table.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "users_seq")
+    @GenericGenerator(name = "users_seq", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters = {
+                @Parameter(name = "sequence_name", value = "users_seq"),
+                @Parameter(name = "increment_size", value = "50"),
+                @Parameter(name = "optimizer", value = "pooled-lo")})
     @Column(name = "user_id")
     private Long id;
 
     @Column(name = "username", unique = true, nullable = false)
     private String username;
 
+    /**
+     * Lower case form of the username, maintained on every write. Lookups
+     * compare against this column, so they can be served from its unique
+     * index instead of scanning the table with LOWER(username). Nullable only
+     * so the column can be added to existing tables before being backfilled.
+     */
+    @Column(name = "username_key")
+    private String usernameKey;
+
     @Column(name = "password", nullable = false)
     private String password;
 
     /**
      * Many-to-Many relation between the User and Role entities. Spring Security
-     * uses this type of relation internally.
+     * uses this type of relation internally. Loaded lazily: the login lookup
+     * fetches the roles in the same query, and the roles of users loaded
+     * together are fetched in batches instead of one query per user.
      */
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JoinTable(name = "users_roles", joinColumns = {
         @JoinColumn(name = "user_id")}, inverseJoinColumns = {
         @JoinColumn(name = "role_id")})
     private List<Role> roles;
 
+    /**
+     * The known authorities among the roles as a bitmask, computed on first
+     * use and reset whenever the roles are replaced, the only way to change
+     * them.
+     */
+    @Transient
+    private transient volatile long authorityMask;
+
     @Column(name = "is_account_non_expired", nullable = false)
     private boolean isAccountNonExpired;
 
@@ -116,9 +176,13 @@ public class User implements UserDetails {
         return password;
     }
 
+    /**
+     * @return a read-only view of the roles, they can only be replaced through
+     * setRoles, which keeps the authority mask in sync.
+     */
     @Override
     public List<Role> getAuthorities() {
-        return roles;
+        return Objects.isNull(roles) ? null : Collections.unmodifiableList(roles);
     }
 
     @Override
@@ -149,15 +213,62 @@ public class User implements UserDetails {
         return creationDate;
     }
 
+    /**
+     * @return the mask of the known authorities of the user.
+     * @see Authority
+     */
+    public long getAuthorityMask() {
+        long mask = authorityMask;
+
+        if (mask == 0L) {
+            mask = Authority.maskOf(roles) | MASK_COMPUTED;
+            authorityMask = mask;
+        }
+        return mask & ~MASK_COMPUTED;
+    }
+
+    /**
+     * @param authority
+     * @return "true" if the user has the given authority.
+     */
+    public boolean hasAuthority(final Authority authority) {
+        return authority.isIn(getAuthorityMask());
+    }
+
+    /**
+     * Replaces the roles with a copy of the given ones, so changing the given
+     * list afterwards can't bypass the authority mask.
+     *
+     * @param roles
+     */
     public void setRoles(List<Role> roles) {
-        this.roles = roles;
+        this.roles = Objects.isNull(roles) ? null : new ArrayList<>(roles);
+        this.authorityMask = 0L;
+    }
+
+    /**
+     * Loads the roles if they are still lazy, so they can be read once the
+     * session is closed.
+     */
+    public void initializeRoles() {
+        Hibernate.initialize(roles);
+    }
+
+    /**
+     * Keeps the username key in sync with the username.
+     */
+    @PrePersist
+    @PreUpdate
+    void updateUsernameKey() {
+        this.usernameKey = (username == null) ? null : username.toLowerCase(Locale.ROOT);
     }
 
     @Override
     public String toString() {
         return "User [id=" + id + ", username=" + username + ", password=" + password + ", isAccountNonExpired="
                 + isAccountNonExpired + ", isAccountNonLocked=" + isAccountNonLocked + ", isCredentialsNonExpired="
-                + isCredentialsNonExpired + ", isEnabled=" + isEnabled + ", roles=" + roles + ", creationDate="
+                + isCredentialsNonExpired + ", isEnabled=" + isEnabled + ", roles="
+                + (Hibernate.isInitialized(roles) ? roles : "(not loaded)") + ", creationDate="
                 + creationDate + "]";
     }
 
@@ -24,7 +24,8 @@ public class UserConverter implements Converter<UserForm, User> {
     }
 
     /**
-     * Mapping an entity to a form object.
+     * Mapping an entity to a form object. The password hash is never copied
+     * into the form.
      *
      * @param entity - object to convert.
      * @return converted form.
@@ -33,7 +34,9 @@ public class UserConverter implements Converter<UserForm, User> {
     public UserForm convertToForm(final User model) {
         List<String> roles = model.getAuthorities().stream().map(x -> x.getAuthority())
                 .collect(Collectors.toList());
-        return new UserForm(model.getUsername(), model.getPassword(), roles);
+        UserForm form = new UserForm(model.getUsername(), null, roles);
+        form.setCreationDate(model.getCreationDate());
+        return form;
     }
 
     /**
@@ -1,9 +1,24 @@
 package com.auth.authsec.domain.user;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.auth.authsec.domain.exceptions.NoSuchUserException;
 
@@ -16,18 +31,246 @@ import com.auth.authsec.domain.exceptions.NoSuchUserException;
  *
  * @Query annotation allows the creation of native SQL and JPQL queries.
  *
+ * @see UserRoleLinks
  * @author Plamen
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRoleLinks {
+
+    /**
+     * Number of rows the JDBC driver fetches per round trip when streaming.
+     */
+    String STREAM_FETCH_SIZE = "500";
+
+    /**
+     * Selects a user together with its roles. DISTINCT only removes the
+     * duplicate users of the joined rows, it isn't passed to the database.
+     */
+    String FIND_BY_USERNAME = "SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles "
+            + "WHERE u.usernameKey=LOWER(:username)";
+
+    /**
+     * Selects the listing projection of a user, leaving out the password hash.
+     */
+    String SELECT_SUMMARY = "SELECT new com.auth.authsec.domain.user.AccountSummary(u.id, u.username, u.creationDate) "
+            + "FROM User u ";
 
     /**
-     * Custom-made query method for fetching an entity with a given name.
+     * Selects a user joined with each of its roles, one row per role.
+     */
+    String SELECT_ROW = "SELECT new com.auth.authsec.domain.user.AccountRow(u.id, u.username, u.creationDate, "
+            + "r.roleName) FROM User u LEFT JOIN u.roles r ";
+
+    /**
+     * Condition matching users having the role given by the "roleName"
+     * parameter.
+     */
+    String HAS_ROLE = "EXISTS (SELECT o FROM User o JOIN o.roles x WHERE o.id = u.id AND x.roleName = :roleName) ";
+
+    /**
+     * Custom-made query method for fetching an entity with a given name. The
+     * name is matched case-insensitively through the indexed, lower case
+     * username key. The result is kept in the query cache until the users
+     * table changes, the user itself in the second-level cache. The roles are
+     * fetched in the same query; on a query cache hit they are loaded lazily,
+     * usually from the second-level cache.
      *
      * @param username - name to search for
      * @return user entity with given username
      */
-    @Query("SELECT u FROM User u WHERE LOWER(u.username)=LOWER(:username)")
+    @Query(FIND_BY_USERNAME)
+    @QueryHints({
+        @QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"),
+        @QueryHint(name = HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HINT_CACHE_REGION, value = "users-by-username")})
     User findOneByUsername(@Param(value = "username") String username) throws NoSuchUserException;
 
+    /**
+     * Finds which of the given username keys are already taken.
+     *
+     * @param usernameKeys - lower case usernames to check.
+     * @return the username keys that already exist.
+     */
+    @Query("SELECT u.usernameKey FROM User u WHERE u.usernameKey IN :usernameKeys")
+    List<String> findExistingUsernameKeys(@Param(value = "usernameKeys") Collection<String> usernameKeys);
+
+    /**
+     * Finds the summaries of all users.
+     *
+     * @return summaries of all users, ordered by id.
+     */
+    @Query(SELECT_SUMMARY + "ORDER BY u.id")
+    List<AccountSummary> findAllSummaries();
+
+    /**
+     * Finds the summaries of all users having the given role.
+     *
+     * @param roleName - the role to filter by.
+     * @return summaries of users with the role, ordered by id.
+     */
+    @Query(SELECT_SUMMARY + "WHERE " + HAS_ROLE + "ORDER BY u.id")
+    List<AccountSummary> findAllSummariesWithRole(@Param(value = "roleName") String roleName);
+
+    /**
+     * Finds the summaries of all users not having the given role.
+     *
+     * @param roleName - the role to filter by.
+     * @return summaries of users without the role, ordered by id.
+     */
+    @Query(SELECT_SUMMARY + "WHERE NOT " + HAS_ROLE + "ORDER BY u.id")
+    List<AccountSummary> findAllSummariesWithoutRole(@Param(value = "roleName") String roleName);
+
+    /**
+     * Finds the summaries of all users except the one with the given name.
+     *
+     * @param username - name of the user to leave out.
+     * @return summaries of all other users, ordered by id.
+     */
+    @Query(SELECT_SUMMARY + "WHERE u.usernameKey <> LOWER(:username) ORDER BY u.id")
+    List<AccountSummary> findAllSummariesExceptUsername(@Param(value = "username") String username);
+
+    /**
+     * Keyset page of the summaries of all users with an id greater than the
+     * given one, ordered by id. The page size is taken from the pageable.
+     *
+     * @param after - id of the last user on the previous page.
+     * @param pageable - the page size.
+     * @return the summaries on the page.
+     */
+    @Query(SELECT_SUMMARY + "WHERE u.id > :after ORDER BY u.id")
+    List<AccountSummary> findSummaryPageAfter(@Param(value = "after") Long after, Pageable pageable);
+
+    /**
+     * Keyset page of the summaries of users having the given role.
+     *
+     * @param after - id of the last user on the previous page.
+     * @param roleName - the role to filter by.
+     * @param pageable - the page size.
+     * @return the summaries on the page.
+     */
+    @Query(SELECT_SUMMARY + "WHERE u.id > :after AND " + HAS_ROLE + "ORDER BY u.id")
+    List<AccountSummary> findSummaryPageWithRoleAfter(@Param(value = "after") Long after,
+            @Param(value = "roleName") String roleName, Pageable pageable);
+
+    /**
+     * Keyset page of the summaries of users not having the given role.
+     *
+     * @param after - id of the last user on the previous page.
+     * @param roleName - the role to filter by.
+     * @param pageable - the page size.
+     * @return the summaries on the page.
+     */
+    @Query(SELECT_SUMMARY + "WHERE u.id > :after AND NOT " + HAS_ROLE + "ORDER BY u.id")
+    List<AccountSummary> findSummaryPageWithoutRoleAfter(@Param(value = "after") Long after,
+            @Param(value = "roleName") String roleName, Pageable pageable);
+
+    /**
+     * Finds the role names of the given users.
+     *
+     * @param userIds - ids of the users.
+     * @return one entry per role assignment.
+     */
+    @Query("SELECT new com.auth.authsec.domain.user.AccountRole(u.id, r.roleName) FROM User u JOIN u.roles r "
+            + "WHERE u.id IN :userIds")
+    List<AccountRole> findRolesOfUsers(@Param(value = "userIds") Collection<Long> userIds);
+
+    /**
+     * Streams all users joined with their roles from a database cursor. Must
+     * be consumed and closed inside a transaction.
+     *
+     * @return stream of account rows, ordered by user id.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(SELECT_ROW + "ORDER BY u.id")
+    Stream<AccountRow> streamAllRows();
+
+    /**
+     * Streams the users having the given role, joined with all their roles.
+     *
+     * @param roleName - the role to filter by.
+     * @return stream of account rows, ordered by user id.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(SELECT_ROW + "WHERE " + HAS_ROLE + "ORDER BY u.id")
+    Stream<AccountRow> streamRowsWithRole(@Param(value = "roleName") String roleName);
+
+    /**
+     * Streams the users not having the given role, joined with all their
+     * roles.
+     *
+     * @param roleName - the role to filter by.
+     * @return stream of account rows, ordered by user id.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(SELECT_ROW + "WHERE NOT " + HAS_ROLE + "ORDER BY u.id")
+    Stream<AccountRow> streamRowsWithoutRole(@Param(value = "roleName") String roleName);
+
+    /**
+     * Finds the summaries of the users with the given username keys.
+     *
+     * @param usernameKeys - lower case usernames to look up.
+     * @return summaries of the existing users.
+     */
+    @Query(SELECT_SUMMARY + "WHERE u.usernameKey IN :usernameKeys")
+    List<AccountSummary> findSummariesByUsernameKeys(@Param(value = "usernameKeys") Collection<String> usernameKeys);
+
+    /**
+     * Finds which of the given users have the given role.
+     *
+     * @param ids - ids of the users to check.
+     * @param roleName - the role to filter by.
+     * @return ids of the users having the role.
+     */
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids AND " + HAS_ROLE)
+    List<Long> findIdsWithRole(@Param(value = "ids") Collection<Long> ids,
+            @Param(value = "roleName") String roleName);
+
+    /**
+     * Deletes the given users. Their role links must be removed first.
+     *
+     * @param ids - ids of the users.
+     * @return number of deleted users.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id IN :ids")
+    int deleteAllByIds(@Param(value = "ids") Collection<Long> ids);
+
+    /**
+     * Replaces the stored password hash of the user with the given name.
+     *
+     * @param username - name of the user.
+     * @param password - the new password hash.
+     * @return number of updated users.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.usernameKey=LOWER(:username)")
+    int updatePassword(@Param(value = "username") String username, @Param(value = "password") String password);
+
+    /**
+     * Locks or unlocks the user with the given name, unless it already is.
+     *
+     * @param username - name of the user.
+     * @param nonLocked - "false" to lock the user, "true" to unlock it.
+     * @return number of updated users, 0 if the user doesn't exist or already
+     * was in the given state.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.isAccountNonLocked = :nonLocked "
+            + "WHERE u.usernameKey=LOWER(:username) AND u.isAccountNonLocked <> :nonLocked")
+    int updateAccountNonLocked(@Param(value = "username") String username,
+            @Param(value = "nonLocked") boolean nonLocked);
+
+    /**
+     * Fills in the username key of users stored before the key existed.
+     *
+     * @return number of updated users.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.usernameKey = LOWER(u.username) WHERE u.usernameKey IS NULL")
+    int backfillUsernameKeys();
+
 }
@@ -0,0 +1,37 @@
+package com.auth.authsec.domain.user;
+
+import java.util.Collection;
+
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Bulk changes of the links between users and their roles, part of the user
+ * repository. They are native statements on the link table, which only evict
+ * the cached role collections and the cached queries reading the link table,
+ * instead of the whole second-level cache.
+ *
+ * @see UserRoleLinksImpl
+ * @author Plamen
+ */
+public interface UserRoleLinks {
+
+    /**
+     * Removes every role of the given users.
+     *
+     * @param ids - ids of the users.
+     * @return number of removed user role links.
+     */
+    @Transactional
+    int deleteRoleLinks(Collection<Long> ids);
+
+    /**
+     * Gives the given role to each of the given users.
+     *
+     * @param ids - ids of the users.
+     * @param roleId - id of the role.
+     * @return number of added user role links.
+     */
+    @Transactional
+    int insertRoleLinks(Collection<Long> ids, Long roleId);
+
+}
@@ -0,0 +1,70 @@
+package com.auth.authsec.domain.user;
+
+import java.util.Collection;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.query.NativeQuery;
+
+/**
+ * Native implementation of the user role link changes. Every statement is
+ * declared to touch the link table only, so Hibernate evicts the second-level
+ * cache regions and the cached queries depending on that table, and not every
+ * region as it does for native statements with unknown effects.
+ *
+ * @author Plamen
+ */
+public class UserRoleLinksImpl implements UserRoleLinks {
+
+    /**
+     * The table of the links, also the query space of User.roles.
+     */
+    private static final String ROLE_LINKS_TABLE = "users_roles";
+
+    private static final String DELETE_ROLE_LINKS = "DELETE FROM " + ROLE_LINKS_TABLE + " WHERE user_id IN :ids";
+
+    /**
+     * The role id is cast, as some databases cannot type a bare parameter in
+     * a select list.
+     */
+    private static final String INSERT_ROLE_LINKS = "INSERT INTO " + ROLE_LINKS_TABLE + " (user_id, role_id) "
+            + "SELECT u.user_id, CAST(:roleId AS BIGINT) FROM users u WHERE u.user_id IN :ids";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteRoleLinks(final Collection<Long> ids) {
+        return createRoleLinksStatement(DELETE_ROLE_LINKS)
+                .setParameterList("ids", ids)
+                .executeUpdate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int insertRoleLinks(final Collection<Long> ids, final Long roleId) {
+        return createRoleLinksStatement(INSERT_ROLE_LINKS)
+                .setParameterList("ids", ids)
+                .setParameter("roleId", roleId)
+                .executeUpdate();
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * @param sql
+     * @return a native statement touching only the link table.
+     */
+    private NativeQuery<?> createRoleLinksStatement(final String sql) {
+        return entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(ROLE_LINKS_TABLE);
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.auth.authsec.domain.user;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -8,6 +9,8 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import com.auth.authsec.domain.exceptions.UserAlreadyExistsException;
+import com.auth.authsec.ui.user.AccountPage;
+import com.auth.authsec.ui.user.BulkOperationResult;
 import com.auth.authsec.ui.user.UserForm;
 
 /**
@@ -64,6 +67,29 @@ public interface UserService extends UserDetailsService {
      */
     List<UserForm> getAllUserAccounts();
 
+    /**
+     * Method for getting one page of accounts, ordered by their id. Pages are
+     * addressed by the id of the last account on the previous page, so each
+     * page costs the same regardless of how deep into the listing it is.
+     *
+     * @param filter - role based filter for the accounts.
+     * @param after - cursor returned with the previous page, null for the
+     * first page.
+     * @param limit - the requested page size, capped at a maximum.
+     * @return the page with the cursor of the next one.
+     */
+    AccountPage getAccountPage(AccountFilter filter, Long after, int limit);
+
+    /**
+     * Method for exporting accounts one by one, without ever holding the whole
+     * listing in memory. Accounts are read from a database cursor and handed to
+     * the sink in id order.
+     *
+     * @param filter - role based filter for the accounts.
+     * @param sink - receives each exported account.
+     */
+    void exportAccounts(AccountFilter filter, Consumer<UserForm> sink);
+
     /**
      * Method for getting all accounts without the current logged in user.
      *
@@ -79,6 +105,16 @@ public interface UserService extends UserDetailsService {
      */
     void updateUserAccountToAdminAccount(final String username);
 
+    /**
+     * Method for promoting many accounts to admin accounts at once, with a few
+     * set-based statements in a single transaction. Accounts which are already
+     * admins are skipped.
+     *
+     * @param usernames - names of the accounts to promote.
+     * @return counts and the usernames that were not found or skipped.
+     */
+    BulkOperationResult updateUserAccountsToAdminAccounts(final List<String> usernames);
+
     /**
      * Method for checking if there is a user currently logged into the system.
      *
@@ -96,6 +132,25 @@ public interface UserService extends UserDetailsService {
      */
     Authentication getLoggedInUser();
 
+    /**
+     * Method for replacing the stored password hash of an account, e.g. when
+     * it was created with outdated hashing parameters.
+     *
+     * @param username of the account.
+     * @param encodedPassword the new password hash.
+     */
+    void updatePassword(final String username, final String encodedPassword);
+
+    /**
+     * Method for locking or unlocking an account. A locked account can't log
+     * in until it is unlocked again.
+     *
+     * @param username of the account.
+     * @param locked "true" to lock the account, "false" to unlock it.
+     * @return "true" if the account existed and wasn't in that state already.
+     */
+    boolean setAccountLocked(final String username, final boolean locked);
+
     /**
      * Method for deleting a selected account. Can only be done by an admin.
      *
@@ -103,4 +158,14 @@ public interface UserService extends UserDetailsService {
      */
     void deleteAccount(final String username);
 
+    /**
+     * Method for deleting many accounts at once, with a few set-based
+     * statements in a single transaction. The current user's own account is
+     * skipped.
+     *
+     * @param usernames - names of the accounts to delete.
+     * @return counts and the usernames that were not found or skipped.
+     */
+    BulkOperationResult deleteAccounts(final List<String> usernames);
+
 }
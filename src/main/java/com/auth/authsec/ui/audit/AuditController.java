@@ -0,0 +1,90 @@
+package com.auth.authsec.ui.audit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.auth.authsec.domain.audit.AuditEventReader;
+import com.auth.authsec.domain.audit.AuditRecord;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Rest Controller, streams the audit events stored in the audit log files.
+ *
+ * @author Plamen
+ */
+@RestController
+@ConditionalOnProperty(name = "authsec.audit.sink", havingValue = "file")
+public class AuditController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static final char LINE_SEPARATOR = '\n';
+
+    private AuditEventReader auditEventReader;
+
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    public AuditController(AuditEventReader auditEventReader, ObjectMapper objectMapper) {
+        super();
+        this.auditEventReader = auditEventReader;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Exports the audit events of a time window as newline-delimited JSON, one
+     * event per line, in the order they were written. The events are written
+     * to the response as they are read from the log files.
+     *
+     * @param from - start of the window, inclusive, e.g. 2018-05-01T00:00.
+     * @param to - end of the window, exclusive.
+     * @param response - the response the events are written to.
+     * @throws IOException if writing the response fails.
+     */
+    @PreAuthorize("@authz.isAdmin(authentication)")
+    @GetMapping(value = "/audit/events", produces = NDJSON)
+    public void exportEvents(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            HttpServletResponse response) throws IOException {
+
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+
+        final ObjectWriter writer = objectMapper.writerFor(AuditRecord.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+
+            try {
+
+                auditEventReader.read(from, to, record -> {
+                    try {
+                        writer.writeValue(generator, record);
+                        generator.writeRaw(LINE_SEPARATOR);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+}
@@ -1,13 +1,20 @@
 package com.auth.authsec.ui.exceptions;
 
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.servlet.ModelAndView;
 
+import com.auth.authsec.domain.exceptions.ImportTooLargeException;
 import com.auth.authsec.domain.exceptions.NoSuchRoleException;
 import com.auth.authsec.domain.exceptions.NoSuchUserException;
 import com.auth.authsec.domain.exceptions.NullParameterException;
 import com.auth.authsec.domain.exceptions.NullResultListException;
+import com.auth.authsec.domain.exceptions.PasswordHashingOverloadException;
 import com.auth.authsec.domain.exceptions.InvalidEntityStateException;
 import com.auth.authsec.domain.exceptions.UserAlreadyExistsException;
 
@@ -39,6 +46,12 @@ public class ExceptionController {
 
     private static final String NULL_RESULT_LIST = "No record was found for the specified query! The table may not contain any entries.";
 
+    private static final String HASHING_OVERLOAD = "The server is busy processing other requests! Try again in a moment.";
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private static final String IMPORT_TOO_LARGE = "The import holds too many accounts! Split it into smaller imports.";
+
     public ExceptionController() {
 
         super();
@@ -93,4 +106,23 @@ public class ExceptionController {
         return mav;
     }
 
+    @ExceptionHandler(PasswordHashingOverloadException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ModelAndView passwordHashingOverload(HttpServletResponse response) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        ModelAndView mav = new ModelAndView(ERROR);
+        mav.addObject(MESSAGE, HASHING_OVERLOAD);
+
+        return mav;
+    }
+
+    @ExceptionHandler(ImportTooLargeException.class)
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public ModelAndView importTooLarge() {
+        ModelAndView mav = new ModelAndView(ERROR);
+        mav.addObject(MESSAGE, IMPORT_TOO_LARGE);
+
+        return mav;
+    }
+
 }
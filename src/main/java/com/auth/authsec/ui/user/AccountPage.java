@@ -0,0 +1,47 @@
+package com.auth.authsec.ui.user;
+
+import java.util.List;
+
+/**
+ * One page of an account listing. The next cursor is passed back as the
+ * "after" parameter to fetch the following page and is null on the last page.
+ *
+ * @author Plamen
+ */
+public class AccountPage {
+
+    /**
+     * The accounts on this page, ordered by their id.
+     */
+    private final List<UserForm> accounts;
+
+    /**
+     * Cursor of the next page, null if there are no more accounts.
+     */
+    private final Long nextCursor;
+
+    /**
+     * The maximum number of accounts on a page.
+     */
+    private final int limit;
+
+    public AccountPage(List<UserForm> accounts, Long nextCursor, int limit) {
+        super();
+        this.accounts = accounts;
+        this.nextCursor = nextCursor;
+        this.limit = limit;
+    }
+
+    public List<UserForm> getAccounts() {
+        return accounts;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.auth.authsec.ui.user;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk operation on accounts, e.g. a bulk promotion or deletion.
+ *
+ * @author Plamen
+ */
+public class BulkOperationResult {
+
+    /**
+     * Number of usernames in the request.
+     */
+    private final int requested;
+
+    /**
+     * Number of accounts the operation was applied to.
+     */
+    private final int affected;
+
+    /**
+     * Usernames without an account.
+     */
+    private final List<String> notFound;
+
+    /**
+     * Usernames of accounts the operation does not apply to, e.g. accounts
+     * that are already admins or the current user's own account.
+     */
+    private final List<String> skipped;
+
+    public BulkOperationResult(int requested, int affected, List<String> notFound, List<String> skipped) {
+        super();
+        this.requested = requested;
+        this.affected = affected;
+        this.notFound = notFound;
+        this.skipped = skipped;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getAffected() {
+        return affected;
+    }
+
+    public List<String> getNotFound() {
+        return notFound;
+    }
+
+    public List<String> getSkipped() {
+        return skipped;
+    }
+
+}
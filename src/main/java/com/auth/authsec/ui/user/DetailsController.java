@@ -1,14 +1,27 @@
 package com.auth.authsec.ui.user;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.auth.authsec.domain.user.AccountFilter;
+import com.auth.authsec.domain.user.AccountImportService;
 import com.auth.authsec.domain.user.UserService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 /**
  * Rest Controller, returns the current logged-in user's information.
@@ -18,12 +31,25 @@ import com.auth.authsec.domain.user.UserService;
 @RestController
 public class DetailsController {
 
+    private static final String DEFAULT_PAGE_SIZE = "100";
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static final char LINE_SEPARATOR = '\n';
+
     private UserService userService;
 
+    private ObjectMapper objectMapper;
+
+    private AccountImportService accountImportService;
+
     @Autowired
-    public DetailsController(UserService userService) {
+    public DetailsController(UserService userService, ObjectMapper objectMapper,
+            AccountImportService accountImportService) {
         super();
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.accountImportService = accountImportService;
     }
 
     /**
@@ -33,43 +59,144 @@ public class DetailsController {
      *
      * @return the user's authentication details.
      */
-    @PreAuthorize("hasAnyRole('ROLE_USER', 'ROLE_ADMIN')")
+    @PreAuthorize("@authz.isUserOrAdmin(authentication)")
     @GetMapping("/user")
     public Authentication getUserDetails() {
         return userService.getLoggedInUser();
     }
 
     /**
-     * Shows all accounts in the database.
+     * Shows a page of all accounts in the database.
      *
-     * @return all accounts in the database.
+     * @param after - cursor of the page, taken from the previous page.
+     * @param limit - the page size.
+     * @return a page of accounts in the database.
      */
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @GetMapping("/all-accounts")
-    public List<UserForm> showAllAccounts() {
-        return userService.getAllAccounts();
+    public AccountPage showAllAccounts(@RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit) {
+        return userService.getAccountPage(AccountFilter.ALL, after, limit);
     }
 
     /**
-     * Shows all accounts with the "ADMIN" role in the database.
+     * Shows a page of accounts with the "ADMIN" role in the database.
      *
-     * @return all "ADMIN" accounts.
+     * @param after - cursor of the page, taken from the previous page.
+     * @param limit - the page size.
+     * @return a page of "ADMIN" accounts.
      */
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @GetMapping("/admins")
-    public List<UserForm> showAllAdmins() {
-        return userService.getAllAdminAccounts();
+    public AccountPage showAllAdmins(@RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit) {
+        return userService.getAccountPage(AccountFilter.ADMINS, after, limit);
     }
 
     /**
-     * Shows all accounts with the "USER" role in the database.
+     * Shows a page of accounts without the "ADMIN" role in the database.
      *
-     * @return all "USER" accounts.
+     * @param after - cursor of the page, taken from the previous page.
+     * @param limit - the page size.
+     * @return a page of "USER" accounts.
      */
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @GetMapping("/users")
-    public List<UserForm> showAllUsers() {
-        return userService.getAllUserAccounts();
+    public AccountPage showAllUsers(@RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit) {
+        return userService.getAccountPage(AccountFilter.USERS, after, limit);
+    }
+
+    /**
+     * Exports accounts as newline-delimited JSON, one account per line. The
+     * accounts are written to the response as they are read from the
+     * database, so memory use doesn't depend on the number of accounts.
+     *
+     * @param filter - optional role filter: ALL, ADMINS or USERS.
+     * @param response - the response the accounts are written to.
+     * @throws IOException if writing the response fails.
+     */
+    @PreAuthorize("@authz.isAdmin(authentication)")
+    @GetMapping(value = "/accounts/export", produces = NDJSON)
+    public void exportAccounts(@RequestParam(defaultValue = "ALL") AccountFilter filter, HttpServletResponse response)
+            throws IOException {
+
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+
+        final ObjectWriter writer = objectMapper.writerFor(UserForm.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+
+            try {
+
+                userService.exportAccounts(filter, account -> {
+                    try {
+                        writer.writeValue(generator, account);
+                        generator.writeRaw(LINE_SEPARATOR);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Promotes the given accounts to admin accounts in bulk.
+     *
+     * @param usernames - names of the accounts to promote.
+     * @return counts and the usernames that were not found or already admins.
+     */
+    @PreAuthorize("@authz.isAdmin(authentication)")
+    @PostMapping("/accounts/make-admin")
+    public BulkOperationResult makeAdminAccounts(@RequestBody List<String> usernames) {
+        return userService.updateUserAccountsToAdminAccounts(usernames);
+    }
+
+    /**
+     * Deletes the given accounts in bulk. The current user's own account is
+     * never deleted.
+     *
+     * @param usernames - names of the accounts to delete.
+     * @return counts and the usernames that were not found or skipped.
+     */
+    @PreAuthorize("@authz.isAdmin(authentication)")
+    @PostMapping("/accounts/delete")
+    public BulkOperationResult deleteAccounts(@RequestBody List<String> usernames) {
+        return userService.deleteAccounts(usernames);
+    }
+
+    /**
+     * Unlocks an account, e.g. one locked after repeated failed logins.
+     *
+     * @param username - name of the account to unlock.
+     * @return "true" if the account was locked.
+     */
+    @PreAuthorize("@authz.isAdmin(authentication)")
+    @PostMapping("/accounts/unlock")
+    public boolean unlockAccount(@RequestParam("username") String username) {
+        return userService.setAccountLocked(username, false);
+    }
+
+    /**
+     * Imports accounts in bulk. Rows that can not be imported, e.g. because
+     * the username already exists, are reported without failing the others.
+     * The import is answered once it is done, so imports are capped by the
+     * "authsec.account-import.max-accounts" property; split larger ones.
+     *
+     * @param accounts - the accounts to import, with raw passwords.
+     * @return the number of imported accounts and the rejected rows.
+     */
+    @PreAuthorize("@authz.isAdmin(authentication)")
+    @PostMapping("/accounts/import")
+    public ImportReport importAccounts(@RequestBody List<UserForm> accounts) {
+        return accountImportService.importAccounts(accounts);
     }
 
 }
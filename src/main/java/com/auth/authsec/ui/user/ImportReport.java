@@ -0,0 +1,83 @@
+package com.auth.authsec.ui.user;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk account import. Accounts that could not be imported are
+ * listed with their position in the request and the reason, every other
+ * account was imported.
+ *
+ * @author Plamen
+ */
+public class ImportReport {
+
+    /**
+     * Number of accounts in the request.
+     */
+    private final int requested;
+
+    /**
+     * Number of accounts that were imported.
+     */
+    private final int imported;
+
+    /**
+     * The rejected accounts, ordered by their position in the request.
+     */
+    private final List<RowFailure> failures;
+
+    public ImportReport(int requested, int imported, List<RowFailure> failures) {
+        super();
+        this.requested = requested;
+        this.imported = imported;
+        this.failures = failures;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public List<RowFailure> getFailures() {
+        return failures;
+    }
+
+    /**
+     * A single account that was not imported.
+     */
+    public static class RowFailure {
+
+        /**
+         * Zero based position of the account in the request.
+         */
+        private final int row;
+
+        private final String username;
+
+        private final String reason;
+
+        public RowFailure(int row, String username, String reason) {
+            super();
+            this.row = row;
+            this.username = username;
+            this.reason = reason;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+    }
+
+}
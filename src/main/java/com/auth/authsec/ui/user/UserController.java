@@ -100,7 +100,7 @@ public class UserController {
      * @param model
      * @return
      */
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @GetMapping("/add-admin")
     public ModelAndView showAddAdminPage(@RequestParam(required = false) String error, Model model) {
 
@@ -125,7 +125,7 @@ public class UserController {
      * @param model
      * @return
      */
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @PostMapping("/add-admin")
     public String processAdminRegistration(@Valid @ModelAttribute UserForm userForm, BindingResult bindingResult,
             String error, Model model) {
@@ -148,7 +148,7 @@ public class UserController {
      *
      * @return the dashboard page.
      */
-    @PreAuthorize("hasRole('ROLE_USER')")
+    @PreAuthorize("@authz.isUser(authentication)")
     @GetMapping("/dashboard")
     public ModelAndView showDashboardPage() {
         return new ModelAndView("dashboard");
@@ -159,7 +159,7 @@ public class UserController {
      *
      * @return the admin dashboard page.
      */
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @GetMapping("/admin-dashboard")
     public ModelAndView showAdminDashboardPage() {
         return new ModelAndView("admin-dashboard");
@@ -194,7 +194,7 @@ public class UserController {
         return mav;
     }
 
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @GetMapping("/make-admin")
     public ModelAndView showMakeAdminPage() {
 
@@ -205,7 +205,7 @@ public class UserController {
         return mav;
     }
 
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @GetMapping("/make-admin-account")
     public ModelAndView processMakeAdminPage(@RequestParam("username") final String username) {
 
@@ -216,7 +216,7 @@ public class UserController {
         return mav;
     }
 
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @GetMapping("/make-admin-success")
     public ModelAndView showMakeAdminSuccessPage(@RequestParam("username") final String username) {
 
@@ -236,7 +236,7 @@ public class UserController {
      * @param model
      * @return
      */
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @GetMapping("/delete-account")
     public ModelAndView showDeleteAccountPage() {
 
@@ -248,7 +248,7 @@ public class UserController {
         return mav;
     }
 
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @GetMapping("/delete-user-account")
     public ModelAndView processDeleteAccountPage(@RequestParam(name = "username") final String username) {
 
@@ -259,7 +259,7 @@ public class UserController {
 
     }
 
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PreAuthorize("@authz.isAdmin(authentication)")
     @GetMapping("/delete-success")
     public ModelAndView showDeleteSuccessPage(@RequestParam(name = "username") final String username) {
         final ModelAndView mav = new ModelAndView("/delete-success");
@@ -1,10 +1,14 @@
 package com.auth.authsec.ui.user;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.validation.constraints.Size;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
+
 /**
  * Class for representing the User model in a browser.
  *
@@ -20,13 +24,21 @@ public class UserForm {
     private String username;
 
     /**
-     * The password. Should not be less than 5 characters.
+     * The password. Should not be less than 5 characters. Can be read from a
+     * request, but is never written into a response.
      */
     @Size(min = 5, message = "Password is too short!")
+    @JsonProperty(access = Access.WRITE_ONLY)
     private String password;
 
     private List<String> roles;
 
+    /**
+     * The account's creation date. Only set on forms created from existing
+     * accounts.
+     */
+    private LocalDateTime creationDate;
+
     /**
      * Default Constructor
      */
@@ -76,4 +88,12 @@ public class UserForm {
         this.roles = roles;
     }
 
+    public LocalDateTime getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(LocalDateTime creationDate) {
+        this.creationDate = creationDate;
+    }
+
 }
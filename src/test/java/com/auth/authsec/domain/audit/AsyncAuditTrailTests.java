@@ -0,0 +1,283 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.audit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.auth.authsec.domain.exceptions.AuditRecordsRejectedException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Queueing, overflow and shutdown of the asynchronous audit trail, against a
+ * writer which can hold the background writer on its first batch.
+ *
+ * @author Plamen
+ */
+public class AsyncAuditTrailTests {
+
+    private final BlockingWriter writer = new BlockingWriter();
+
+    private AsyncAuditTrail trail;
+
+    public AsyncAuditTrailTests() {
+    }
+
+    @After
+    public void tearDown() {
+        writer.release();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        if (trail != null) {
+            trail.stop();
+        }
+    }
+
+    @Test
+    public void eventOfATransactionIsRecordedAfterCommit() {
+        trail = newTrail(16, "drop", 50);
+        AuditRecord record = newRecord("alice");
+
+        TransactionSynchronizationManager.initSynchronization();
+        trail.record(record);
+        assertEquals(0, writer.getWritten().size());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertEquals(Collections.singletonList(record), writer.getWritten());
+    }
+
+    @Test
+    public void eventOfARolledBackTransactionIsNotRecorded() {
+        trail = newTrail(16, "drop", 50);
+
+        TransactionSynchronizationManager.initSynchronization();
+        trail.record(newRecord("alice"));
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertEquals(0, writer.getWritten().size());
+    }
+
+    @Test
+    public void stopWritesEveryQueuedEvent() throws InterruptedException {
+        trail = newTrail(16, "drop", 50);
+        writer.holdFirstBatch();
+        trail.start();
+
+        List<AuditRecord> records = Arrays.asList(newRecord("a"), newRecord("b"), newRecord("c"), newRecord("d"));
+        trail.record(records.get(0));
+        writer.awaitHeld();
+        for (AuditRecord record : records.subList(1, records.size())) {
+            trail.record(record);
+        }
+        assertEquals(0, writer.getWritten().size());
+
+        writer.release();
+        trail.stop();
+
+        assertEquals(records, writer.getWritten());
+    }
+
+    @Test
+    public void eventRecordedAfterStopIsWrittenSynchronously() {
+        trail = newTrail(16, "drop", 50);
+        trail.start();
+        trail.stop();
+
+        AuditRecord record = newRecord("alice");
+        trail.record(record);
+
+        assertEquals(Collections.singletonList(record), writer.getWritten());
+    }
+
+    @Test
+    public void dropPolicyDropsEventsOverflowingTheQueue() throws InterruptedException {
+        trail = newTrail(1, "drop", 50);
+        List<AuditRecord> records = fillQueue();
+
+        trail.record(newRecord("dropped"));
+
+        writer.release();
+        trail.stop();
+
+        assertEquals(records, writer.getWritten());
+    }
+
+    @Test
+    public void blockPolicyWaitsForRoomInTheQueue() throws InterruptedException {
+        trail = newTrail(1, "block", TimeUnit.SECONDS.toMillis(30));
+        List<AuditRecord> records = new ArrayList<>(fillQueue());
+        final AuditRecord blocked = newRecord("blocked");
+        records.add(blocked);
+
+        Thread recorder = new Thread(() -> trail.record(blocked));
+        recorder.start();
+        recorder.join(200);
+        assertTrue(recorder.isAlive());
+
+        writer.release();
+        recorder.join();
+        trail.stop();
+
+        assertEquals(records, writer.getWritten());
+    }
+
+    @Test
+    public void blockPolicyDropsEventsAfterTheOfferTimeout() throws InterruptedException {
+        trail = newTrail(1, "block", 10);
+        List<AuditRecord> records = fillQueue();
+
+        trail.record(newRecord("dropped"));
+
+        writer.release();
+        trail.stop();
+
+        assertEquals(records, writer.getWritten());
+    }
+
+    @Test
+    public void callerRunsPolicyWritesOverflowingEventsOnTheRecordingThread() throws InterruptedException {
+        trail = newTrail(1, "caller-runs", 50);
+        List<AuditRecord> records = fillQueue();
+        AuditRecord overflowing = newRecord("overflowing");
+
+        trail.record(overflowing);
+        assertEquals(Collections.singletonList(overflowing), writer.getWritten());
+
+        writer.release();
+        trail.stop();
+
+        assertEquals(3, writer.getWritten().size());
+        assertTrue(writer.getWritten().containsAll(records));
+    }
+
+    @Test
+    public void recordsRejectedByTheStorageAreCountedOneByOne() throws InterruptedException {
+        trail = newTrail(16, "drop", 50);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        trail.bindTo(registry);
+        writer.rejectFirstOfEachBatch();
+        writer.holdFirstBatch();
+        trail.start();
+
+        trail.record(newRecord("a"));
+        writer.awaitHeld();
+        trail.record(newRecord("b"));
+        trail.record(newRecord("c"));
+
+        writer.release();
+        trail.stop();
+
+        assertEquals(1, registry.find("authsec.audit.written").functionCounter().count(), 0);
+        assertEquals(2, registry.find("authsec.audit.failed").functionCounter().count(), 0);
+    }
+
+    /**
+     * Starts the trail, holds the background writer on a first event and
+     * fills the queue of capacity 1 with a second one.
+     *
+     * @return both events.
+     * @throws InterruptedException
+     */
+    private List<AuditRecord> fillQueue() throws InterruptedException {
+        writer.holdFirstBatch();
+        trail.start();
+
+        List<AuditRecord> records = Arrays.asList(newRecord("held"), newRecord("queued"));
+        trail.record(records.get(0));
+        writer.awaitHeld();
+        trail.record(records.get(1));
+
+        return records;
+    }
+
+    private AsyncAuditTrail newTrail(int queueCapacity, String overflowPolicy, long offerTimeoutMillis) {
+        return new AsyncAuditTrail(writer, queueCapacity, 16, 20, overflowPolicy, offerTimeoutMillis);
+    }
+
+    private static AuditRecord newRecord(String actor) {
+        return AuditRecord.now(AuditEventType.LOGIN_SUCCESS, actor, actor, null);
+    }
+
+    /**
+     * Writer keeping the written events in order, which can hold the first
+     * batch until released and reject the first event of every batch.
+     */
+    private static class BlockingWriter implements AuditEventWriter {
+
+        private final List<AuditRecord> written = Collections.synchronizedList(new ArrayList<>());
+
+        private final CountDownLatch held = new CountDownLatch(1);
+
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private volatile boolean holdFirstBatch;
+
+        private volatile boolean rejectFirstOfEachBatch;
+
+        @Override
+        public void write(List<AuditRecord> records) {
+            if (holdFirstBatch) {
+                holdFirstBatch = false;
+                held.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (rejectFirstOfEachBatch) {
+                written.addAll(records.subList(1, records.size()));
+                throw new AuditRecordsRejectedException(1);
+            }
+            written.addAll(records);
+        }
+
+        void rejectFirstOfEachBatch() {
+            rejectFirstOfEachBatch = true;
+        }
+
+        void holdFirstBatch() {
+            holdFirstBatch = true;
+        }
+
+        void awaitHeld() throws InterruptedException {
+            assertTrue(held.await(10, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        List<AuditRecord> getWritten() {
+            synchronized (written) {
+                return new ArrayList<>(written);
+            }
+        }
+    }
+}
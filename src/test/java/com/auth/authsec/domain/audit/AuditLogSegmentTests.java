@@ -0,0 +1,136 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.audit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Appending, indexing and reading of a single audit log segment.
+ *
+ * @author Plamen
+ */
+public class AuditLogSegmentTests {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private static final LocalDateTime START = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public AuditLogSegmentTests() {
+    }
+
+    @Test
+    public void appendedRecordsAreReadBack() throws IOException {
+        AuditRecord full = new AuditRecord(AuditEventType.LOGIN_FAILURE, "alice", "bob", "d\u00e9tail", START);
+        AuditRecord empty = new AuditRecord(AuditEventType.REGISTRATION, null, null, null, START.plusSeconds(1));
+
+        try (AuditLogSegment segment = newSegment(4096, 16)) {
+            assertTrue(segment.append(full));
+            assertTrue(segment.append(empty));
+
+            assertEquals(toStrings(full, empty), read(segment, START, START.plusSeconds(2)));
+        }
+    }
+
+    @Test
+    public void rangeQueriesReturnOnlyRecordsWithinTheRange() throws IOException {
+        List<AuditRecord> records = new ArrayList<>();
+        // out of order within the index blocks
+        for (int second : new int[] {0, 2, 1, 3, 5, 4, 6}) {
+            records.add(newRecord("user-" + second, second));
+        }
+
+        try (AuditLogSegment segment = newSegment(4096, 2)) {
+            for (AuditRecord record : records) {
+                assertTrue(segment.append(record));
+            }
+
+            assertEquals(toStrings(records.get(1), records.get(2), records.get(3)),
+                    read(segment, START.plusSeconds(1), START.plusSeconds(4)));
+            assertEquals(toStrings(records.get(6)), read(segment, START.plusSeconds(6), START.plusSeconds(7)));
+            assertEquals(0, read(segment, START.plusSeconds(7), START.plusSeconds(8)).size());
+        }
+    }
+
+    @Test
+    public void sealedSegmentIsReadBackThroughItsIndex() throws IOException {
+        List<AuditRecord> records = new ArrayList<>();
+        Path dataFile;
+
+        AuditLogSegment segment = newSegment(4096, 2);
+        for (int second = 0; second < 5; second++) {
+            records.add(newRecord("user-" + second, second));
+            segment.append(records.get(second));
+        }
+        dataFile = segment.getDataFile();
+        segment.seal();
+
+        assertEquals(3 * 24, Files.size(AuditLogSegment.toIndexFile(dataFile)));
+        assertEquals(segment.getPosition(), Files.size(dataFile));
+        assertEquals(toStrings(records.get(4)), read(segment, START.plusSeconds(4), START.plusSeconds(5)));
+
+        AuditLogSegment reopened = AuditLogSegment.open(dataFile, ZONE);
+        assertEquals(toStrings(records.toArray(new AuditRecord[0])),
+                read(reopened, START, START.plusSeconds(5)));
+        assertEquals(toStrings(records.get(2), records.get(3)),
+                read(reopened, START.plusSeconds(2), START.plusSeconds(4)));
+    }
+
+    @Test
+    public void fullSegmentRefusesRecords() throws IOException {
+        try (AuditLogSegment segment = newSegment(64, 16)) {
+            assertTrue(segment.append(newRecord("a", 0)));
+            assertFalse(segment.append(new AuditRecord(AuditEventType.LOGIN_SUCCESS, "a", "a",
+                    "a detail longer than the room left in the segment", START)));
+            assertEquals(1, read(segment, START, START.plusSeconds(1)).size());
+        }
+    }
+
+    private AuditLogSegment newSegment(int size, int indexInterval) throws IOException {
+        return AuditLogSegment.create(folder.getRoot().toPath().resolve("segment" + AuditLogSegment.DATA_SUFFIX),
+                size, indexInterval, ZONE);
+    }
+
+    private static AuditRecord newRecord(String actor, int second) {
+        return new AuditRecord(AuditEventType.LOGIN_SUCCESS, actor, actor, null, START.plusSeconds(second));
+    }
+
+    private static List<String> read(AuditLogSegment segment, LocalDateTime from, LocalDateTime to)
+            throws IOException {
+
+        List<String> read = new ArrayList<>();
+        segment.read(toMillis(from), toMillis(to), record -> read.add(record.toString()));
+        return read;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    private static List<String> toStrings(AuditRecord... records) {
+        List<String> strings = new ArrayList<>();
+        Arrays.stream(records).forEach(record -> strings.add(record.toString()));
+        return strings;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.audit;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.auth.authsec.domain.exceptions.AuditRecordsRejectedException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Writing, rolling, reopening and range queries of the memory-mapped audit
+ * log.
+ *
+ * @author Plamen
+ */
+public class MappedFileAuditEventWriterTests {
+
+    private static final LocalDateTime START = LocalDateTime.now().minusHours(1).truncatedTo(ChronoUnit.SECONDS);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<MappedFileAuditEventWriter> writers = new ArrayList<>();
+
+    public MappedFileAuditEventWriterTests() {
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (MappedFileAuditEventWriter writer : writers) {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void writtenRecordsAreReadBack() throws IOException {
+        MappedFileAuditEventWriter writer = newWriter(3600, 0);
+
+        writer.write(Arrays.asList(newRecord("a", 0), newRecord("b", 1)));
+        writer.write(Collections.singletonList(newRecord("c", 2)));
+
+        assertEquals(Arrays.asList("a", "b", "c"), read(writer, START, START.plusSeconds(3)));
+        assertEquals(Collections.singletonList("b"), read(writer, START.plusSeconds(1), START.plusSeconds(2)));
+        assertEquals(1, countSegments());
+    }
+
+    @Test
+    public void segmentsRollAndTheOldestAreDeleted() throws IOException, InterruptedException {
+        MappedFileAuditEventWriter writer = newWriter(0, 2);
+
+        for (int second = 0; second < 3; second++) {
+            writer.write(Collections.singletonList(newRecord("user-" + second, second)));
+            Thread.sleep(2);
+        }
+
+        assertEquals(2, countSegments());
+        assertEquals(Arrays.asList("user-1", "user-2"), read(writer, START, START.plusSeconds(3)));
+    }
+
+    @Test
+    public void recordsAreReadBackAfterARestart() throws IOException {
+        MappedFileAuditEventWriter writer = newWriter(3600, 0);
+        writer.write(Arrays.asList(newRecord("a", 0), newRecord("b", 1)));
+        writer.close();
+
+        MappedFileAuditEventWriter restarted = newWriter(3600, 0);
+        restarted.write(Collections.singletonList(newRecord("c", 2)));
+
+        assertEquals(2, countSegments());
+        assertEquals(Arrays.asList("a", "b", "c"), read(restarted, START, START.plusSeconds(3)));
+        assertEquals(Arrays.asList("b", "c"), read(restarted, START.plusSeconds(1), START.plusSeconds(3)));
+    }
+
+    @Test
+    public void segmentsEndingBeforeTheRangeAreNotScanned() throws IOException, InterruptedException {
+        MappedFileAuditEventWriter writer = newWriter(0, 0);
+        // a record can't occur after it was written, this one only shows
+        // whether its segment is scanned
+        LocalDateTime future = LocalDateTime.now().plusHours(1);
+        writer.write(Collections.singletonList(new AuditRecord(AuditEventType.LOGIN_SUCCESS, "future", null, null,
+                future)));
+        Thread.sleep(2);
+        writer.write(Collections.singletonList(newRecord("past", 0)));
+        Thread.sleep(2);
+
+        assertEquals(Collections.emptyList(), read(writer, LocalDateTime.now(), future.plusSeconds(1)));
+        assertEquals(Arrays.asList("future", "past"), read(writer, START, future.plusSeconds(1)));
+    }
+
+    @Test
+    public void onlyTheMostRecentlyReadSegmentsStayOpen() throws IOException, InterruptedException {
+        MappedFileAuditEventWriter writer = newWriter(0, 0);
+
+        for (int second = 0; second < 5; second++) {
+            writer.write(Collections.singletonList(newRecord("user-" + second, second)));
+            Thread.sleep(2);
+        }
+        writer.close();
+
+        assertEquals(Arrays.asList("user-0", "user-1", "user-2", "user-3", "user-4"),
+                read(writer, START, START.plusSeconds(5)));
+        assertEquals(2, writer.getOpenSegmentCount());
+        assertEquals(Arrays.asList("user-0", "user-1", "user-2", "user-3", "user-4"),
+                read(writer, START, START.plusSeconds(5)));
+    }
+
+    @Test
+    public void sealedSegmentsAreTruncatedToTheirRecords() throws IOException, InterruptedException {
+        MappedFileAuditEventWriter writer = newWriter(0, 0);
+        writer.write(Collections.singletonList(newRecord("a", 0)));
+        Thread.sleep(2);
+        writer.write(Collections.singletonList(newRecord("b", 1)));
+        writer.close();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder.getRoot().toPath(),
+                "*" + AuditLogSegment.DATA_SUFFIX)) {
+            for (Path file : files) {
+                assertTrue(file.toString(), Files.size(file) < 1024);
+            }
+        }
+        assertEquals(Arrays.asList("a", "b"), read(writer, START, START.plusSeconds(2)));
+    }
+
+    @Test
+    public void recordsThatFitNoSegmentAreRejectedOneByOne() throws IOException {
+        MappedFileAuditEventWriter writer = newWriter(3600, 0, 0);
+
+        try {
+            writer.write(Arrays.asList(newRecord("a", 0), newRecord("b", 1)));
+            fail("The records should be rejected");
+        } catch (AuditRecordsRejectedException e) {
+            assertEquals(2, e.getRejected());
+        }
+        assertEquals(Collections.emptyList(), read(writer, START, START.plusSeconds(2)));
+    }
+
+    private MappedFileAuditEventWriter newWriter(long rollIntervalSeconds, int maxSegments) throws IOException {
+        return newWriter(rollIntervalSeconds, maxSegments, 1);
+    }
+
+    private MappedFileAuditEventWriter newWriter(long rollIntervalSeconds, int maxSegments, int segmentSizeMegabytes)
+            throws IOException {
+
+        MappedFileAuditEventWriter writer = new MappedFileAuditEventWriter(folder.getRoot().getPath(),
+                segmentSizeMegabytes, rollIntervalSeconds, 2, maxSegments, 2);
+        writers.add(writer);
+        return writer;
+    }
+
+    private int countSegments() throws IOException {
+        int segments = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder.getRoot().toPath(),
+                "*" + AuditLogSegment.DATA_SUFFIX)) {
+            for (Path file : files) {
+                segments++;
+            }
+        }
+        return segments;
+    }
+
+    private static AuditRecord newRecord(String actor, int second) {
+        return new AuditRecord(AuditEventType.LOGIN_SUCCESS, actor, null, null, START.plusSeconds(second));
+    }
+
+    private static List<String> read(MappedFileAuditEventWriter writer, LocalDateTime from, LocalDateTime to) {
+        List<String> actors = new ArrayList<>();
+        writer.read(from, to, record -> actors.add(record.getActor()));
+        return actors;
+    }
+}
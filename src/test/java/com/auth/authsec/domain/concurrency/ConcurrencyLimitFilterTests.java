@@ -0,0 +1,101 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.concurrency;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Admission, rejection and exclusion of requests by the concurrency limit
+ * filter, with a single permit.
+ *
+ * @author Plamen
+ */
+public class ConcurrencyLimitFilterTests {
+
+    private final ConcurrencyLimit limit = new ConcurrencyLimit("test", 1, 10);
+
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limit,
+            new AntPathRequestMatcher("/styles.css"));
+
+    public ConcurrencyLimitFilterTests() {
+    }
+
+    @Test
+    public void requestWithAPermitIsHandledAndReleasesIt() throws ServletException, IOException {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("/home"), response, chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    public void requestWithoutAPermitGetsA503WithRetryAfter() throws ServletException, IOException {
+        assertTrue(limit.tryAcquire());
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("/home"), response, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.getStatus());
+        assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void unlimitedRequestPassesWithoutAPermit() throws ServletException, IOException {
+        assertTrue(limit.tryAcquire());
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("/styles.css"), response, chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    }
+
+    @Test
+    public void failingRequestReleasesItsPermit() throws IOException {
+        FilterChain failing = (request, response) -> {
+            throw new ServletException("failed");
+        };
+
+        try {
+            filter.doFilter(request("/home"), new MockHttpServletResponse(), failing);
+            fail("The failure should propagate");
+        } catch (ServletException e) {
+            // expected
+        }
+
+        assertTrue(limit.tryAcquire());
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        return request;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.concurrency;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Permits, rejections and meters of the concurrency limit.
+ *
+ * @author Plamen
+ */
+public class ConcurrencyLimitTests {
+
+    private final ConcurrencyLimit limit = new ConcurrencyLimit("test", 2, 10);
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    public ConcurrencyLimitTests() {
+        limit.bindTo(registry);
+    }
+
+    @After
+    public void tearDown() {
+        // clears an interrupt a test left behind
+        Thread.interrupted();
+    }
+
+    @Test
+    public void callersOverTheLimitAreRejectedAfterTheTimeout() {
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertEquals(2, active(), 0);
+
+        long startedAt = System.nanoTime();
+        assertFalse(limit.tryAcquire());
+
+        assertTrue(System.nanoTime() - startedAt >= 10_000_000L);
+        assertEquals(1, rejected(), 0);
+    }
+
+    @Test
+    public void releasedPermitIsGrantedAgain() {
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+
+        limit.release();
+
+        assertEquals(1, active(), 0);
+        assertTrue(limit.tryAcquire());
+        assertEquals(0, rejected(), 0);
+    }
+
+    @Test
+    public void interruptedCallerIsRejectedAndStaysInterrupted() {
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+
+        Thread.currentThread().interrupt();
+
+        assertFalse(limit.tryAcquire());
+        assertTrue(Thread.currentThread().isInterrupted());
+        assertEquals(1, rejected(), 0);
+    }
+
+    private double active() {
+        return registry.find("authsec.concurrency.active").tags("limit", "test").gauge().value();
+    }
+
+    private double rejected() {
+        return registry.find("authsec.concurrency.rejected").tags("limit", "test").functionCounter().count();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.config;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.auth.authsec.domain.role.RoleRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Creation of the default roles and the administrator on start-up.
+ *
+ * @author Plamen
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class StartupConfigRunnerTests {
+
+    private static final String COUNT_ROLE = "SELECT COUNT(*) FROM roles WHERE role_name = ?";
+
+    @Autowired
+    @Qualifier("runner")
+    private ApplicationListener<ContextRefreshedEvent> runner;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private RoleRegistry roleRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    public StartupConfigRunnerTests() {
+    }
+
+    @Test
+    public void restartKeepsTheExistingDefaultRoles() {
+        Long adminRoleId = roleRegistry.get("ROLE_ADMIN").getId();
+        Long userRoleId = roleRegistry.get("ROLE_USER").getId();
+
+        restart();
+
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject(COUNT_ROLE, Integer.class, "ROLE_ADMIN"));
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject(COUNT_ROLE, Integer.class, "ROLE_USER"));
+        assertEquals(adminRoleId, roleRegistry.get("ROLE_ADMIN").getId());
+        assertEquals(userRoleId, roleRegistry.get("ROLE_USER").getId());
+    }
+
+    @Test
+    public void onlyTheMissingDefaultRoleIsCreated() {
+        Long adminRoleId = roleRegistry.get("ROLE_ADMIN").getId();
+        jdbcTemplate.update("DELETE FROM users_roles WHERE role_id IN "
+                + "(SELECT role_id FROM roles WHERE role_name = 'ROLE_USER')");
+        jdbcTemplate.update("DELETE FROM roles WHERE role_name = 'ROLE_USER'");
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+
+        restart();
+
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject(COUNT_ROLE, Integer.class, "ROLE_ADMIN"));
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject(COUNT_ROLE, Integer.class, "ROLE_USER"));
+        assertEquals(adminRoleId, roleRegistry.get("ROLE_ADMIN").getId());
+        assertNotNull(roleRegistry.get("ROLE_USER").getId());
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private void restart() {
+        runner.onApplicationEvent(new ContextRefreshedEvent(context));
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.crypto;
+
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hashes, verification and upgrade decisions of the calibrated encoder, with
+ * the lowest work factors so the tests stay fast.
+ *
+ * @author Plamen
+ */
+public class CalibratedPasswordEncoderTests {
+
+    private static final String PASSWORD = "correct horse";
+
+    private static final String SECRET = "pbkdf2-secret";
+
+    public CalibratedPasswordEncoderTests() {
+    }
+
+    @Test
+    public void bcryptHashesArePrefixedAndVerify() {
+        CalibratedPasswordEncoder encoder = bcrypt(4);
+        String hash = encoder.encode(PASSWORD);
+
+        assertTrue(hash, hash.startsWith("{bcrypt}$2a$04$"));
+        assertTrue(encoder.matches(PASSWORD, hash));
+        assertFalse(encoder.matches("wrong", hash));
+    }
+
+    @Test
+    public void pbkdf2HashesCarryTheirIterationCountAndVerify() {
+        CalibratedPasswordEncoder encoder = pbkdf2(1000);
+        String hash = encoder.encode(PASSWORD);
+
+        assertTrue(hash, hash.startsWith("{pbkdf2@1000}"));
+        assertTrue(encoder.matches(PASSWORD, hash));
+        assertFalse(encoder.matches("wrong", hash));
+    }
+
+    @Test
+    public void hashesOfOtherWorkFactorsAndAlgorithmsKeepVerifying() {
+        String oldBCrypt = bcrypt(4).encode(PASSWORD);
+        String oldPbkdf2 = pbkdf2(1000).encode(PASSWORD);
+        String legacy = new BCryptPasswordEncoder(4).encode(PASSWORD);
+
+        CalibratedPasswordEncoder current = pbkdf2(2000);
+
+        assertTrue(current.matches(PASSWORD, oldBCrypt));
+        assertTrue(current.matches(PASSWORD, oldPbkdf2));
+        assertTrue(current.matches(PASSWORD, legacy));
+    }
+
+    @Test
+    public void weakerHashesAreUpgraded() {
+        assertTrue(bcrypt(5).upgradeEncoding(bcrypt(4).encode(PASSWORD)));
+        assertTrue(pbkdf2(2000).upgradeEncoding(pbkdf2(1000).encode(PASSWORD)));
+        assertTrue(pbkdf2(1000).upgradeEncoding(bcrypt(4).encode(PASSWORD)));
+        assertTrue(bcrypt(4).upgradeEncoding(new BCryptPasswordEncoder(4).encode(PASSWORD)));
+    }
+
+    /**
+     * Nodes calibrated to different work factors must not keep rehashing each
+     * other's hashes: a node never downgrades a stronger hash.
+     */
+    @Test
+    public void strongerHashesAreNeverDowngraded() {
+        assertFalse(bcrypt(4).upgradeEncoding(bcrypt(5).encode(PASSWORD)));
+        assertFalse(bcrypt(4).upgradeEncoding(bcrypt(4).encode(PASSWORD)));
+        assertFalse(pbkdf2(1000).upgradeEncoding(pbkdf2(2000).encode(PASSWORD)));
+    }
+
+    @Test
+    public void malformedHashesDontVerify() {
+        CalibratedPasswordEncoder encoder = pbkdf2(1000);
+
+        assertFalse(encoder.matches(PASSWORD, null));
+        assertFalse(encoder.matches(PASSWORD, "{pbkdf2@many}abc"));
+        assertFalse(encoder.matches(PASSWORD, "{unknown}abc"));
+        assertFalse(encoder.matches(PASSWORD, "plain"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownAlgorithmIsRejected() {
+        new CalibratedPasswordEncoder("md5", 4, 1000, SECRET);
+    }
+
+    private static CalibratedPasswordEncoder bcrypt(int strength) {
+        return new CalibratedPasswordEncoder(CalibratedPasswordEncoder.BCRYPT, strength, 1000, SECRET);
+    }
+
+    private static CalibratedPasswordEncoder pbkdf2(int iterations) {
+        return new CalibratedPasswordEncoder(CalibratedPasswordEncoder.PBKDF2, 4, iterations, SECRET);
+    }
+
+}
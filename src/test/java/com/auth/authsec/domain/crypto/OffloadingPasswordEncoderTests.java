@@ -0,0 +1,119 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.crypto;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.auth.authsec.domain.exceptions.PasswordHashingOverloadException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trips of the offloading encoder through the hashing pool, with the
+ * lowest bcrypt work factor so the tests stay fast.
+ *
+ * @author Plamen
+ */
+public class OffloadingPasswordEncoderTests {
+
+    private static final String PASSWORD = "correct horse";
+
+    private final PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1);
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final RecordingEncoder delegate = new RecordingEncoder(new BCryptPasswordEncoder(4));
+
+    private final OffloadingPasswordEncoder encoder = new OffloadingPasswordEncoder(delegate, executor, registry);
+
+    public OffloadingPasswordEncoderTests() {
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void hashesAndVerifiesOnTheHashingPool() {
+        String hash = encoder.encode(PASSWORD);
+
+        assertTrue(encoder.matches(PASSWORD, hash));
+        assertFalse(encoder.matches("wrong", hash));
+
+        assertEquals(3, delegate.threads.size());
+        for (String thread : delegate.threads) {
+            assertTrue(thread, thread.startsWith("password-hashing-"));
+        }
+        assertEquals(1, registry.find("authsec.password.hashing").tags("operation", "encode").timer().count());
+        assertEquals(2, registry.find("authsec.password.hashing").tags("operation", "matches").timer().count());
+    }
+
+    @Test
+    public void saturatedPoolShedsTheLogin() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        String hash = new BCryptPasswordEncoder(4).encode(PASSWORD);
+
+        executor.submit(() -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.submit(() -> PASSWORD);
+
+        try {
+            encoder.matches(PASSWORD, hash);
+            fail("A saturated pool must shed the verification");
+        } catch (PasswordHashingOverloadException e) {
+            assertTrue(delegate.threads.isEmpty());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Delegate that records the threads the hashing ran on.
+     */
+    private static final class RecordingEncoder implements PasswordEncoder {
+
+        private final PasswordEncoder delegate;
+
+        private final List<String> threads = new CopyOnWriteArrayList<>();
+
+        RecordingEncoder(final PasswordEncoder delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String encode(final CharSequence rawPassword) {
+            threads.add(Thread.currentThread().getName());
+            return delegate.encode(rawPassword);
+        }
+
+        @Override
+        public boolean matches(final CharSequence rawPassword, final String encodedPassword) {
+            threads.add(Thread.currentThread().getName());
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+    }
+
+}
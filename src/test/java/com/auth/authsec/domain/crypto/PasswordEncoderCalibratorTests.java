@@ -0,0 +1,68 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.crypto;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Work factors picked by the calibrator: never below the minimums, and the
+ * pinned ones on every node.
+ *
+ * @author Plamen
+ */
+public class PasswordEncoderCalibratorTests {
+
+    private static final String SECRET = "pbkdf2-secret";
+
+    public PasswordEncoderCalibratorTests() {
+    }
+
+    /**
+     * A target of 1ms is below what any sample hash takes, so the calibrated
+     * factors fall back to the minimums.
+     */
+    @Test
+    public void calibratedWorkFactorsNeverGoBelowTheMinimums() {
+        PasswordEncoderCalibrator calibrator = new PasswordEncoderCalibrator(1, 10, 185000);
+
+        assertEquals(10, calibrator.calibrateBCrypt());
+        assertEquals(185000, calibrator.calibratePbkdf2(SECRET));
+    }
+
+    @Test
+    public void calibratedIterationsAreRoundedToWholeSteps() {
+        int iterations = new PasswordEncoderCalibrator(50, 4, 1000).calibratePbkdf2(SECRET);
+
+        assertTrue("iterations: " + iterations, iterations >= 1000);
+        assertEquals(0, iterations % 1000);
+    }
+
+    @Test
+    public void pinnedWorkFactorsAreUsedAsTheyAre() {
+        PasswordEncoderCalibrator calibrator = new PasswordEncoderCalibrator(250, 4, 1000, 5, 2000);
+
+        CalibratedPasswordEncoder bcrypt = calibrator.calibrate(CalibratedPasswordEncoder.BCRYPT, SECRET);
+        CalibratedPasswordEncoder pbkdf2 = calibrator.calibrate(CalibratedPasswordEncoder.PBKDF2, SECRET);
+
+        assertEquals(5, bcrypt.getBCryptStrength());
+        assertEquals(2000, pbkdf2.getPbkdf2Iterations());
+        assertTrue(bcrypt.encode("password").startsWith("{bcrypt}$2a$05$"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pinnedBCryptStrengthBelowTheMinimumIsRejected() {
+        new PasswordEncoderCalibrator(250, 10, 185000, 8, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pinnedIterationsBelowTheMinimumIsRejected() {
+        new PasswordEncoderCalibrator(250, 10, 185000, 0, 1000);
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.crypto;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.auth.authsec.domain.config.LoginFailureHandler;
+import com.auth.authsec.domain.exceptions.PasswordHashingOverloadException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Queueing, load shedding and meters of the password hashing pool, with a
+ * single worker and a single queue slot so saturation is deterministic.
+ *
+ * @author Plamen
+ */
+public class PasswordHashingExecutorTests {
+
+    private final PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1);
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    public PasswordHashingExecutorTests() {
+        executor.bindTo(registry);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void tasksRunOnTheHashingWorkers() {
+        String worker = executor.execute(() -> Thread.currentThread().getName());
+
+        assertTrue(worker, worker.startsWith("password-hashing-"));
+        assertEquals(1, executor.getPoolSize());
+    }
+
+    @Test
+    public void saturatedQueueShedsNewTasks() throws InterruptedException {
+        Future<String> busy = executor.submit(this::block);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> queued = executor.submit(() -> "queued");
+
+        assertEquals(1, registry.find("authsec.password.hashing.queue.depth").gauge().value(), 0);
+        assertEquals(1, registry.find("authsec.password.hashing.active").gauge().value(), 0);
+
+        try {
+            executor.submit(() -> "shed");
+            fail("A full queue must reject new hashing tasks");
+        } catch (PasswordHashingOverloadException e) {
+            assertEquals(1, registry.find("authsec.password.hashing.rejected").functionCounter().count(), 0);
+        }
+
+        release.countDown();
+
+        assertEquals("busy", executor.await(busy));
+        assertEquals("queued", executor.await(queued));
+    }
+
+    @Test
+    public void shedLoginsAreAnsweredWithServiceUnavailable() throws Exception {
+        executor.submit(this::block);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.submit(() -> "queued");
+
+        PasswordHashingOverloadException overload = null;
+        try {
+            executor.execute(() -> "shed");
+        } catch (PasswordHashingOverloadException e) {
+            overload = e;
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        new LoginFailureHandler("/login?error").onAuthenticationFailure(new MockHttpServletRequest(), response,
+                overload);
+
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.getStatus());
+        assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void failuresOfTheTaskReachTheCaller() {
+        try {
+            executor.execute(() -> {
+                throw new IllegalStateException("hashing failed");
+            });
+            fail("The task's exception must be rethrown to the caller");
+        } catch (IllegalStateException e) {
+            assertEquals("hashing failed", e.getMessage());
+        }
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private String block() throws InterruptedException {
+        started.countDown();
+        release.await(5, TimeUnit.SECONDS);
+        return "busy";
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.datasource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Routes between two embedded HSQL databases, each knowing its own name.
+ *
+ * @author Plamen
+ */
+public class ReplicaRoutingDataSourceTests {
+
+    private static final String SELECT_NAME = "SELECT name FROM node";
+
+    private EmbeddedDatabase primary;
+
+    private EmbeddedDatabase replica;
+
+    private SwitchableDataSource replicaSwitch;
+
+    private ReplicaRoutingDataSource routing;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readOnly;
+
+    private TransactionTemplate readWrite;
+
+    public ReplicaRoutingDataSourceTests() {
+    }
+
+    @Before
+    public void setUp() {
+        primary = createNode("primary");
+        replica = createNode("replica");
+        replicaSwitch = new SwitchableDataSource(replica);
+
+        routing = new ReplicaRoutingDataSource(primary, Collections.singletonMap("replica-0", replicaSwitch), 1,
+                new ReadYourWritesWindow(60000));
+        routing.afterPropertiesSet();
+
+        final DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        final DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        primary.shutdown();
+        replica.shutdown();
+    }
+
+    @Test
+    public void readOnlyTransactionsAreServedByTheReplica() {
+        assertEquals("replica", readNode(readOnly));
+    }
+
+    @Test
+    public void readWriteTransactionsAreServedByThePrimary() {
+        assertEquals("primary", readNode(readWrite));
+    }
+
+    @Test
+    public void readsFallBackToThePrimaryWhenTheReplicaIsDown() {
+        replicaSwitch.available = false;
+
+        assertEquals("primary", readNode(readOnly));
+        assertEquals(0, routing.getHealthyReplicaCount());
+
+        routing.checkReplicas();
+        assertFalse(routing.getReplicaHealth().get("replica-0"));
+
+        replicaSwitch.available = true;
+        routing.checkReplicas();
+
+        assertEquals("replica", readNode(readOnly));
+    }
+
+    @Test
+    public void readsOfAWritingUserStayOnThePrimary() {
+        login("writer");
+        readWrite.execute(status -> jdbcTemplate.update("UPDATE node SET name = name"));
+
+        assertEquals("primary", readNode(readOnly));
+
+        login("reader");
+        assertEquals("replica", readNode(readOnly));
+    }
+
+    @Test
+    public void pinnedReadsAreServedByThePrimaryWithoutCountingAsWrites() {
+        login("reader");
+
+        assertEquals("primary", ReplicaRoutingDataSource.readFromPrimary(() -> readNode(readOnly)));
+        assertEquals("primary", ReplicaRoutingDataSource.readFromPrimary(
+                () -> ReplicaRoutingDataSource.readFromPrimary(() -> readNode(readOnly))));
+
+        assertEquals("replica", readNode(readOnly));
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private static EmbeddedDatabase createNode(final String name) {
+        final EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.HSQL)
+                .setName(name).build();
+
+        final JdbcTemplate template = new JdbcTemplate(database);
+        template.execute("CREATE TABLE node (name VARCHAR(32))");
+        template.update("INSERT INTO node (name) VALUES (?)", name);
+        return database;
+    }
+
+    private String readNode(final TransactionTemplate transaction) {
+        return transaction.execute(status -> jdbcTemplate.queryForList(SELECT_NAME, String.class).get(0));
+    }
+
+    private static void login(final String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, null,
+                AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+
+    /**
+     * Replica which can be taken down and brought back.
+     */
+    private static final class SwitchableDataSource extends DelegatingDataSource {
+
+        private volatile boolean available = true;
+
+        private SwitchableDataSource(final DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (!available) {
+                throw new SQLException("Replica down");
+            }
+            return super.getConnection();
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.security.authentication.RememberMeAuthenticationToken;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationFailureLockedEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Login counters by result, login method and failure reason.
+ *
+ * @author Plamen
+ */
+public class AuthenticationMetricsTests {
+
+    private SimpleMeterRegistry registry;
+
+    private AuthenticationMetrics metrics;
+
+    public AuthenticationMetricsTests() {
+    }
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new AuthenticationMetrics(registry);
+    }
+
+    @Test
+    public void successfulFormLoginsAreCounted() {
+        metrics.onSuccess(new AuthenticationSuccessEvent(form()));
+        metrics.onSuccess(new AuthenticationSuccessEvent(form()));
+
+        assertEquals(2.0, counter("success", "form", "none").count(), 0.0);
+    }
+
+    @Test
+    public void failuresAreTaggedWithTheirReason() {
+        metrics.onFailure(new AuthenticationFailureBadCredentialsEvent(form(), new BadCredentialsException("bad")));
+        metrics.onFailure(new AuthenticationFailureLockedEvent(form(), new LockedException("locked")));
+        metrics.onFailure(new AuthenticationFailureBadCredentialsEvent(form(), new BadCredentialsException("bad")));
+
+        assertEquals(2.0, counter("failure", "form", "BadCredentialsException").count(), 0.0);
+        assertEquals(1.0, counter("failure", "form", "LockedException").count(), 0.0);
+        assertNull(registry.find("authsec.authentication").tags("result", "success").counter());
+    }
+
+    @Test
+    public void loginMethodIsTakenFromTheAuthenticationType() {
+        metrics.onSuccess(new AuthenticationSuccessEvent(
+                new RememberMeAuthenticationToken("key", "admin", AuthorityUtils.createAuthorityList("ROLE_ADMIN"))));
+        metrics.onSuccess(new AuthenticationSuccessEvent(new TestingAuthenticationToken("admin", null)));
+
+        assertEquals(1.0, counter("success", "remember-me", "none").count(), 0.0);
+        assertEquals(1.0, counter("success", "TestingAuthenticationToken", "none").count(), 0.0);
+    }
+
+    @Test
+    public void usernamesAreNeverTags() {
+        metrics.onSuccess(new AuthenticationSuccessEvent(new UsernamePasswordAuthenticationToken("alice", "secret")));
+        metrics.onSuccess(new AuthenticationSuccessEvent(new UsernamePasswordAuthenticationToken("bob", "secret")));
+
+        assertEquals(1, registry.find("authsec.authentication").meters().size());
+    }
+
+    private Counter counter(String result, String method, String reason) {
+        Counter counter = registry.find("authsec.authentication")
+                .tags("result", result, "method", method, "reason", reason).counter();
+
+        assertNotNull(counter);
+        return counter;
+    }
+
+    private static Authentication form() {
+        return new UsernamePasswordAuthenticationToken("admin", "secret");
+    }
+
+}
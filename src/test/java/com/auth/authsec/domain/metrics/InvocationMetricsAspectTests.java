@@ -0,0 +1,128 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.data.repository.Repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The timing aspect around a proxied repository: timers tagged with the
+ * repository interface, the method and the exception, and the listing sizes.
+ *
+ * @author Plamen
+ */
+public class InvocationMetricsAspectTests {
+
+    private SimpleMeterRegistry registry;
+
+    private SampleRepository repository;
+
+    public InvocationMetricsAspectTests() {
+    }
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+
+        AspectJProxyFactory factory = new AspectJProxyFactory(new DefaultSampleRepository());
+        factory.addAspect(new InvocationMetricsAspect(registry));
+        repository = factory.getProxy();
+    }
+
+    @Test
+    public void successfulQueriesAreTimedByRepositoryInterfaceAndMethod() {
+        repository.findNames();
+        repository.findNames();
+
+        assertEquals(2, timer("findNames", "none").count());
+    }
+
+    @Test
+    public void failedQueriesAreTaggedWithTheException() {
+        try {
+            repository.fail();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals(1, timer("fail", "IllegalStateException").count());
+            assertNull(registry.find("authsec.repository.queries").tags("method", "fail", "exception", "none")
+                    .timer());
+        }
+    }
+
+    @Test
+    public void listingSizesAreRecorded() {
+        repository.findNames();
+
+        DistributionSummary size = registry.find("authsec.listing.size")
+                .tags("component", "SampleRepository", "method", "findNames").summary();
+
+        assertNotNull(size);
+        assertEquals(1, size.count());
+        assertEquals(3.0, size.totalAmount(), 0.0);
+    }
+
+    @Test
+    public void nonListingResultsHaveNoSize() {
+        repository.count();
+
+        assertNotNull(timer("count", "none"));
+        assertNull(registry.find("authsec.listing.size").tags("method", "count").summary());
+    }
+
+    private Timer timer(String method, String exception) {
+        Timer timer = registry.find("authsec.repository.queries")
+                .tags("repository", "SampleRepository", "method", method, "exception", exception).timer();
+
+        assertNotNull(timer);
+        return timer;
+    }
+
+    /**
+     * A repository in the application package, so it is named after its
+     * interface.
+     */
+    public interface SampleRepository extends Repository<Object, Long> {
+
+        List<String> findNames();
+
+        long count();
+
+        void fail();
+    }
+
+    private static final class DefaultSampleRepository implements SampleRepository {
+
+        @Override
+        public List<String> findNames() {
+            return Arrays.asList("admin", "user", "guest");
+        }
+
+        @Override
+        public long count() {
+            return 3;
+        }
+
+        @Override
+        public void fail() {
+            throw new IllegalStateException();
+        }
+    }
+
+}
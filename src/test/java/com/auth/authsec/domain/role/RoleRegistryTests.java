@@ -0,0 +1,80 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.role;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Plamen
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class RoleRegistryTests {
+    
+    @Autowired
+    private RoleRegistry roleRegistry;
+    
+    @Autowired
+    private RoleRepository roleRepo;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    public RoleRegistryTests() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM roles WHERE role_name IN ('ROLE_AUDITOR', 'ROLE_RACE')");
+        roleRegistry.refresh();
+    }
+    
+    @Test
+    public void registryIsLoadedWithTheContext() {
+        assertNotNull(roleRegistry.find("ROLE_ADMIN"));
+        assertNotNull(roleRegistry.find("role_user"));
+    }
+    
+    @Test
+    public void getOrCreateCreatesARoleOnce() {
+        Role created = roleRegistry.getOrCreate("role_auditor");
+        
+        assertEquals("ROLE_AUDITOR", created.getAuthority());
+        assertNotNull(created.getId());
+        assertEquals(created.getId(), roleRegistry.getOrCreate("ROLE_AUDITOR").getId());
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM roles WHERE role_name = 'ROLE_AUDITOR'", Integer.class));
+    }
+    
+    @Test
+    public void roleCreatedByAnotherInstanceIsReadBack() {
+        // Caches the miss, so the registry doesn't see the role inserted below.
+        assertNull(roleRepo.findOneByRoleName("ROLE_RACE"));
+        jdbcTemplate.update("INSERT INTO roles (role_name) VALUES ('ROLE_RACE')");
+        Long id = jdbcTemplate.queryForObject("SELECT role_id FROM roles WHERE role_name = 'ROLE_RACE'", Long.class);
+        
+        assertEquals(id, roleRegistry.getOrCreate("ROLE_RACE").getId());
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM roles WHERE role_name = 'ROLE_RACE'", Integer.class));
+    }
+    
+}
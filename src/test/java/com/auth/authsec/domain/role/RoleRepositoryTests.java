@@ -5,19 +5,45 @@
  */
 package com.auth.authsec.domain.role;
 
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
 import static org.junit.Assert.*;
 
 /**
  *
  * @author Plamen
  */
+@SpringBootTest
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
 public class RoleRepositoryTests {
     
+    private static final String FIND_BY_ROLE_NAME = "SELECT r FROM Role r WHERE r.roleName=UPPER(:roleName)";
+    
+    @Autowired
+    private RoleRepository roleRepo;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
     public RoleRepositoryTests() {
     }
     
@@ -37,9 +63,51 @@ public class RoleRepositoryTests {
     public void tearDown() {
     }
 
-    // TODO add test methods here.
-    // The methods must be annotated with annotation @Test. For example:
-    //
-    // @Test
-    // public void hello() {}
+    @Test
+    public void repeatedRoleLookupsAreServedFromTheCache() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        
+        assertNotNull(roleRepo.findOneByRoleName("ROLE_ADMIN"));
+        
+        QueryStatistics query = statistics.getQueryStatistics(FIND_BY_ROLE_NAME);
+        long executions = query.getExecutionCount();
+        long cacheHits = query.getCacheHitCount();
+        long roleLoads = statistics.getEntityStatistics(Role.class.getName()).getLoadCount();
+        
+        for (int i = 0; i < 3; i++) {
+            assertEquals("ROLE_ADMIN", roleRepo.findOneByRoleName("role_admin").getAuthority());
+        }
+        
+        assertEquals(executions, query.getExecutionCount());
+        assertTrue(query.getCacheHitCount() > cacheHits);
+        assertEquals(roleLoads, statistics.getEntityStatistics(Role.class.getName()).getLoadCount());
+    }
+    
+    @Test
+    public void roleNamesAreStoredInUpperCase() {
+        Role role = roleRepo.save(new Role("role_auditor"));
+        
+        try {
+            assertEquals("ROLE_AUDITOR", role.getAuthority());
+            assertEquals("ROLE_AUDITOR", jdbcTemplate.queryForObject(
+                    "SELECT role_name FROM roles WHERE role_id = ?", String.class, role.getId()));
+            assertEquals(role.getId(), roleRepo.findOneByRoleName("Role_Auditor").getId());
+        } finally {
+            roleRepo.deleteById(role.getId());
+        }
+    }
+    
+    @Test
+    public void roleNamesStoredInLowerCaseAreNormalized() {
+        jdbcTemplate.update("INSERT INTO roles (role_name) VALUES ('role_legacy')");
+        
+        try {
+            assertTrue(roleRepo.normalizeRoleNames() >= 1);
+            assertEquals("ROLE_LEGACY", roleRepo.findOneByRoleName("role_legacy").getAuthority());
+            assertEquals(0, roleRepo.normalizeRoleNames());
+        } finally {
+            jdbcTemplate.update("DELETE FROM roles WHERE UPPER(role_name) = 'ROLE_LEGACY'");
+        }
+    }
+    
 }
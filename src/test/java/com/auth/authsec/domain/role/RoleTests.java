@@ -0,0 +1,85 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.role;
+
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The equals and hashCode contract of roles, which compare by name alone.
+ *
+ * @author Plamen
+ */
+public class RoleTests {
+
+    public RoleTests() {
+    }
+
+    @Test
+    public void rolesWithTheSameNameAreEqualAndHashAlike() {
+        Role role = new Role("ROLE_ADMIN");
+        Role same = new Role("role_admin");
+
+        assertTrue(role.equals(role));
+        assertTrue(role.equals(same));
+        assertTrue(same.equals(role));
+        assertEquals(role.hashCode(), same.hashCode());
+    }
+
+    @Test
+    public void rolesWithDifferentNamesAreNotEqual() {
+        assertNotEquals(new Role("ROLE_ADMIN"), new Role("ROLE_USER"));
+        assertFalse(new Role("ROLE_ADMIN").equals(null));
+        assertFalse(new Role("ROLE_ADMIN").equals("ROLE_ADMIN"));
+    }
+
+    @Test
+    public void savedRoleKeepsItsHashAndEqualsItsUnsavedCopy() throws ReflectiveOperationException {
+        Role role = new Role("ROLE_USER");
+        Set<Role> roles = new HashSet<>();
+        roles.add(role);
+        int hash = role.hashCode();
+
+        setId(role, 42L);
+
+        assertEquals(hash, role.hashCode());
+        assertTrue(roles.contains(role));
+        assertEquals(new Role("ROLE_USER"), role);
+    }
+
+    @Test
+    public void subclassOfARoleEqualsTheRole() {
+        // stands in for a Hibernate proxy, which only answers through getters
+        Role proxy = new Role() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String getAuthority() {
+                return "ROLE_ADMIN";
+            }
+        };
+        Role role = new Role("ROLE_ADMIN");
+
+        assertTrue(role.equals(proxy));
+        assertTrue(proxy.equals(role));
+        assertEquals(role.hashCode(), proxy.hashCode());
+    }
+
+    private static void setId(Role role, Long id) throws ReflectiveOperationException {
+        Field field = Role.class.getDeclaredField("id");
+        field.setAccessible(true);
+        field.set(role, id);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.security;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.servlet.http.Cookie;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.util.SerializationUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips of the OAuth2 authorization request through its signed cookie.
+ *
+ * @author Plamen
+ */
+public class CookieAuthorizationRequestRepositoryTests {
+
+    private SessionTokenCodec codec;
+
+    private CookieAuthorizationRequestRepository repository;
+
+    public CookieAuthorizationRequestRepositoryTests() {
+    }
+
+    @Before
+    public void setUp() {
+        byte[] secret = new byte[32];
+        Arrays.fill(secret, (byte) 'a');
+
+        codec = new SessionTokenCodec("a:" + Base64.getEncoder().encodeToString(secret), "a", 900);
+        repository = new CookieAuthorizationRequestRepository(codec);
+    }
+
+    @Test
+    public void savedRequestIsLoadedFromTheCookie() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        repository.saveAuthorizationRequest(authorizationRequest(), new MockHttpServletRequest(), response);
+
+        Cookie cookie = response.getCookie(TokenCookies.AUTHORIZATION_REQUEST_COOKIE);
+        assertNotNull(cookie);
+        assertTrue(cookie.isHttpOnly());
+        assertEquals(300, cookie.getMaxAge());
+
+        OAuth2AuthorizationRequest loaded = repository.loadAuthorizationRequest(requestWith(cookie.getValue()));
+
+        assertNotNull(loaded);
+        assertEquals("state-1", loaded.getState());
+        assertEquals("client-1", loaded.getClientId());
+        assertEquals("state-1", repository.removeAuthorizationRequest(requestWith(cookie.getValue())).getState());
+    }
+
+    @Test
+    public void missingCookieLoadsNothing() {
+        assertNull(repository.loadAuthorizationRequest(new MockHttpServletRequest()));
+    }
+
+    @Test
+    public void tamperedCookieLoadsNothing() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveAuthorizationRequest(authorizationRequest(), new MockHttpServletRequest(), response);
+        String value = response.getCookie(TokenCookies.AUTHORIZATION_REQUEST_COOKIE).getValue();
+        int signatureStart = value.lastIndexOf('.') + 1;
+        char changed = value.charAt(signatureStart) == 'A' ? 'B' : 'A';
+        String tampered = value.substring(0, signatureStart) + changed + value.substring(signatureStart + 1);
+
+        assertNull(repository.loadAuthorizationRequest(requestWith(tampered)));
+    }
+
+    @Test
+    public void expiredCookieLoadsNothing() {
+        byte[] serialized = SerializationUtils.serialize(authorizationRequest());
+        byte[] payload = ByteBuffer.allocate(Long.BYTES + serialized.length)
+                .putLong(SessionTokenCodec.now() - 1).put(serialized).array();
+
+        assertNull(repository.loadAuthorizationRequest(requestWith(sign(payload))));
+    }
+
+    @Test
+    public void signedPayloadOfAnotherTypeLoadsNothing() {
+        byte[] serialized = SerializationUtils.serialize("not a request");
+        byte[] payload = ByteBuffer.allocate(Long.BYTES + serialized.length)
+                .putLong(SessionTokenCodec.now() + 60).put(serialized).array();
+
+        assertNull(repository.loadAuthorizationRequest(requestWith(sign(payload))));
+    }
+
+    @Test
+    public void sessionTokenLoadsNothing() {
+        String session = codec.issue(new UsernamePasswordAuthenticationToken("admin", null,
+                AuthorityUtils.createAuthorityList("ROLE_ADMIN")));
+
+        assertNull(repository.loadAuthorizationRequest(requestWith(session)));
+    }
+
+    @Test
+    public void requestSignedForSessionsLoadsNothing() {
+        byte[] serialized = SerializationUtils.serialize(authorizationRequest());
+        byte[] payload = ByteBuffer.allocate(Long.BYTES + serialized.length)
+                .putLong(SessionTokenCodec.now() + 60).put(serialized).array();
+
+        assertNull(repository.loadAuthorizationRequest(
+                requestWith(codec.sign(SessionTokenCodec.SESSION_PURPOSE, payload))));
+        assertNotNull(repository.loadAuthorizationRequest(requestWith(sign(payload))));
+    }
+
+    @Test
+    public void savingNothingClearsTheCookie() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        repository.saveAuthorizationRequest(null, new MockHttpServletRequest(), response);
+
+        Cookie cookie = response.getCookie(TokenCookies.AUTHORIZATION_REQUEST_COOKIE);
+        assertNotNull(cookie);
+        assertEquals(0, cookie.getMaxAge());
+        assertEquals("", cookie.getValue());
+    }
+
+    private static OAuth2AuthorizationRequest authorizationRequest() {
+        return OAuth2AuthorizationRequest.authorizationCode()
+                .authorizationUri("https://provider.example/authorize")
+                .clientId("client-1")
+                .redirectUri("https://authsec.example/login/oauth2/code/provider")
+                .state("state-1")
+                .build();
+    }
+
+    private String sign(byte[] payload) {
+        return codec.sign(SessionTokenCodec.AUTHORIZATION_REQUEST_PURPOSE, payload);
+    }
+
+    private static MockHttpServletRequest requestWith(String cookieValue) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(TokenCookies.AUTHORIZATION_REQUEST_COOKIE, cookieValue));
+        return request;
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.security;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+
+import com.auth.authsec.domain.exceptions.LoginThrottledException;
+import com.auth.authsec.domain.user.UserService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Throttling and lockout of failing logins, against a user service which only
+ * records the account locks.
+ *
+ * @author Plamen
+ */
+public class LoginThrottleTests {
+
+    private final AtomicInteger locks = new AtomicInteger();
+
+    private final UserService userService = (UserService) Proxy.newProxyInstance(
+            UserService.class.getClassLoader(), new Class<?>[]{UserService.class}, (proxy, method, args) -> {
+                if ("setAccountLocked".equals(method.getName())) {
+                    locks.incrementAndGet();
+                    return true;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+
+    public LoginThrottleTests() {
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lockoutThresholdAtTheThrottleLimitIsRejected() {
+        new LoginThrottle(userService, true, 900, 5, 50, 5, 1024);
+    }
+
+    @Test
+    public void lockoutThresholdIsIgnoredWhenDisabled() {
+        new LoginThrottle(userService, false, 900, 5, 50, 5, 1024);
+    }
+
+    @Test
+    public void accountIsLockedOnceWhenTheThresholdIsCrossed() {
+        LoginThrottle throttle = new LoginThrottle(userService, true, 900, 5, 50, 3, 1024);
+
+        for (int i = 0; i < 4; i++) {
+            throttle.onBadCredentials(badCredentials("alice"));
+        }
+
+        assertEquals(1, locks.get());
+    }
+
+    @Test
+    public void loginsAreThrottledAtTheLimit() {
+        LoginThrottle throttle = new LoginThrottle(userService, true, 900, 3, 50, 0, 1024);
+
+        for (int i = 0; i < 2; i++) {
+            throttle.onBadCredentials(badCredentials("alice"));
+        }
+        throttle.checkAllowed(attempt("Alice"));
+
+        throttle.onBadCredentials(badCredentials("alice"));
+        try {
+            throttle.checkAllowed(attempt("Alice"));
+            fail("The login should be throttled");
+        } catch (LoginThrottledException ex) {
+            // expected
+        }
+
+        throttle.checkAllowed(attempt("bob"));
+        assertEquals(0, locks.get());
+    }
+
+    private static AuthenticationFailureBadCredentialsEvent badCredentials(String username) {
+        return new AuthenticationFailureBadCredentialsEvent(attempt(username), new BadCredentialsException("bad"));
+    }
+
+    private static UsernamePasswordAuthenticationToken attempt(String username) {
+        return new UsernamePasswordAuthenticationToken(username, "x");
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.security;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The remember-me token store against the test database: the series cache,
+ * the written-through rotations and removals and the written-behind last-used
+ * timestamps.
+ *
+ * @author Plamen
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class RememberMeTokenStoreTests {
+
+    private static final String USERNAME = "remember-store-user";
+
+    @Autowired
+    private RememberMeTokenStore tokenStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Whole seconds, so timestamps compare equal after a round trip.
+     */
+    private long now;
+
+    public RememberMeTokenStoreTests() {
+    }
+
+    @Before
+    public void setUp() {
+        now = System.currentTimeMillis() / 1000L * 1000L;
+    }
+
+    @After
+    public void tearDown() {
+        tokenStore.removeUserTokens(USERNAME);
+    }
+
+    @Test
+    public void createdLoginIsServedFromTheCache() {
+        tokenStore.createNewToken(new PersistentRememberMeToken(USERNAME, "series-cached", "token", new Date(now)));
+        jdbcTemplate.update("DELETE FROM persistent_logins WHERE series = 'series-cached'");
+
+        PersistentRememberMeToken token = tokenStore.getTokenForSeries("series-cached");
+
+        assertNotNull(token);
+        assertEquals("token", token.getTokenValue());
+    }
+
+    @Test
+    public void unknownSeriesIsLoadedFromTheDatabase() {
+        assertNull(tokenStore.getTokenForSeries("series-unknown"));
+
+        jdbcTemplate.update("INSERT INTO persistent_logins (series, username, token, issued_at, last_used) "
+                + "VALUES ('series-unknown', ?, 'token', ?, ?)", USERNAME, new Timestamp(now), new Timestamp(now));
+
+        IssuedRememberMeToken token = tokenStore.getTokenForSeries("series-unknown");
+
+        assertNotNull(token);
+        assertEquals(USERNAME, token.getUsername());
+        assertEquals(now, token.getIssuedAt().getTime());
+        assertEquals(now, token.getDate().getTime());
+    }
+
+    @Test
+    public void rotatedTokenIsWrittenThrough() {
+        tokenStore.createNewToken(new PersistentRememberMeToken(USERNAME, "series-rotated", "old", new Date(now)));
+
+        tokenStore.updateToken("series-rotated", "new", new Date(now + 1000L));
+
+        assertEquals("new", jdbcTemplate.queryForObject(
+                "SELECT token FROM persistent_logins WHERE series = 'series-rotated'", String.class));
+        IssuedRememberMeToken cached = tokenStore.getTokenForSeries("series-rotated");
+        assertEquals("new", cached.getTokenValue());
+        assertEquals(now + 1000L, cached.getIssuedAt().getTime());
+    }
+
+    @Test
+    public void recordedUseIsWrittenOnFlushAndNeverMovesBack() {
+        tokenStore.createNewToken(new PersistentRememberMeToken(USERNAME, "series-used", "token", new Date(now)));
+
+        tokenStore.recordUse("series-used", new Date(now + 2000L));
+        tokenStore.recordUse("series-used", new Date(now + 1000L));
+
+        assertEquals(now + 2000L, tokenStore.getTokenForSeries("series-used").getDate().getTime());
+        assertEquals(now, tokenStore.getTokenForSeries("series-used").getIssuedAt().getTime());
+
+        tokenStore.flushLastUsed();
+        assertEquals(now + 2000L, lastUsedOf("series-used"));
+
+        // a late flush of an older use, e.g. from another node, is ignored
+        tokenStore.recordUse("series-used", new Date(now + 1000L));
+        tokenStore.flushLastUsed();
+        assertEquals(now + 2000L, lastUsedOf("series-used"));
+    }
+
+    @Test
+    public void removedLoginsAreNoLongerServed() {
+        tokenStore.createNewToken(new PersistentRememberMeToken(USERNAME, "series-removed", "token", new Date(now)));
+
+        tokenStore.removeUserTokens(USERNAME);
+
+        assertNull(tokenStore.getTokenForSeries("series-removed"));
+    }
+
+    @Test
+    public void loginsUnusedForTheTokenValidityAreSwept() {
+        long stale = now - TimeUnit.SECONDS.toMillis(tokenStore.getTokenValiditySeconds()) - 60000L;
+        tokenStore.createNewToken(new PersistentRememberMeToken(USERNAME, "series-stale", "token", new Date(stale)));
+        tokenStore.createNewToken(new PersistentRememberMeToken(USERNAME, "series-fresh", "token", new Date(now)));
+
+        tokenStore.sweepExpired();
+
+        assertNull(tokenStore.getTokenForSeries("series-stale"));
+        assertNotNull(tokenStore.getTokenForSeries("series-fresh"));
+    }
+
+    private long lastUsedOf(String series) {
+        return jdbcTemplate.queryForObject("SELECT last_used FROM persistent_logins WHERE series = ?",
+                Timestamp.class, series).getTime();
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.security;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.rememberme.AbstractRememberMeServices;
+import org.springframework.security.web.authentication.rememberme.CookieTheftException;
+import org.springframework.security.web.authentication.rememberme.InvalidCookieException;
+import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken;
+import org.springframework.security.web.authentication.rememberme.RememberMeAuthenticationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.auth.authsec.domain.user.UserService;
+
+/**
+ * Auto-logins of the rotating remember-me services against the test
+ * database, logging in the start-up "admin" user.
+ *
+ * @author Plamen
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class RotatingRememberMeServicesTests {
+
+    private static final long ROTATION_INTERVAL_SECONDS = 86400;
+
+    @Autowired
+    private RememberMeTokenStore tokenStore;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private RotatingRememberMeServices services;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    private long now;
+
+    public RotatingRememberMeServicesTests() {
+    }
+
+    @Before
+    public void setUp() {
+        services = new RotatingRememberMeServices("key", userService, tokenStore, ROTATION_INTERVAL_SECONDS);
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+        now = System.currentTimeMillis();
+    }
+
+    @After
+    public void tearDown() {
+        tokenStore.removeUserTokens("admin");
+    }
+
+    @Test
+    public void recentTokenIsNotRotated() {
+        tokenStore.createNewToken(new PersistentRememberMeToken("admin", "series-recent", "token", new Date(now)));
+
+        UserDetails user = services.processAutoLoginCookie(new String[] {"series-recent", "token"}, request,
+                response);
+
+        assertEquals("admin", user.getUsername());
+        assertNull(response.getCookie(AbstractRememberMeServices.SPRING_SECURITY_REMEMBER_ME_COOKIE_KEY));
+        assertEquals("token", tokenStore.getTokenForSeries("series-recent").getTokenValue());
+    }
+
+    @Test
+    public void tokenOlderThanTheRotationIntervalIsRotated() {
+        Date issuedAt = new Date(now - TimeUnit.SECONDS.toMillis(ROTATION_INTERVAL_SECONDS) - 1000L);
+        tokenStore.createNewToken(new PersistentRememberMeToken("admin", "series-old", "token", issuedAt));
+
+        UserDetails user = services.processAutoLoginCookie(new String[] {"series-old", "token"}, request, response);
+
+        assertEquals("admin", user.getUsername());
+        assertNotNull(response.getCookie(AbstractRememberMeServices.SPRING_SECURITY_REMEMBER_ME_COOKIE_KEY));
+        assertNotEquals("token", tokenStore.getTokenForSeries("series-old").getTokenValue());
+    }
+
+    @Test
+    public void replayedTokenRemovesEveryLoginOfTheUser() {
+        tokenStore.createNewToken(new PersistentRememberMeToken("admin", "series-stolen", "token", new Date(now)));
+        tokenStore.createNewToken(new PersistentRememberMeToken("admin", "series-other", "token", new Date(now)));
+
+        try {
+            services.processAutoLoginCookie(new String[] {"series-stolen", "replayed"}, request, response);
+            fail();
+        } catch (CookieTheftException expected) {
+            assertNull(tokenStore.getTokenForSeries("series-stolen"));
+            assertNull(tokenStore.getTokenForSeries("series-other"));
+        }
+    }
+
+    @Test
+    public void tokenRotatedByAnotherNodeIsRecheckedAgainstTheDatabase() {
+        tokenStore.createNewToken(new PersistentRememberMeToken("admin", "series-rotated", "token", new Date(now)));
+        tokenStore.getTokenForSeries("series-rotated");
+        // another node rotates the token, the cached series here still holds the old value
+        jdbcTemplate.update("UPDATE persistent_logins SET token = 'rotated' WHERE series = 'series-rotated'");
+
+        UserDetails user = services.processAutoLoginCookie(new String[] {"series-rotated", "rotated"}, request,
+                response);
+
+        assertEquals("admin", user.getUsername());
+        assertEquals("rotated", tokenStore.getTokenForSeries("series-rotated").getTokenValue());
+    }
+
+    @Test
+    public void tokenMismatchingTheDatabaseIsStillTreatedAsTheft() {
+        tokenStore.createNewToken(new PersistentRememberMeToken("admin", "series-replayed", "token", new Date(now)));
+        jdbcTemplate.update("UPDATE persistent_logins SET token = 'rotated' WHERE series = 'series-replayed'");
+
+        try {
+            services.processAutoLoginCookie(new String[] {"series-replayed", "replayed"}, request, response);
+            fail();
+        } catch (CookieTheftException expected) {
+            assertNull(tokenStore.getTokenForSeries("series-replayed"));
+        }
+    }
+
+    @Test(expected = RememberMeAuthenticationException.class)
+    public void loginUnusedForTheTokenValidityIsRejected() {
+        Date lastUsed = new Date(now - TimeUnit.SECONDS.toMillis(tokenStore.getTokenValiditySeconds()) - 60000L);
+        tokenStore.createNewToken(new PersistentRememberMeToken("admin", "series-expired", "token", lastUsed));
+
+        services.processAutoLoginCookie(new String[] {"series-expired", "token"}, request, response);
+    }
+
+    @Test(expected = RememberMeAuthenticationException.class)
+    public void unknownSeriesIsRejected() {
+        services.processAutoLoginCookie(new String[] {"series-unknown", "token"}, request, response);
+    }
+
+    @Test(expected = InvalidCookieException.class)
+    public void malformedCookieIsRejected() {
+        services.processAutoLoginCookie(new String[] {"series-only"}, request, response);
+    }
+
+}
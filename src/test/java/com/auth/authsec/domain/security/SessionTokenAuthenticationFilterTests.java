@@ -0,0 +1,230 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.security;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Authentication of requests from the session cookie or a bearer header, and
+ * the refresh of ageing session cookies from the current state of the account.
+ *
+ * @author Plamen
+ */
+public class SessionTokenAuthenticationFilterTests {
+
+    private static final long TIME_TO_LIVE_SECONDS = 900;
+
+    private SessionTokenCodec codec;
+
+    private SessionTokenAuthenticationFilter filter;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    private MockFilterChain chain;
+
+    /**
+     * The accounts known to the stub user service, by username.
+     */
+    private Map<String, UserDetails> accounts;
+
+    private int lookups;
+
+    public SessionTokenAuthenticationFilterTests() {
+    }
+
+    @Before
+    public void setUp() {
+        byte[] secret = new byte[32];
+        Arrays.fill(secret, (byte) 'a');
+
+        codec = new SessionTokenCodec("a:" + Base64.getEncoder().encodeToString(secret), "a", TIME_TO_LIVE_SECONDS);
+        accounts = new HashMap<>();
+        accounts.put("admin", User.withUsername("admin").password("").authorities("ROLE_ADMIN").build());
+        lookups = 0;
+        filter = new SessionTokenAuthenticationFilter(codec, username -> {
+            lookups++;
+            UserDetails account = accounts.get(username);
+
+            if (account == null) {
+                throw new UsernameNotFoundException(username);
+            }
+            return account;
+        });
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+        chain = new MockFilterChain();
+        SecurityContextHolder.clearContext();
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void sessionCookieAuthenticatesTheRequest() throws Exception {
+        request.setCookies(new Cookie(TokenCookies.SESSION_COOKIE, codec.issue(admin())));
+
+        filter.doFilter(request, response, chain);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertEquals("admin", authentication.getName());
+        assertEquals(AuthorityUtils.createAuthorityList("ROLE_ADMIN"), authentication.getAuthorities());
+        assertNull(response.getCookie(TokenCookies.SESSION_COOKIE));
+        assertSame(request, chain.getRequest());
+        assertEquals(0, lookups);
+    }
+
+    @Test
+    public void bearerHeaderAuthenticatesTheRequest() throws Exception {
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + codec.issue(admin()));
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals("admin", SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+
+    @Test
+    public void invalidTokenLeavesTheRequestAnonymous() throws Exception {
+        request.setCookies(new Cookie(TokenCookies.SESSION_COOKIE, "a.forged.token"));
+
+        filter.doFilter(request, response, chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertSame(request, chain.getRequest());
+    }
+
+    @Test
+    public void existingAuthenticationIsKept() throws Exception {
+        Authentication existing = new TestingAuthenticationToken("user", null, "ROLE_USER");
+        SecurityContextHolder.getContext().setAuthentication(existing);
+        request.setCookies(new Cookie(TokenCookies.SESSION_COOKIE, codec.issue(admin())));
+
+        filter.doFilter(request, response, chain);
+
+        assertSame(existing, SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    public void cookiePastHalfItsLifetimeIsReissued() throws Exception {
+        request.setCookies(new Cookie(TokenCookies.SESSION_COOKIE, ageingToken()));
+
+        filter.doFilter(request, response, chain);
+
+        Cookie reissued = response.getCookie(TokenCookies.SESSION_COOKIE);
+        assertNotNull(reissued);
+        assertEquals(TIME_TO_LIVE_SECONDS, reissued.getMaxAge());
+        assertEquals(SessionTokenCodec.now() + TIME_TO_LIVE_SECONDS, codec.decode(reissued.getValue()).getExpiresAt(), 1);
+        assertEquals(1, lookups);
+    }
+
+    @Test
+    public void reissuedCookieCarriesTheCurrentAuthorities() throws Exception {
+        accounts.put("admin", User.withUsername("admin").password("").authorities("ROLE_USER").build());
+        request.setCookies(new Cookie(TokenCookies.SESSION_COOKIE, ageingToken()));
+
+        filter.doFilter(request, response, chain);
+
+        Cookie reissued = response.getCookie(TokenCookies.SESSION_COOKIE);
+        assertEquals(Collections.singletonList("ROLE_USER"), codec.decode(reissued.getValue()).getAuthorities());
+        assertEquals(AuthorityUtils.createAuthorityList("ROLE_USER"),
+                SecurityContextHolder.getContext().getAuthentication().getAuthorities());
+    }
+
+    @Test
+    public void cookieOfADeletedAccountIsCleared() throws Exception {
+        accounts.clear();
+        request.setCookies(new Cookie(TokenCookies.SESSION_COOKIE, ageingToken()));
+
+        filter.doFilter(request, response, chain);
+
+        assertCleared();
+    }
+
+    @Test
+    public void cookieOfALockedAccountIsCleared() throws Exception {
+        accounts.put("admin", User.withUsername("admin").password("").authorities("ROLE_ADMIN")
+                .accountLocked(true).build());
+        request.setCookies(new Cookie(TokenCookies.SESSION_COOKIE, ageingToken()));
+
+        filter.doFilter(request, response, chain);
+
+        assertCleared();
+    }
+
+    @Test
+    public void cookieOfADisabledAccountIsCleared() throws Exception {
+        accounts.put("admin", User.withUsername("admin").password("").authorities("ROLE_ADMIN")
+                .disabled(true).build());
+        request.setCookies(new Cookie(TokenCookies.SESSION_COOKIE, ageingToken()));
+
+        filter.doFilter(request, response, chain);
+
+        assertCleared();
+    }
+
+    @Test
+    public void bearerTokenIsNeverReissued() throws Exception {
+        SessionToken ageing = new SessionToken("admin", Collections.singletonList("ROLE_ADMIN"),
+                SessionTokenCodec.now() + 10);
+        request.addHeader(HttpHeaders.AUTHORIZATION,
+                "Bearer " + codec.sign(SessionTokenCodec.SESSION_PURPOSE, ageing.toBytes()));
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals("admin", SecurityContextHolder.getContext().getAuthentication().getName());
+        assertNull(response.getCookie(TokenCookies.SESSION_COOKIE));
+        assertEquals(0, lookups);
+    }
+
+    private String ageingToken() {
+        SessionToken ageing = new SessionToken("admin", Collections.singletonList("ROLE_ADMIN"),
+                SessionTokenCodec.now() + TIME_TO_LIVE_SECONDS / 2 - 10);
+        return codec.sign(SessionTokenCodec.SESSION_PURPOSE, ageing.toBytes());
+    }
+
+    private void assertCleared() {
+        Cookie cleared = response.getCookie(TokenCookies.SESSION_COOKIE);
+        assertNotNull(cleared);
+        assertEquals(0, cleared.getMaxAge());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertSame(request, chain.getRequest());
+    }
+
+    private static Authentication admin() {
+        return new UsernamePasswordAuthenticationToken("admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.security;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Signing, verification, purposes, expiry and key rotation of the session
+ * tokens.
+ *
+ * @author Plamen
+ */
+public class SessionTokenCodecTests {
+
+    private static final String KEY_A = "a:" + secret('a');
+
+    private static final String KEY_B = "b:" + secret('b');
+
+    private static final Authentication ADMIN = new UsernamePasswordAuthenticationToken("admin", null,
+            AuthorityUtils.createAuthorityList("ROLE_ADMIN", "ROLE_USER"));
+
+    public SessionTokenCodecTests() {
+    }
+
+    @Test
+    public void issuedTokenDecodesToItsClaims() {
+        SessionTokenCodec codec = new SessionTokenCodec(KEY_A, "a", 900);
+
+        SessionToken token = codec.decode(codec.issue(ADMIN));
+
+        assertNotNull(token);
+        assertEquals("admin", token.getUsername());
+        assertEquals(Arrays.asList("ROLE_ADMIN", "ROLE_USER"), token.getAuthorities());
+        assertEquals(SessionTokenCodec.now() + 900, token.getExpiresAt(), 1);
+    }
+
+    @Test
+    public void signedPayloadIsVerified() {
+        SessionTokenCodec codec = new SessionTokenCodec(KEY_A, "a", 900);
+        byte[] payload = {1, 2, 3, 4};
+
+        assertArrayEquals(payload, codec.verify("test", codec.sign("test", payload)));
+    }
+
+    @Test
+    public void payloadSignedForAnotherPurposeIsRejected() {
+        SessionTokenCodec codec = new SessionTokenCodec(KEY_A, "a", 900);
+        String session = codec.issue(ADMIN);
+        SessionToken claims = new SessionToken("admin", Arrays.asList("ROLE_ADMIN"), SessionTokenCodec.now() + 60);
+
+        assertNull(codec.verify(SessionTokenCodec.AUTHORIZATION_REQUEST_PURPOSE, session));
+        assertNull(codec.decode(codec.sign(SessionTokenCodec.AUTHORIZATION_REQUEST_PURPOSE, claims.toBytes())));
+        assertNull(codec.verify("sess", codec.sign("session", new byte[] {1})));
+        assertNull(codec.verify("session", codec.sign("sess", new byte[] {0, 1})));
+        assertNotNull(codec.decode(codec.sign(SessionTokenCodec.SESSION_PURPOSE, claims.toBytes())));
+    }
+
+    @Test
+    public void tamperedTokenIsRejected() {
+        SessionTokenCodec codec = new SessionTokenCodec(KEY_A, "a", 900);
+        String token = codec.issue(ADMIN);
+        int payloadStart = token.indexOf('.') + 1;
+        char changed = token.charAt(payloadStart) == 'A' ? 'B' : 'A';
+        String tampered = token.substring(0, payloadStart) + changed + token.substring(payloadStart + 1);
+
+        assertNull(codec.decode(tampered));
+    }
+
+    @Test
+    public void tokenSignedWithAnUnknownKeyIsRejected() {
+        SessionTokenCodec issuer = new SessionTokenCodec(KEY_B, "b", 900);
+        SessionTokenCodec verifier = new SessionTokenCodec(KEY_A, "a", 900);
+
+        assertNull(verifier.decode(issuer.issue(ADMIN)));
+    }
+
+    @Test
+    public void tokenSignedWithTheKeyBeingRotatedOutIsAccepted() {
+        SessionTokenCodec before = new SessionTokenCodec(KEY_A, "a", 900);
+        SessionTokenCodec during = new SessionTokenCodec(KEY_A + "," + KEY_B, "b", 900);
+
+        String oldToken = before.issue(ADMIN);
+        String newToken = during.issue(ADMIN);
+
+        assertNotNull(during.decode(oldToken));
+        assertEquals("b", newToken.substring(0, newToken.indexOf('.')));
+        assertNull(before.decode(newToken));
+    }
+
+    @Test
+    public void expiredTokenIsRejected() {
+        SessionTokenCodec codec = new SessionTokenCodec(KEY_A, "a", -1);
+
+        assertNull(codec.decode(codec.issue(ADMIN)));
+    }
+
+    @Test
+    public void malformedTokensAreRejected() {
+        SessionTokenCodec codec = new SessionTokenCodec(KEY_A, "a", 900);
+
+        assertNull(codec.decode(null));
+        assertNull(codec.decode(""));
+        assertNull(codec.decode("a"));
+        assertNull(codec.decode(".payload.signature"));
+        assertNull(codec.decode("a.payload"));
+        assertNull(codec.decode("a.!!!.???"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void missingActiveKeyIsRejected() {
+        new SessionTokenCodec(KEY_A, "b", 900);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shortSecretIsRejected() {
+        new SessionTokenCodec("a:" + Base64.getEncoder().encodeToString(new byte[16]), "a", 900);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void keyIdWithADotIsRejected() {
+        new SessionTokenCodec("a.b:" + secret('a'), "a.b", 900);
+    }
+
+    private static String secret(char filler) {
+        byte[] secret = new byte[32];
+        Arrays.fill(secret, (byte) filler);
+        return Base64.getEncoder().encodeToString(secret);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Counting, sliding and slot reuse of the sliding window counter, on a clock
+ * moved by the tests.
+ *
+ * @author Plamen
+ */
+public class SlidingWindowCounterTests {
+
+    private static final long SLOT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int SLOTS = 10;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    public SlidingWindowCounterTests() {
+    }
+
+    @Test
+    public void countsEachKeySeparately() {
+        SlidingWindowCounter counter = newCounter();
+
+        assertEquals(1, counter.increment("alice"));
+        assertEquals(2, counter.increment("alice"));
+        assertEquals(1, counter.increment("bob"));
+
+        assertEquals(2, counter.estimate("alice"));
+        assertEquals(1, counter.estimate("bob"));
+        assertEquals(0, counter.estimate("carol"));
+    }
+
+    @Test
+    public void eventsStayCountedUntilTheyLeaveTheWindow() {
+        SlidingWindowCounter counter = newCounter();
+        counter.increment("alice");
+
+        clock.set(SLOT_NANOS);
+        assertEquals(2, counter.increment("alice"));
+
+        clock.set((SLOTS - 1) * SLOT_NANOS);
+        assertEquals(2, counter.estimate("alice"));
+
+        clock.set(SLOTS * SLOT_NANOS);
+        assertEquals(1, counter.estimate("alice"));
+
+        clock.set((SLOTS + 1) * SLOT_NANOS);
+        assertEquals(0, counter.estimate("alice"));
+    }
+
+    @Test
+    public void slotReachedAgainIsNotCountedBeforeItIsCleared() {
+        SlidingWindowCounter counter = newCounter();
+        counter.increment("alice");
+
+        clock.set(SLOTS * SLOT_NANOS);
+        assertEquals(0, counter.estimate("alice"));
+
+        assertEquals(1, counter.increment("bob"));
+        assertEquals(0, counter.estimate("alice"));
+        assertEquals(1, counter.estimate("bob"));
+    }
+
+    @Test
+    public void concurrentIncrementsAreAllCounted() throws InterruptedException {
+        final SlidingWindowCounter counter = newCounter();
+        final int threads = 8;
+        final int increments = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> workers = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < increments; j++) {
+                    counter.increment("alice");
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * increments, counter.estimate("alice"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroSlotsAreRejected() {
+        new SlidingWindowCounter(10, TimeUnit.SECONDS, 0, 4, 64);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowShorterThanItsSlotsIsRejected() {
+        new SlidingWindowCounter(5, TimeUnit.NANOSECONDS, 10, 4, 64);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroWidthIsRejected() {
+        new SlidingWindowCounter(10, TimeUnit.SECONDS, 10, 4, 0);
+    }
+
+    private SlidingWindowCounter newCounter() {
+        return new SlidingWindowCounter(SLOTS, TimeUnit.SECONDS, SLOTS, 4, 64, clock::get);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.user;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.auth.authsec.domain.audit.AsyncAuditTrail;
+import com.auth.authsec.domain.config.Errors;
+import com.auth.authsec.domain.exceptions.ImportTooLargeException;
+import com.auth.authsec.ui.user.ImportReport;
+import com.auth.authsec.ui.user.ImportReport.RowFailure;
+import com.auth.authsec.ui.user.UserForm;
+
+/**
+ * The bulk account import against the test database. Imported accounts and
+ * their audit events are deleted after each test.
+ *
+ * @author Plamen
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class DefaultAccountImportServiceTests {
+
+    private static final String PREFIX = "imported-";
+
+    private static final List<String> USER_ROLE = Collections.singletonList("ROLE_USER");
+
+    @Autowired
+    private AccountImportService importService;
+
+    @Autowired
+    private UserRepository userRepo;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AsyncAuditTrail auditTrail;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public DefaultAccountImportServiceTests() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            List<Long> ids = new ArrayList<>();
+
+            for (int i = 0; i < 10; i++) {
+                User user = userRepo.findOneByUsername(PREFIX + i);
+
+                if (!Objects.isNull(user)) {
+                    ids.add(user.getId());
+                }
+            }
+
+            if (!ids.isEmpty()) {
+                userRepo.deleteRoleLinks(ids);
+                userRepo.deleteAllByIds(ids);
+            }
+            return null;
+        });
+        jdbcTemplate.update("DELETE FROM audit_events WHERE subject LIKE ?", PREFIX + "%");
+    }
+
+    @Test
+    public void validAccountsAreImportedWithHashedPasswords() {
+        List<UserForm> accounts = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            accounts.add(new UserForm(PREFIX + i, "secret-" + i, USER_ROLE));
+        }
+
+        ImportReport report = importService.importAccounts(accounts);
+
+        assertEquals(5, report.getRequested());
+        assertEquals(5, report.getImported());
+        assertTrue(report.getFailures().isEmpty());
+
+        for (int i = 0; i < 5; i++) {
+            User user = userRepo.findOneByUsername(PREFIX + i);
+
+            assertNotNull(user);
+            assertTrue(passwordEncoder.matches("secret-" + i, user.getPassword()));
+        }
+    }
+
+    @Test
+    public void rejectedRowsAreReportedWithTheirCause() {
+        List<UserForm> accounts = Arrays.asList(
+                new UserForm(PREFIX + 0, "secret", USER_ROLE),
+                new UserForm("abc", "secret", USER_ROLE),
+                new UserForm(PREFIX + 0, "secret", USER_ROLE),
+                new UserForm("ADMIN", "secret", USER_ROLE),
+                new UserForm(PREFIX + 1, "secret", Collections.emptyList()),
+                null);
+
+        ImportReport report = importService.importAccounts(accounts);
+
+        assertEquals(6, report.getRequested());
+        assertEquals(1, report.getImported());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5),
+                report.getFailures().stream().map(RowFailure::getRow).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(Errors.INVALID_ACCOUNT, Errors.DUPLICATE_USERNAME, Errors.USERNAME_ALREADY_EXISTS,
+                Errors.INVALID_ACCOUNT, Errors.INVALID_ACCOUNT),
+                report.getFailures().stream().map(RowFailure::getReason).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void everyImportedAccountIsRecordedOnce() {
+        List<UserForm> accounts = Arrays.asList(
+                new UserForm(PREFIX + 0, "secret", USER_ROLE),
+                new UserForm(PREFIX + 1, "secret", USER_ROLE),
+                new UserForm(PREFIX + 1, "secret", USER_ROLE),
+                new UserForm("ADMIN", "secret", USER_ROLE));
+
+        importService.importAccounts(accounts);
+        // stopping drains the queued events
+        auditTrail.stop();
+        auditTrail.start();
+
+        assertEquals(Arrays.asList(PREFIX + 0, PREFIX + 1), jdbcTemplate.queryForList(
+                "SELECT subject FROM audit_events WHERE event_type = 'REGISTRATION' AND subject LIKE ? "
+                        + "ORDER BY subject", String.class, PREFIX + "%"));
+    }
+
+    @Test(expected = ImportTooLargeException.class)
+    public void importsAboveTheCapAreRejected() {
+        importService.importAccounts(Collections.nCopies(10001, (UserForm) null));
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.user;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.auth.authsec.domain.role.RoleRegistry;
+import com.auth.authsec.ui.user.AccountPage;
+import com.auth.authsec.ui.user.BulkOperationResult;
+import com.auth.authsec.ui.user.UserForm;
+
+/**
+ * The user service against the test database, with a handful of accounts
+ * created for each test and deleted afterwards.
+ *
+ * @author Plamen
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class DefaultUserServiceTests {
+
+    private static final String PREFIX = "service-test-";
+
+    private static final int ACCOUNTS = 7;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepo;
+
+    @Autowired
+    private RoleRegistry roleRegistry;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transaction;
+
+    private List<Long> ids;
+
+    public DefaultUserServiceTests() {
+    }
+
+    @Before
+    public void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        ids = transaction.execute(status -> {
+            List<User> users = new ArrayList<>();
+
+            for (int i = 0; i < ACCOUNTS; i++) {
+                users.add(new User.UserBuilder().username(PREFIX + i).password("secret")
+                        .roles(new ArrayList<>(Collections.singletonList(roleRegistry.get("ROLE_USER"))))
+                        .isEnabled(true).isAccountNonLocked(true).isAccountNonExpired(true)
+                        .isCredentialsNonExpired(true).build());
+            }
+
+            List<Long> created = new ArrayList<>();
+            userRepo.saveAll(users).forEach(user -> created.add(user.getId()));
+            return created;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        transaction.execute(status -> {
+            userRepo.deleteRoleLinks(ids);
+            return userRepo.deleteAllByIds(ids);
+        });
+    }
+
+    @Test
+    public void keysetPagesCoverEveryAccountOnceInIdOrder() {
+        List<String> listed = new ArrayList<>();
+        Long after = null;
+        int pages = 0;
+
+        do {
+            AccountPage page = userService.getAccountPage(AccountFilter.ALL, after, 3);
+
+            assertEquals(3, page.getLimit());
+            assertTrue(page.getAccounts().size() <= 3);
+            assertTrue(page.getNextCursor() == null || page.getAccounts().size() == 3);
+
+            page.getAccounts().forEach(account -> listed.add(account.getUsername()));
+            after = page.getNextCursor();
+            pages++;
+        } while (after != null && pages < 100);
+
+        assertNull(after);
+        assertEquals(listed.size(), new HashSet<>(listed).size());
+
+        List<String> created = listed.stream().filter(name -> name.startsWith(PREFIX)).collect(Collectors.toList());
+        List<String> expected = new ArrayList<>();
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            expected.add(PREFIX + i);
+        }
+        assertEquals(expected, created);
+    }
+
+    @Test
+    public void pagesAreFilteredByRoleInTheDatabase() {
+        Set<String> admins = usernamesOf(userService.getAccountPage(AccountFilter.ADMINS, null, 500));
+        Set<String> users = usernamesOf(userService.getAccountPage(AccountFilter.USERS, null, 500));
+
+        assertTrue(admins.contains("admin"));
+        assertFalse(users.contains("admin"));
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertTrue(users.contains(PREFIX + i));
+            assertFalse(admins.contains(PREFIX + i));
+        }
+    }
+
+    @Test
+    public void pageAfterTheLastAccountIsEmpty() {
+        AccountPage page = userService.getAccountPage(AccountFilter.ALL, ids.get(ids.size() - 1), 10);
+
+        assertTrue(usernamesOf(page).stream().noneMatch(name -> name.startsWith(PREFIX)));
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void pageSizeIsCapped() {
+        assertEquals(1, userService.getAccountPage(AccountFilter.ALL, null, 0).getLimit());
+        assertEquals(500, userService.getAccountPage(AccountFilter.ALL, null, 100000).getLimit());
+    }
+
+    @Test
+    public void pagesNeverCarryPasswords() {
+        AccountPage page = userService.getAccountPage(AccountFilter.USERS, null, 500);
+
+        for (UserForm account : page.getAccounts()) {
+            assertNull(account.getPassword());
+            assertEquals(Collections.singletonList("ROLE_USER"), account.getRoles());
+        }
+    }
+
+    @Test
+    public void loginRacingADeletionCannotCacheTheDeletedAccount() {
+        String username = PREFIX + 0;
+        UserDetails loaded = userService.loadUserByUsername(username);
+
+        assertNotNull(principalCache.getUserFromCache(username));
+
+        long stamp = transaction.execute(status -> {
+            userService.deleteAccount(username);
+
+            // not committed yet, a concurrent login still reads and caches the account
+            assertNotNull(principalCache.getUserFromCache(username));
+            principalCache.putUserInCache(loaded);
+            return principalCache.getInvalidationStamp();
+        });
+
+        assertNull(principalCache.getUserFromCache(username));
+        assertFalse(principalCache.putUserInCache(loaded, stamp));
+        assertNull(principalCache.getUserFromCache(username));
+
+        try {
+            userService.loadUserByUsername(username);
+            fail();
+        } catch (UsernameNotFoundException expected) {
+            assertNull(principalCache.getUserFromCache(username));
+        }
+    }
+
+    @Test
+    public void bulkPromotionReplacesTheRolesOfNonAdmins() {
+        BulkOperationResult result = userService.updateUserAccountsToAdminAccounts(
+                Arrays.asList(PREFIX + 0, PREFIX + 1, "admin", PREFIX + "missing"));
+
+        assertEquals(4, result.getRequested());
+        assertEquals(2, result.getAffected());
+        assertEquals(Collections.singletonList("admin"), result.getSkipped());
+        assertEquals(Collections.singletonList(PREFIX + "missing"), result.getNotFound());
+
+        assertEquals(Collections.singletonList("ROLE_ADMIN"), roleNamesOf(ids.get(0)));
+        assertEquals(Collections.singletonList("ROLE_ADMIN"), roleNamesOf(ids.get(1)));
+        assertEquals(Collections.singletonList("ROLE_USER"), roleNamesOf(ids.get(2)));
+        assertEquals(Collections.singletonList("ROLE_ADMIN"), authoritiesOf(PREFIX + 0));
+    }
+
+    @Test
+    public void bulkDeletionSkipsTheCallersOwnAccount() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(PREFIX + 2, null, Collections.emptyList()));
+
+        BulkOperationResult result = userService.deleteAccounts(
+                Arrays.asList(PREFIX + 2, PREFIX + 3, PREFIX + 4, PREFIX + "missing"));
+
+        assertEquals(4, result.getRequested());
+        assertEquals(2, result.getAffected());
+        assertEquals(Collections.singletonList(PREFIX + 2), result.getSkipped());
+        assertEquals(Collections.singletonList(PREFIX + "missing"), result.getNotFound());
+
+        assertNotNull(userRepo.findOneByUsername(PREFIX + 2));
+        assertNull(userRepo.findOneByUsername(PREFIX + 3));
+        assertNull(userRepo.findOneByUsername(PREFIX + 4));
+        assertEquals(Collections.singletonList("ROLE_USER"), roleNamesOf(ids.get(2)));
+        assertTrue(roleNamesOf(ids.get(3)).isEmpty());
+        assertTrue(roleNamesOf(ids.get(4)).isEmpty());
+    }
+
+    private List<String> roleNamesOf(Long id) {
+        return jdbcTemplate.queryForList("SELECT r.role_name FROM users_roles ur "
+                + "JOIN roles r ON r.role_id = ur.role_id WHERE ur.user_id = ?", String.class, id);
+    }
+
+    private List<String> authoritiesOf(String username) {
+        return userService.loadUserByUsername(username).getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority).collect(Collectors.toList());
+    }
+
+    private static Set<String> usernamesOf(AccountPage page) {
+        return page.getAccounts().stream().map(UserForm::getUsername).collect(Collectors.toSet());
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.user;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.auth.authsec.domain.role.Authority;
+import com.auth.authsec.domain.role.Role;
+
+/**
+ * Hits, misses, expiry and eviction of the principal cache, on a clock the
+ * tests move by hand.
+ *
+ * @author Plamen
+ */
+public class PrincipalCacheTests {
+
+    private static final long TIME_TO_LIVE_NANOS = 1000L;
+
+    private final AtomicLong now = new AtomicLong();
+
+    private PrincipalCache cache;
+
+    public PrincipalCacheTests() {
+    }
+
+    @Before
+    public void setUp() {
+        cache = new PrincipalCache(2, TIME_TO_LIVE_NANOS, now::get);
+    }
+
+    @Test
+    public void unknownUsernameIsAMiss() {
+        assertNull(cache.getUserFromCache("admin"));
+        assertNull(cache.getUserFromCache(null));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void cachedPrincipalIsAHitRegardlessOfCase() {
+        cache.putUserInCache(user("Admin", "ROLE_ADMIN"));
+
+        UserDetails cached = cache.getUserFromCache("ADMIN");
+
+        assertNotNull(cached);
+        assertEquals("Admin", cached.getUsername());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void cachedPrincipalIsAnImmutableSnapshot() {
+        List<Role> roles = new ArrayList<>(Arrays.asList(new Role("ROLE_USER")));
+        User user = new User("user", "hash", roles);
+
+        cache.putUserInCache(user);
+        roles.add(new Role("ROLE_ADMIN"));
+        user.setRoles(new ArrayList<>());
+
+        UserDetails cached = cache.getUserFromCache("user");
+
+        assertTrue(cached instanceof PrincipalSnapshot);
+        assertEquals(Arrays.asList(new SimpleGrantedAuthority("ROLE_USER")), cached.getAuthorities());
+        assertTrue(((PrincipalSnapshot) cached).hasAuthority(Authority.USER));
+        assertFalse(((PrincipalSnapshot) cached).hasAuthority(Authority.ADMIN));
+        assertSame(cached, cache.getUserFromCache("user"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void authoritiesOfACachedPrincipalCantBeChanged() {
+        cache.putUserInCache(user("user", "ROLE_USER"));
+
+        PrincipalSnapshot cached = (PrincipalSnapshot) cache.getUserFromCache("user");
+        cached.getAuthorities().add(new SimpleGrantedAuthority("ROLE_ADMIN"));
+    }
+
+    @Test
+    public void principalExpiresAfterTheTimeToLive() {
+        cache.putUserInCache(user("user", "ROLE_USER"));
+
+        now.addAndGet(TIME_TO_LIVE_NANOS - 1);
+        assertNotNull(cache.getUserFromCache("user"));
+
+        now.addAndGet(1);
+        assertNull(cache.getUserFromCache("user"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedPrincipalIsEvictedAtTheMaximumSize() {
+        cache.putUserInCache(user("first", "ROLE_USER"));
+        cache.putUserInCache(user("second", "ROLE_USER"));
+        cache.getUserFromCache("first");
+
+        cache.putUserInCache(user("third", "ROLE_USER"));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.getUserFromCache("first"));
+        assertNull(cache.getUserFromCache("second"));
+        assertNotNull(cache.getUserFromCache("third"));
+    }
+
+    @Test
+    public void removedPrincipalIsAMiss() {
+        cache.putUserInCache(user("user", "ROLE_USER"));
+
+        cache.removeUserFromCache("USER");
+
+        assertNull(cache.getUserFromCache("user"));
+    }
+
+    @Test
+    public void principalLoadedBeforeARemovalIsNotCached() {
+        long stamp = cache.getInvalidationStamp();
+
+        cache.removeUserFromCache("other");
+
+        assertFalse(cache.putUserInCache(user("user", "ROLE_USER"), stamp));
+        assertNull(cache.getUserFromCache("user"));
+    }
+
+    @Test
+    public void principalLoadedWithoutARemovalIsCached() {
+        cache.removeUserFromCache("user");
+        long stamp = cache.getInvalidationStamp();
+
+        assertTrue(cache.putUserInCache(user("user", "ROLE_USER"), stamp));
+        assertNotNull(cache.getUserFromCache("user"));
+    }
+
+    @Test
+    public void zeroMaximumSizeDisablesTheCache() {
+        cache = new PrincipalCache(0, TIME_TO_LIVE_NANOS, now::get);
+
+        cache.putUserInCache(user("user", "ROLE_USER"));
+
+        assertNull(cache.getUserFromCache("user"));
+        assertEquals(0, cache.size());
+    }
+
+    private static User user(String username, String roleName) {
+        return new User(username, "hash", new ArrayList<>(Arrays.asList(new Role(roleName))));
+    }
+
+}
@@ -5,26 +5,68 @@
  */
 package com.auth.authsec.domain.user;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+
 import org.junit.After;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.auth.authsec.domain.role.Role;
+import com.auth.authsec.domain.role.RoleRegistry;
+import com.auth.authsec.ui.user.UserForm;
 
 /**
  *
  * @author Plamen
  */
 @SpringBootTest
+@ActiveProfiles("test")
 @RunWith(SpringRunner.class)
 public class UserRepositoryTests {
     
     @Autowired
     private UserRepository userRepo;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private RoleRegistry roleRegistry;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private UserService userService;
+    
     public UserRepositoryTests() {
     }
     
@@ -41,4 +83,174 @@ public class UserRepositoryTests {
         assertTrue(true);
     }
     
+    @Test
+    public void findOneByUsernameIgnoresCase() {
+        User admin = userRepo.findOneByUsername("ADMIN");
+        
+        assertNotNull(admin);
+        assertEquals("admin", admin.getUsername());
+    }
+    
+    @Test
+    public void usernameLookupIsServedFromUsernameKeyIndex() {
+        String sql = getSqlOf(UserRepository.FIND_BY_USERNAME).replace("?", "'ADMIN'");
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN PLAN FOR " + sql, String.class);
+        String joinedPlan = String.join("\n", plan).toUpperCase(Locale.ROOT);
+        
+        assertTrue(joinedPlan, joinedPlan.contains("IDX_USERS_USERNAME_KEY"));
+        assertFalse(joinedPlan, joinedPlan.contains("FULL SCAN"));
+    }
+    
+    @Test
+    public void repeatedUsernameLookupsAreServedFromTheCache() {
+        Statistics statistics = getStatistics();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        
+        assertFalse(transaction.execute(status -> userRepo.findOneByUsername("admin").getAuthorities().isEmpty()));
+        
+        QueryStatistics query = statistics.getQueryStatistics(UserRepository.FIND_BY_USERNAME);
+        long executions = query.getExecutionCount();
+        long cacheHits = query.getCacheHitCount();
+        long userLoads = statistics.getEntityStatistics(User.class.getName()).getLoadCount();
+        long roleLinkLoads = statistics.getCollectionStatistics(User.class.getName() + ".roles").getLoadCount();
+        
+        for (int i = 0; i < 3; i++) {
+            transaction.execute(status -> {
+                User admin = userRepo.findOneByUsername("admin");
+                
+                assertEquals("admin", admin.getUsername());
+                assertFalse(admin.getAuthorities().isEmpty());
+                return admin;
+            });
+        }
+        
+        assertEquals(executions, query.getExecutionCount());
+        assertTrue(query.getCacheHitCount() > cacheHits);
+        assertEquals(userLoads, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+        assertEquals(roleLinkLoads, statistics.getCollectionStatistics(User.class.getName() + ".roles").getLoadCount());
+    }
+    
+    @Test
+    public void roleLinkChangesOnlyEvictTheRoleCollections() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Long adminId = transaction.execute(status -> {
+            User admin = userRepo.findOneByUsername("admin");
+            
+            assertFalse(admin.getAuthorities().isEmpty());
+            return admin.getId();
+        });
+        Long roleId = roleRegistry.get("ROLE_ADMIN").getId();
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        
+        assertTrue(cache.containsEntity(User.class, adminId));
+        assertTrue(cache.containsCollection(User.class.getName() + ".roles", adminId));
+        
+        userRepo.deleteRoleLinks(Collections.singletonList(-1L)); // matches no user
+        
+        assertTrue(cache.containsEntity(User.class, adminId));
+        assertTrue(cache.containsEntity(Role.class, roleId));
+        assertFalse(cache.containsCollection(User.class.getName() + ".roles", adminId));
+    }
+    
+    @Test
+    public void findOneByUsernameFetchesTheRolesInOneStatement() {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evictQueryRegion("users-by-username");
+        cache.evictEntityRegion(User.class);
+        cache.evictCollectionRegion(User.class.getName() + ".roles");
+        
+        Statistics statistics = getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+        User admin = userRepo.findOneByUsername("admin");
+        
+        assertEquals(1, statistics.getPrepareStatementCount() - statements);
+        assertFalse(admin.getAuthorities().isEmpty());
+    }
+    
+    @Test
+    public void listingStatementsDontGrowWithTheNumberOfUsers() {
+        long[] fewUsers = countListingStatements(5);
+        long[] manyUsers = countListingStatements(25);
+        
+        assertTrue("statements: " + manyUsers[0], manyUsers[0] <= 2);
+        assertTrue("statements: " + manyUsers[1], manyUsers[1] <= 2);
+        assertArrayEquals(fewUsers, manyUsers);
+    }
+    
+    private Statistics getStatistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+    
+    /**
+     * @param jpql
+     * @return the SQL Hibernate generates for the given query.
+     */
+    private String getSqlOf(String jpql) {
+        String[] sql = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getQueryPlanCache()
+                .getHQLQueryPlan(jpql, false, Collections.emptyMap()).getSqlStrings();
+        
+        assertEquals(1, sql.length);
+        return sql[0];
+    }
+    
+    /**
+     * Creates the given number of users, lists every account with its roles
+     * through the user service and deletes the users again.
+     *
+     * @param count
+     * @return the number of statements listing all accounts and listing them
+     * as a single page took.
+     */
+    private long[] countListingStatements(int count) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<Long> ids = transaction.execute(status -> {
+            List<User> users = new ArrayList<>();
+            
+            for (int i = 0; i < count; i++) {
+                users.add(new User.UserBuilder().username("listed-" + count + "-" + i).password("secret")
+                        .roles(new ArrayList<>(Collections.singletonList(roleRegistry.get("ROLE_USER"))))
+                        .isEnabled(true).isAccountNonLocked(true).isAccountNonExpired(true)
+                        .isCredentialsNonExpired(true).build());
+            }
+            
+            List<Long> created = new ArrayList<>();
+            userRepo.saveAll(users).forEach(user -> created.add(user.getId()));
+            return created;
+        });
+        
+        try {
+            
+            long allAccounts = countStatements(count, () -> userService.getAllAccounts());
+            long page = countStatements(count,
+                    () -> userService.getAccountPage(AccountFilter.ALL, null, 500).getAccounts());
+            
+            return new long[] {allAccounts, page};
+            
+        } finally {
+            transaction.execute(status -> {
+                userRepo.deleteRoleLinks(ids);
+                return userRepo.deleteAllByIds(ids);
+            });
+        }
+    }
+    
+    /**
+     * @param count - number of listed users created by the test.
+     * @param listing
+     * @return the number of statements the listing took.
+     */
+    private long countStatements(int count, Supplier<List<UserForm>> listing) {
+        Statistics statistics = getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+        
+        List<UserForm> accounts = listing.get();
+        long listedWithRoles = accounts.stream()
+                .filter(account -> account.getUsername().startsWith("listed-" + count + "-"))
+                .filter(account -> account.getRoles().contains("ROLE_USER"))
+                .count();
+        
+        assertEquals(count, listedWithRoles);
+        return statistics.getPrepareStatementCount() - statements;
+    }
+    
 }
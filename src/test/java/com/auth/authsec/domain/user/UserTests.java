@@ -0,0 +1,64 @@
+/*
+ * 
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ * 
+ */
+package com.auth.authsec.domain.user;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.auth.authsec.domain.role.Authority;
+import com.auth.authsec.domain.role.Role;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The authority mask of users stays in sync with their roles.
+ *
+ * @author Plamen
+ */
+public class UserTests {
+
+    public UserTests() {
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void authoritiesCantBeChangedInPlace() {
+        User user = new User("alice", "secret", new ArrayList<>(Arrays.asList(new Role("ROLE_USER"))));
+
+        user.getAuthorities().add(new Role("ROLE_ADMIN"));
+    }
+
+    @Test
+    public void replacingTheRolesRecomputesTheMask() {
+        User user = new User("alice", "secret", new ArrayList<>(Arrays.asList(new Role("ROLE_USER"))));
+
+        assertTrue(user.hasAuthority(Authority.USER));
+        assertFalse(user.hasAuthority(Authority.ADMIN));
+
+        user.setRoles(new ArrayList<>(Arrays.asList(new Role("ROLE_ADMIN"))));
+
+        assertTrue(user.hasAuthority(Authority.ADMIN));
+        assertFalse(user.hasAuthority(Authority.USER));
+    }
+
+    @Test
+    public void changingTheListGivenToSetRolesDoesntChangeTheUser() {
+        User user = new User("alice", "secret");
+        List<Role> roles = new ArrayList<>(Arrays.asList(new Role("ROLE_USER")));
+        user.setRoles(roles);
+
+        assertFalse(user.hasAuthority(Authority.ADMIN));
+
+        roles.add(new Role("ROLE_ADMIN"));
+
+        assertEquals(1, user.getAuthorities().size());
+        assertFalse(user.hasAuthority(Authority.ADMIN));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ *
+ */
+package com.auth.authsec.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the latency and outcome of every request of a load test phase and
+ * reports throughput and latency percentiles. Every sample is kept, so the
+ * percentiles are exact rather than approximated from buckets.
+ *
+ * @author Plamen
+ */
+public class LatencyRecorder {
+
+    private final String name;
+
+    private long[] samples = new long[1024];
+
+    private int count;
+
+    private final AtomicInteger errors = new AtomicInteger();
+
+    /**
+     * Number of responses by status code, -1 standing for I/O failures.
+     */
+    private final Map<Integer, Integer> statuses = new TreeMap<>();
+
+    private long startedAt;
+
+    private long finishedAt;
+
+    public LatencyRecorder(final String name) {
+        this.name = name;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    public void start() {
+        startedAt = System.nanoTime();
+    }
+
+    public void finish() {
+        finishedAt = System.nanoTime();
+    }
+
+    /**
+     * Records a single request.
+     *
+     * @param latencyNanos - time from sending the request to reading the
+     * response.
+     * @param status - the response's status code, -1 if it failed.
+     * @param success - whether the response was the expected one.
+     */
+    public synchronized void record(final long latencyNanos, final int status, final boolean success) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = latencyNanos;
+        statuses.merge(status, 1, Integer::sum);
+
+        if (!success) {
+            errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Formats the throughput, error count, status codes and latency
+     * percentiles of the phase.
+     *
+     * @return the report of the phase.
+     */
+    public synchronized String report() {
+        final long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+
+        final double seconds = Math.max(finishedAt - startedAt, 1L) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        return String.format("%-14s requests=%-7d errors=%-6d throughput=%9.1f req/s  "
+                + "p50=%8.2fms  p99=%8.2fms  p999=%8.2fms  max=%8.2fms  statuses=%s",
+                name, count, errors.get(), count / seconds,
+                toMillis(percentile(sorted, 0.50)), toMillis(percentile(sorted, 0.99)),
+                toMillis(percentile(sorted, 0.999)), toMillis(count == 0 ? 0L : sorted[count - 1]), statuses);
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Nearest-rank percentile of sorted samples.
+     *
+     * @param sorted
+     * @param percentile - between 0 and 1.
+     * @return the sample at the percentile, 0 if there are no samples.
+     */
+    private static long percentile(final long[] sorted, final double percentile) {
+        if (sorted.length == 0) {
+            return 0L;
+        }
+        final int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+}
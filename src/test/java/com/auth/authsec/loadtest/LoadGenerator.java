@@ -0,0 +1,263 @@
+/*
+ *
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ *
+ */
+package com.auth.authsec.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.auth.authsec.AuthsecApplication;
+import com.auth.authsec.loadtest.LoadTestClient.Response;
+
+/**
+ * End-to-end load generator for the login, registration and admin flows. Runs
+ * the following phases one after another, each with the configured number of
+ * concurrent clients, and reports throughput and p50/p99/p999 latencies per
+ * phase:
+ *
+ * <pre>
+ * register      POST /register             once per generated user
+ * login         POST /native-login         "loadtest.logins" logins, spread over the users
+ * all-accounts  GET  /all-accounts         "loadtest.listings" listings by logged in admins
+ * make-admin    GET  /make-admin-account   every tenth generated user
+ * delete        GET  /delete-user-account  every generated user
+ * </pre>
+ *
+ * Without "loadtest.base-url" the application is started in-process with the
+ * "test" profile and its embedded HSQL database, so the generator and the
+ * server share the machine. Run it from the test tree with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.auth.authsec.loadtest.LoadGenerator \
+ *     -Dloadtest.concurrency=32 -Dloadtest.users=2000
+ * </pre>
+ *
+ * @author Plamen
+ */
+public class LoadGenerator {
+
+    private static final String PASSWORD = "loadtest-password";
+
+    private static final String ADMIN_USERNAME = "admin";
+
+    private static final String ADMIN_PASSWORD = "admin";
+
+    private final String baseUrl;
+
+    private final int concurrency;
+
+    private final List<String> usernames;
+
+    private final int logins;
+
+    private final int listings;
+
+    private final int pageSize;
+
+    public LoadGenerator(String baseUrl, int concurrency, int users, int logins, int listings, int pageSize) {
+        this.baseUrl = baseUrl;
+        this.concurrency = concurrency;
+        this.logins = logins;
+        this.listings = listings;
+        this.pageSize = pageSize;
+        this.usernames = new ArrayList<>(users);
+
+        final String runId = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+        for (int i = 0; i < users; i++) {
+            usernames.add("loadtest-" + runId + "-" + i);
+        }
+    }
+
+    /**
+     * Starts the application unless a base URL is given, runs every phase and
+     * prints the reports.
+     *
+     * @param args - unused, the generator is configured by system properties.
+     * @throws Exception if a phase can not be run.
+     */
+    public static void main(String[] args) throws Exception {
+        final int concurrency = Integer.getInteger("loadtest.concurrency", 16);
+        final int users = Integer.getInteger("loadtest.users", 1000);
+        final int logins = Integer.getInteger("loadtest.logins", users * 2);
+        final int listings = Integer.getInteger("loadtest.listings", users);
+        final int pageSize = Integer.getInteger("loadtest.page-size", 100);
+
+        String baseUrl = System.getProperty("loadtest.base-url");
+        ConfigurableApplicationContext context = null;
+
+        if (Objects.isNull(baseUrl)) {
+            context = new SpringApplicationBuilder(AuthsecApplication.class)
+                    .profiles("test")
+                    .properties("server.port=0", "logging.level.org.hibernate.SQL=WARN",
+                            "logging.level.org.hibernate.type.descriptor=WARN")
+                    .run(args);
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+
+            final List<LatencyRecorder> reports = new LoadGenerator(baseUrl, concurrency, users, logins, listings,
+                    pageSize).run();
+
+            System.out.println();
+            System.out.println(String.format("authsec load test against %s, concurrency=%d, users=%d",
+                    baseUrl, concurrency, users));
+            reports.forEach(report -> System.out.println(report.report()));
+
+        } finally {
+            if (!Objects.isNull(context)) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * Runs every phase.
+     *
+     * @return the recorders of the phases, in order.
+     * @throws Exception if a phase can not be run.
+     */
+    public List<LatencyRecorder> run() throws Exception {
+        final List<LatencyRecorder> reports = new ArrayList<>();
+        final ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+
+        try {
+
+            reports.add(runPhase(workers, "register", usernames.size(), false, (client, i) -> {
+                final Map<String, String> form = new LinkedHashMap<>();
+                form.put("username", usernames.get(i));
+                form.put("password", PASSWORD);
+                return client.postForm("/register", form);
+            }, LoadGenerator::isRedirectWithoutError));
+
+            reports.add(runPhase(workers, "login", logins, false,
+                    (client, i) -> new LoadTestClient(baseUrl).login(usernames.get(i % usernames.size()), PASSWORD),
+                    LoadGenerator::isRedirectWithoutError));
+
+            reports.add(runPhase(workers, "all-accounts", listings, true,
+                    (client, i) -> client.get("/all-accounts?limit=" + pageSize),
+                    response -> response.getStatus() == 200));
+
+            final List<String> promoted = new ArrayList<>();
+            for (int i = 0; i < usernames.size(); i += 10) {
+                promoted.add(usernames.get(i));
+            }
+
+            reports.add(runPhase(workers, "make-admin", promoted.size(), true,
+                    (client, i) -> client.get("/make-admin-account?username="
+                            + LoadTestClient.urlEncode(promoted.get(i))),
+                    response -> response.isRedirectTo("make-admin-success")));
+
+            reports.add(runPhase(workers, "delete", usernames.size(), true,
+                    (client, i) -> client.get("/delete-user-account?username="
+                            + LoadTestClient.urlEncode(usernames.get(i))),
+                    response -> response.isRedirectTo("delete-success")));
+
+        } finally {
+            workers.shutdownNow();
+        }
+
+        return reports;
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    /**
+     * Runs a phase of the given number of requests on all workers. Every
+     * worker has its own client, logged in as the admin for admin phases.
+     *
+     * @param workers - the worker pool.
+     * @param name - name of the phase.
+     * @param requests - number of requests in the phase.
+     * @param asAdmin - whether the clients log in as the admin first.
+     * @param request - sends the i-th request.
+     * @param expected - tells the expected responses from errors.
+     * @return the phase's recorder.
+     * @throws Exception if a worker fails.
+     */
+    private LatencyRecorder runPhase(final ExecutorService workers, final String name, final int requests,
+            final boolean asAdmin, final Request request, final Predicate<Response> expected) throws Exception {
+
+        final LatencyRecorder recorder = new LatencyRecorder(name);
+        final AtomicInteger next = new AtomicInteger();
+        final List<Future<?>> running = new ArrayList<>(concurrency);
+
+        recorder.start();
+
+        for (int worker = 0; worker < concurrency; worker++) {
+            running.add(workers.submit(() -> {
+                final LoadTestClient client = new LoadTestClient(baseUrl);
+
+                if (asAdmin && !isRedirectWithoutError(client.login(ADMIN_USERNAME, ADMIN_PASSWORD))) {
+                    throw new IllegalStateException("The admin could not log in");
+                }
+
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    final long startedAt = System.nanoTime();
+
+                    try {
+
+                        final Response response = request.send(client, i);
+                        recorder.record(System.nanoTime() - startedAt, response.getStatus(),
+                                expected.test(response));
+
+                    } catch (IOException e) {
+                        recorder.record(System.nanoTime() - startedAt, -1, false);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (Future<?> worker : running) {
+            worker.get();
+        }
+
+        recorder.finish();
+        return recorder;
+    }
+
+    /**
+     * Successful logins and registrations redirect, failed ones redirect to
+     * an error page or render the form again.
+     *
+     * @param response
+     * @return "true" if the response is a redirect to a page without error.
+     */
+    private static boolean isRedirectWithoutError(final Response response) {
+        return response.getStatus() == 302 && !Objects.isNull(response.getLocation())
+                && !response.getLocation().contains("error");
+    }
+
+    /**
+     * A single request of a phase.
+     */
+    @FunctionalInterface
+    private interface Request {
+
+        /**
+         * @param client - the worker's client.
+         * @param i - index of the request within the phase.
+         * @return the response.
+         * @throws IOException if the request fails.
+         */
+        Response send(LoadTestClient client, int i) throws IOException;
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ *
+ * EuroRisk Systems (c) Ltd. All rights reserved.
+ *
+ */
+package com.auth.authsec.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * Minimal HTTP client for the load test, acting as one browser. Keeps its own
+ * cookies, e.g. the session of a logged in user, and never follows redirects,
+ * so the redirect targets can be checked.
+ *
+ * @author Plamen
+ */
+public class LoadTestClient {
+
+    private static final int TIMEOUT_MILLIS = 30_000;
+
+    private final String baseUrl;
+
+    private final Map<String, String> cookies = new LinkedHashMap<>();
+
+    public LoadTestClient(final String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    // -------------------------------------------- Public Methods --------------------------------------------
+    /**
+     * Sends a GET request.
+     *
+     * @param path - path and query of the request.
+     * @return the response.
+     * @throws IOException if the request fails.
+     */
+    public Response get(final String path) throws IOException {
+        return send("GET", path, null);
+    }
+
+    /**
+     * Sends a form POST request.
+     *
+     * @param path - path of the request.
+     * @param form - the form fields.
+     * @return the response.
+     * @throws IOException if the request fails.
+     */
+    public Response postForm(final String path, final Map<String, String> form) throws IOException {
+        return send("POST", path, encode(form));
+    }
+
+    /**
+     * Logs in through the native login form.
+     *
+     * @param username
+     * @param password
+     * @return the response, a redirect away from the login page on success.
+     * @throws IOException if the request fails.
+     */
+    public Response login(final String username, final String password) throws IOException {
+        final Map<String, String> form = new LinkedHashMap<>();
+        form.put("username", username);
+        form.put("password", password);
+        return postForm("/native-login", form);
+    }
+
+    /**
+     * URL encodes a query or form parameter value.
+     *
+     * @param value
+     * @return the encoded value.
+     */
+    public static String urlEncode(final String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // -------------------------------------------- Private Methods --------------------------------------------
+    private Response send(final String method, final String path, final String body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setInstanceFollowRedirects(false);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+
+        if (!cookies.isEmpty()) {
+            final StringJoiner cookieHeader = new StringJoiner("; ");
+            cookies.forEach((name, value) -> cookieHeader.add(name + "=" + value));
+            connection.setRequestProperty("Cookie", cookieHeader.toString());
+        }
+
+        if (!Objects.isNull(body)) {
+            final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            connection.setFixedLengthStreamingMode(bytes.length);
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(bytes);
+            }
+        }
+
+        final int status = connection.getResponseCode();
+        storeCookies(connection.getHeaderFields().get("Set-Cookie"));
+        drain(connection, status);
+
+        return new Response(status, connection.getHeaderField("Location"));
+    }
+
+    /**
+     * Reads the body to the end, so the connection can be reused.
+     */
+    private static void drain(final HttpURLConnection connection, final int status) throws IOException {
+        final InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+
+        if (Objects.isNull(in)) {
+            return;
+        }
+
+        try (InputStream body = in) {
+            final byte[] buffer = new byte[8192];
+            while (body.read(buffer) >= 0) {
+                // discard
+            }
+        }
+    }
+
+    private void storeCookies(final List<String> setCookies) {
+        if (Objects.isNull(setCookies)) {
+            return;
+        }
+
+        for (String setCookie : setCookies) {
+            final String pair = setCookie.split(";", 2)[0];
+            final int separator = pair.indexOf('=');
+
+            if (separator <= 0) {
+                continue;
+            }
+
+            final String name = pair.substring(0, separator).trim();
+            final String value = pair.substring(separator + 1).trim();
+
+            if (value.isEmpty() || setCookie.toLowerCase().contains("max-age=0")) {
+                cookies.remove(name);
+            } else {
+                cookies.put(name, value);
+            }
+        }
+    }
+
+    private static String encode(final Map<String, String> form) {
+        final StringJoiner body = new StringJoiner("&");
+        form.forEach((name, value) -> body.add(urlEncode(name) + "=" + urlEncode(value)));
+        return body.toString();
+    }
+
+    /**
+     * Status code and redirect target of a response.
+     */
+    public static final class Response {
+
+        private final int status;
+
+        private final String location;
+
+        private Response(final int status, final String location) {
+            this.status = status;
+            this.location = location;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        /**
+         * @param target - expected part of the redirect target.
+         * @return "true" if the response redirects to the target.
+         */
+        public boolean isRedirectTo(final String target) {
+            return status == HttpURLConnection.HTTP_MOVED_TEMP && !Objects.isNull(location)
+                    && location.contains(target);
+        }
+    }
+
+}